@@ -31,6 +31,12 @@ public class AppSelectionAdapter extends RecyclerView.Adapter<AppSelectionAdapte
          * @param isSelected True if protection is enabled, false otherwise.
          */
         void onAppToggle(String packageName, boolean isSelected);
+
+        /**
+         * Triggered when a user long-presses an app to edit its unlock grace period.
+         * @param app The app that was pressed.
+         */
+        void onAppGraceRequested(AppInfo app);
     }
 
     /**
@@ -112,6 +118,14 @@ public class AppSelectionAdapter extends RecyclerView.Adapter<AppSelectionAdapte
             this.itemView.setOnClickListener(v -> {
                 binding.cbProtected.toggle();
             });
+
+            // 4. Long-press opens the per-app grace period setting
+            this.itemView.setOnLongClickListener(v -> {
+                if (listener != null) {
+                    listener.onAppGraceRequested(app);
+                }
+                return true;
+            });
         }
     }
 }
\ No newline at end of file
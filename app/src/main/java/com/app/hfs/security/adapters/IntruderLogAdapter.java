@@ -80,12 +80,14 @@ public class IntruderLogAdapter extends RecyclerView.Adapter<IntruderLogAdapter.
             binding.tvIntruderTime.setText(log.getFormattedDate());
             binding.tvTargetApp.setText("Target: " + log.getAppName());
 
-            // 2. Load the intruder's face photo from internal path using Glide
+            // 2. Load the intruder's face thumbnail from internal path using Glide
             // Glide handles memory management and aspect ratio scaling automatically.
+            // Alerts without a photo (e.g. failed device unlocks) keep the placeholder.
             Glide.with(itemView.getContext())
-                    .load(log.getFilePath())
+                    .load(log.getThumbnailPath())
                     .centerCrop()
                     .placeholder(android.R.drawable.ic_menu_report_image)
+                    .fallback(android.R.drawable.ic_menu_report_image)
                     .into(binding.ivIntruderPhoto);
 
             // 3. Handle Single Tap: View full-size photo
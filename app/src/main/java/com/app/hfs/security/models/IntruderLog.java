@@ -7,70 +7,97 @@ import java.util.Locale;
 
 /**
  * Data model representing a captured intrusion event.
- * This class wraps the photo file saved during a face mismatch 
- * and extracts metadata for display in the History screen.
+ * One row of the IntrusionDatabase: what was attacked, when, where, the
+ * evidence photo (if any) and whether the alert SMS went out.
  */
 public class IntruderLog {
 
-    private final String fileName;
-    private final String filePath;
-    private final String appName;
+    // SMS delivery status
+    public static final int SMS_UNKNOWN = 0;   // imported from an old photo
+    public static final int SMS_PENDING = 1;   // waiting for the location fix
+    public static final int SMS_SENT = 2;      // handed to the carrier
+    public static final int SMS_SKIPPED = 3;   // cooldown or no trusted number
+    public static final int SMS_FAILED = 4;
+
+    private final long id;
     private final long timestamp;
-    private final long fileSize;
+    private final String packageName;
+    private final String appName;
+    private final String alertType;
+    private final String location;
+    private final String photoPath;
+    private final String thumbnailPath;
+    private final int smsStatus;
 
-    /**
-     * Constructor that initializes log data from a physical file.
-     * Expected filename format: AppName-PackageName-Timestamp.jpg
-     * 
-     * @param file The image file captured by the background camera service.
-     */
-    public IntruderLog(File file) {
-        this.fileName = file.getName();
-        this.filePath = file.getAbsolutePath();
-        this.fileSize = file.length();
-        this.timestamp = file.lastModified();
-        
-        // Extract the app name from the structured filename
-        this.appName = parseAppNameFromFileName(fileName);
+    public IntruderLog(long id, long timestamp, String packageName, String appName, String alertType,
+                       String location, String photoPath, String thumbnailPath, int smsStatus) {
+        this.id = id;
+        this.timestamp = timestamp;
+        this.packageName = packageName;
+        this.appName = appName;
+        this.alertType = alertType;
+        this.location = location;
+        this.photoPath = photoPath;
+        this.thumbnailPath = thumbnailPath;
+        this.smsStatus = smsStatus;
     }
 
-    /**
-     * Helper to extract the readable app name from the saved filename.
-     */
-    private String parseAppNameFromFileName(String name) {
-        try {
-            if (name.contains("-")) {
-                // Returns the first part of the name before the first hyphen
-                return name.split("-")[0];
-            }
-        } catch (Exception e) {
-            return "Unknown App";
-        }
-        return "Unknown";
+    public long getId() {
+        return id;
     }
 
-    public String getFileName() {
-        return fileName;
+    public long getTimestamp() {
+        return timestamp;
     }
 
-    public String getFilePath() {
-        return filePath;
+    public String getPackageName() {
+        return packageName;
     }
 
     public String getAppName() {
-        return appName;
+        return appName != null ? appName : "Unknown";
     }
 
-    public long getTimestamp() {
-        return timestamp;
+    public String getAlertType() {
+        return alertType;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public boolean hasPhoto() {
+        return photoPath != null;
+    }
+
+    /**
+     * Full-size evidence photo, or null for alerts without one.
+     */
+    public String getFilePath() {
+        return photoPath;
+    }
+
+    /**
+     * Small preview for the history grid; falls back to the full photo.
+     */
+    public String getThumbnailPath() {
+        return thumbnailPath != null ? thumbnailPath : photoPath;
+    }
+
+    public int getSmsStatus() {
+        return smsStatus;
+    }
+
+    public String getFileName() {
+        return photoPath != null ? new File(photoPath).getName() : null;
     }
 
     public long getFileSize() {
-        return fileSize;
+        return photoPath != null ? new File(photoPath).length() : 0;
     }
 
     /**
-     * Converts the raw file timestamp into a human-readable date and time.
+     * Converts the raw timestamp into a human-readable date and time.
      * Example: Feb 09, 2026 05:18 AM
      */
     public String getFormattedDate() {
@@ -82,10 +109,11 @@ public class IntruderLog {
      * Converts the file size into a readable format (KB/MB).
      */
     public String getReadableFileSize() {
+        long fileSize = getFileSize();
         if (fileSize <= 0) return "0 B";
         final String[] units = new String[]{"B", "KB", "MB"};
         int digitGroups = (int) (Math.log10(fileSize) / Math.log10(1024));
         return new java.text.DecimalFormat("#,##0.#")
                 .format(fileSize / Math.pow(1024, digitGroups)) + " " + units[digitGroups];
     }
-}
\ No newline at end of file
+}
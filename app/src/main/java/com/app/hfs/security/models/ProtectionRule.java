@@ -0,0 +1,107 @@
+package com.hfs.security.models;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A conditional protection rule, stored as JSON next to the protected packages.
+ * While all of its conditions hold, the rule either waives the lock ("allow")
+ * or enforces it; rules earlier in the list win over later ones.
+ * Examples:
+ *   "Lock banking apps only outside office hours"
+ *       -> allow, packages = banking apps, days = Mon-Fri, 09:00-17:00
+ *   "Lock everything while not on home Wi-Fi"
+ *       -> allow, packages = empty (all), wifiSsid = "Home", onWifi = true
+ * Unset conditions match everything. Apps must still be in the protected set.
+ */
+public class ProtectionRule {
+
+    public static final int MONDAY = 1;
+    public static final int TUESDAY = 1 << 1;
+    public static final int WEDNESDAY = 1 << 2;
+    public static final int THURSDAY = 1 << 3;
+    public static final int FRIDAY = 1 << 4;
+    public static final int SATURDAY = 1 << 5;
+    public static final int SUNDAY = 1 << 6;
+    public static final int EVERY_DAY = 0x7F;
+
+    private String name;
+
+    // Packages this rule covers; empty means every protected app
+    private Set<String> packages = new HashSet<>();
+
+    // true: no lock while the rule matches; false: always lock while it matches
+    private boolean allow = true;
+
+    // Time window: weekday bitmask and minute-of-day range (end < start wraps midnight)
+    private int days = EVERY_DAY;
+    private int startMinute = -1;
+    private int endMinute = -1;
+
+    // Charging condition; null = either
+    private Boolean charging;
+
+    // Wi-Fi condition; null SSID = any network
+    private String wifiSsid;
+    private boolean onWifi = true;
+
+    // Place condition; null latitude = anywhere
+    private Double latitude;
+    private Double longitude;
+    private float radiusMeters = 150;
+    private boolean insidePlace = true;
+
+    public String getName() { return name; }
+    public void setName(String name) { this.name = name; }
+
+    public Set<String> getPackages() { return packages == null ? new HashSet<>() : packages; }
+    public void setPackages(Set<String> packages) { this.packages = packages; }
+
+    public boolean isAllow() { return allow; }
+    public void setAllow(boolean allow) { this.allow = allow; }
+
+    public int getDays() { return days == 0 ? EVERY_DAY : days; }
+    public void setDays(int days) { this.days = days; }
+
+    public boolean hasTimeWindow() { return startMinute >= 0 && endMinute >= 0 && startMinute != endMinute; }
+    public int getStartMinute() { return startMinute; }
+    public int getEndMinute() { return endMinute; }
+
+    /**
+     * Sets the daily window in minutes since midnight (0-1439).
+     */
+    public void setTimeWindow(int startMinute, int endMinute) {
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+    }
+
+    public Boolean getCharging() { return charging; }
+    public void setCharging(Boolean charging) { this.charging = charging; }
+
+    public String getWifiSsid() { return wifiSsid; }
+    public boolean isOnWifi() { return onWifi; }
+
+    /**
+     * @param onWifi true: matches while connected to {@code ssid}; false: while not connected to it.
+     */
+    public void setWifiCondition(String ssid, boolean onWifi) {
+        this.wifiSsid = ssid;
+        this.onWifi = onWifi;
+    }
+
+    public boolean hasPlace() { return latitude != null && longitude != null; }
+    public double getLatitude() { return latitude == null ? 0 : latitude; }
+    public double getLongitude() { return longitude == null ? 0 : longitude; }
+    public float getRadiusMeters() { return radiusMeters; }
+    public boolean isInsidePlace() { return insidePlace; }
+
+    /**
+     * @param inside true: matches inside the circle; false: outside it.
+     */
+    public void setPlaceCondition(double latitude, double longitude, float radiusMeters, boolean inside) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radiusMeters = radiusMeters;
+        this.insidePlace = inside;
+    }
+}
@@ -9,6 +9,7 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 
+import com.hfs.security.utils.IntrusionDatabase;
 import com.hfs.security.utils.LocationHelper;
 import com.hfs.security.utils.SmsHelper;
 
@@ -17,10 +18,13 @@ import com.hfs.security.utils.SmsHelper;
  * FIXED: 
  * 1. Resolved build error by passing 4 arguments to SmsHelper.
  * 2. Optimized 'Lost Phone' tracking logic to trigger alert on system fingerprint fail.
+ * 3. Records every failed unlock in IntrusionDatabase with its location and SMS status.
  */
 public class AdminReceiver extends DeviceAdminReceiver {
 
     private static final String TAG = "HFS_AdminReceiver";
+    private static final String LOCK_SCREEN_TARGET = "PHONE LOCK SCREEN";
+    private static final String ALERT_TYPE = "System Unlock Failure";
 
     @Override
     public void onEnabled(@NonNull Context context, @NonNull Intent intent) {
@@ -48,7 +52,10 @@ public class AdminReceiver extends DeviceAdminReceiver {
         DevicePolicyManager dpm = (DevicePolicyManager) context.getSystemService(Context.DEVICE_POLICY_SERVICE);
         int failedAttempts = dpm.getCurrentFailedPasswordAttempts();
 
-        // 2. TRIGGER GPS & SMS ALERT FLOW
+        // 2. RECORD THE INTRUSION, THEN TRIGGER GPS & SMS ALERT FLOW
+        IntrusionDatabase intrusions = IntrusionDatabase.getInstance(context);
+        long intrusionId = intrusions.recordIntrusion(null, LOCK_SCREEN_TARGET, ALERT_TYPE);
+
         // We call the LocationHelper to get coordinates and then pipe them to SmsHelper.
         LocationHelper.getDeviceLocation(context, new LocationHelper.LocationResultCallback() {
             @Override
@@ -57,12 +64,14 @@ public class AdminReceiver extends DeviceAdminReceiver {
                  * FIXED: Now passes 4 parameters to match the SmsHelper definition.
                  * required: Context, String, String, String
                  */
-                SmsHelper.sendAlertSms(
+                intrusions.setLocation(intrusionId, mapLink);
+                int smsStatus = SmsHelper.sendAlertSms(
                         context, 
-                        "PHONE LOCK SCREEN", 
+                        LOCK_SCREEN_TARGET, 
                         mapLink, 
-                        "System Unlock Failure"
+                        ALERT_TYPE
                 );
+                intrusions.setSmsStatus(intrusionId, smsStatus);
             }
 
             @Override
@@ -71,12 +80,14 @@ public class AdminReceiver extends DeviceAdminReceiver {
                  * FIXED: Now passes 4 parameters to match the SmsHelper definition.
                  * required: Context, String, String, String
                  */
-                SmsHelper.sendAlertSms(
+                intrusions.setLocation(intrusionId, "GPS Location Unavailable");
+                int smsStatus = SmsHelper.sendAlertSms(
                         context, 
-                        "PHONE LOCK SCREEN", 
+                        LOCK_SCREEN_TARGET, 
                         "GPS Location Unavailable", 
-                        "System Unlock Failure"
+                        ALERT_TYPE
                 );
+                intrusions.setSmsStatus(intrusionId, smsStatus);
             }
         });
 
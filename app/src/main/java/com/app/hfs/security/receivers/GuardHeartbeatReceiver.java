@@ -0,0 +1,75 @@
+package com.hfs.security.receivers;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.hfs.security.services.AppMonitorService;
+
+/**
+ * Doze-proof Guard Heartbeat.
+ * Handler.postDelayed stalls while the device dozes, and some OEM ROMs freeze
+ * the guard thread altogether. An exact allow-while-idle alarm wakes us anyway:
+ * 1. If the guard is running, it checks for a detection gap and resumes its loop.
+ * 2. If the guard was killed, it is started again (alarms may start foreground services).
+ * The alarm re-arms itself on every beat and is cancelled when the guard is stopped.
+ */
+public class GuardHeartbeatReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "HFS_Heartbeat";
+
+    // Doze throttles allow-while-idle alarms to roughly one per 9 minutes anyway
+    public static final long HEARTBEAT_INTERVAL_MS = 5 * 60 * 1000;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (AppMonitorService.isRunning()) {
+            AppMonitorService.onHeartbeat();
+        } else {
+            Log.w(TAG, "Guard not running at heartbeat. Restarting HFS Security Guard...");
+            try {
+                ContextCompat.startForegroundService(context, new Intent(context, AppMonitorService.class));
+            } catch (Exception e) {
+                Log.e(TAG, "Failed to restart guard from heartbeat: " + e.getMessage());
+            }
+        }
+        schedule(context);
+    }
+
+    /**
+     * Arms the next beat. Uses an exact alarm when the user allows it (API 31+),
+     * otherwise an inexact allow-while-idle alarm.
+     */
+    public static void schedule(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) return;
+
+        long triggerAt = SystemClock.elapsedRealtime() + HEARTBEAT_INTERVAL_MS;
+        PendingIntent beat = createPendingIntent(context);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !alarmManager.canScheduleExactAlarms()) {
+            alarmManager.setAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAt, beat);
+        } else {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAt, beat);
+        }
+    }
+
+    public static void cancel(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager != null) {
+            alarmManager.cancel(createPendingIntent(context));
+        }
+    }
+
+    private static PendingIntent createPendingIntent(Context context) {
+        Intent intent = new Intent(context, GuardHeartbeatReceiver.class);
+        return PendingIntent.getBroadcast(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+    }
+}
@@ -0,0 +1,90 @@
+package com.hfs.security.receivers;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.util.Log;
+
+import com.hfs.security.utils.AppLabelCache;
+import com.hfs.security.utils.AutoProtectIndex;
+import com.hfs.security.utils.HFSDatabaseHelper;
+
+import java.util.Collections;
+
+/**
+ * Package Change Receiver.
+ * Keeps the AppLabelCache honest when apps are updated, removed or changed,
+ * and protects new installs that match the owner's auto-protect rules.
+ * Since Android 8 these broadcasts are not delivered to manifest receivers,
+ * so AppMonitorService registers this receiver at runtime.
+ */
+public class PackageChangeReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "HFS_PackageChange";
+
+    /**
+     * Filter for the package broadcasts this receiver handles.
+     */
+    public static IntentFilter createFilter() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        filter.addDataScheme("package");
+        return filter;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        Uri data = intent.getData();
+        if (action == null || data == null) return;
+
+        String packageName = data.getSchemeSpecificPart();
+        boolean replacing = intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+        if (Intent.ACTION_PACKAGE_ADDED.equals(action) && !replacing) {
+            autoProtect(context, packageName);
+            return;
+        }
+
+        AppLabelCache labelCache = AppLabelCache.getInstance(context);
+        labelCache.invalidate(packageName);
+        Log.d(TAG, action + " -> label cache invalidated for " + packageName);
+
+        // Re-resolve protected apps right away so the next lock does not miss
+        boolean removed = Intent.ACTION_PACKAGE_REMOVED.equals(action) && !replacing;
+        if (!removed && HFSDatabaseHelper.getInstance(context).getProtectedPackages().contains(packageName)) {
+            labelCache.prefetch(Collections.singleton(packageName));
+        }
+    }
+
+    /**
+     * Adds a freshly installed app to the protected set if an auto-protect rule covers it.
+     */
+    private void autoProtect(Context context, String packageName) {
+        HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
+        AutoProtectIndex index = db.getAutoProtectIndex();
+        if (index.isEmpty() || packageName.equals(context.getPackageName())) return;
+
+        PackageManager pm = context.getPackageManager();
+        ApplicationInfo appInfo;
+        try {
+            appInfo = pm.getApplicationInfo(packageName, 0);
+        } catch (PackageManager.NameNotFoundException e) {
+            return;
+        }
+        // Only apps the user can open can be locked
+        if (pm.getLaunchIntentForPackage(packageName) == null) return;
+
+        String reason = index.match(packageName, appInfo.category);
+        if (reason != null && db.addProtectedPackage(packageName)) {
+            Log.i(TAG, "Auto-protected new install " + packageName + " (" + reason + ")");
+            AppLabelCache.getInstance(context).prefetch(Collections.singleton(packageName));
+        }
+    }
+}
@@ -89,12 +89,12 @@ public class SmsCommandReceiver extends BroadcastReceiver {
     }
 
     /**
-     * Disables the background monitor service remotely.
+     * Disables the background monitor service remotely, as an intended stop
+     * the watchdog leaves alone.
      */
     private void executeRemoteUnlock(Context context) {
         Log.i(TAG, "REMOTE COMMAND: UNLOCK INITIATED");
-        Intent serviceIntent = new Intent(context, AppMonitorService.class);
-        context.stopService(serviceIntent);
+        AppMonitorService.stopGuard(context);
         Toast.makeText(context, "HFS: System Unlocked Remotely", Toast.LENGTH_SHORT).show();
     }
 
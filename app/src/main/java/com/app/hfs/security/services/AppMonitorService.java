@@ -1,70 +1,411 @@
 package com.hfs.security.services;
 
+import android.app.KeyguardManager;
 import android.app.Notification;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
-import android.app.usage.UsageEvents;
-import android.app.usage.UsageStatsManager;
+import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
+import android.os.BatteryManager;
 import android.os.Build;
 import android.os.Handler;
+import android.os.HandlerThread;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.PowerManager;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
 
 import com.hfs.security.HFSApplication;
 import com.hfs.security.R;
+import com.hfs.security.receivers.GuardHeartbeatReceiver;
+import com.hfs.security.receivers.PackageChangeReceiver;
 import com.hfs.security.ui.LockScreenActivity;
+import com.hfs.security.utils.AppLabelCache;
 import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.LockLatencyTracker;
+import com.hfs.security.utils.ProtectionRuleTable;
 
-import java.util.Set;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
 
 /**
  * The core Background Guard for HFS.
- * FIXED: 
- * 1. Integrated with System-Native Security logic (Removed ML Kit).
- * 2. Implements strict app monitoring with high-frequency polling.
- * 3. Manages owner sessions to prevent re-locking loops.
+ * A foreground service that watches which app is in front and covers protected
+ * apps with the lock screen. Detection runs on the "HFS-GuardThread" HandlerThread:
+ * foreground changes are pushed by ForegroundAccessibilityService when it is
+ * enabled, otherwise UsageStats is polled on a MonitorScheduler period. Lock
+ * decisions go through LockDecisionEngine and launches through LockDispatcher,
+ * with LockOverlayController covering the app until LockScreenActivity draws.
+ * A heartbeat alarm and GuardWatchdogJobService keep the guard alive; tick cost
+ * and detection gaps are reported by
+ * `adb shell dumpsys activity service com.hfs.security/.services.AppMonitorService`
+ * (`... budget <us>` sets the tick warning budget).
  */
 public class AppMonitorService extends Service {
 
     private static final String TAG = "HFS_GuardService";
     private static final int NOTIFICATION_ID = 2002;
-    private static final long MONITOR_TICK_MS = 500; 
 
+    // Detection runs on its own thread; only the lock hand-off touches the main thread
+    private HandlerThread monitorThread;
     private Handler monitorHandler;
+    private Handler mainHandler;
     private Runnable monitorRunnable;
     private HFSDatabaseHelper db;
+    private ForegroundAppTracker foregroundTracker;
+    private final MonitorScheduler scheduler = new MonitorScheduler();
+    private BroadcastReceiver deviceStateReceiver;
+    private PackageChangeReceiver packageChangeReceiver;
+    private AppLabelCache labelCache;
+    private LockOverlayController lockOverlay;
+    // Only touched on the guard thread
+    private UsageTraceRecorder traceRecorder;
+    private TickCostMeter costMeter;
+    private long lastBudgetWarningAt = -1;
+    private GuardCheckpoint checkpoint;
+    private GuardHealthLog healthLog;
+    // Only touched on the guard thread
+    private ContextSignals contextSignals;
+
+    // Detection gap tracking (guard thread writes, dumpsys reads)
+    private long lastTickAt = -1;
+    private long expectedTickAt = -1;
+    private volatile int gapCount = 0;
+    private volatile long worstGapMs = 0;
+
+    // elapsedRealtime of the last lock trigger, for the overlay vs activity latency log
+    private volatile long lastTriggerAt = -1;
+
+    // Last package the trigger logic ran for; rules only apply when the foreground changes
+    private String lastForegroundPackage = "";
+
+    // True while suppressedRecheck runs, so its retry is not counted as a new suppression
+    private boolean recheckRunning = false;
+
+    // Re-evaluates the foreground app after a LOCK could not be dispatched
+    private final Runnable suppressedRecheck = () -> {
+        recheckRunning = true;
+        try {
+            if (ForegroundAccessibilityService.isConnected()) {
+                // The accessibility detector already reported the latest window
+                runMeasuredTick(lastForegroundPackage, -1);
+            } else {
+                runMeasuredTick(null, -1);
+            }
+        } finally {
+            recheckRunning = false;
+        }
+    };
+
+    // Running guard instance, used by the accessibility detector to push events
+    private static volatile AppMonitorService runningInstance;
     
-    // LOOP CONTROL FLAGS
-    public static boolean isLockActive = false;
-    private static String unlockedPackage = "";
-    private static long lastUnlockTimestamp = 0;
-    private static final long SESSION_GRACE_MS = 10000; // 10 Seconds
+    // Re-arm, grace and trigger rules; shared with LockScreenActivity
+    public static final long SESSION_GRACE_MS = 10000; // 10 Seconds (default per app)
+    private static final LockDecisionEngine lockEngine = new LockDecisionEngine(SESSION_GRACE_MS);
+    private static final LockDispatcher lockDispatcher = new LockDispatcher();
+    private static final long SUPPRESSED_RECHECK_MS = 250;
+    private static final int LOW_BATTERY_PERCENT = 15;
+    private static final String TRACE_DIR = "traces";
+    private static final long DEFAULT_TICK_BUDGET_US = 2000;
+    private static final long BUDGET_WARNING_INTERVAL_MS = 60 * 1000;
+    // A tick this late counts as a detection gap the guard had to recover from
+    private static final long GAP_TOLERANCE_MS = 5000;
+
+    /**
+     * The lock state machine driven by this service (foreground changes)
+     * and by LockScreenActivity (shown / verified / dismissed).
+     */
+    public static LockDecisionEngine getLockEngine() {
+        return lockEngine;
+    }
+
+    /**
+     * Single-flight gate for lock screen launches; LockScreenActivity reports
+     * shown / dismissed to it.
+     */
+    public static LockDispatcher getLockDispatcher() {
+        return lockDispatcher;
+    }
+
+    public static boolean isRunning() {
+        return runningInstance != null;
+    }
 
     /**
-     * Signals the service that the owner has successfully bypassed the lock.
-     * This stops the service from re-locking the app for 10 seconds.
+     * Stops the guard because the owner asked for it (Home switch or remote
+     * SMS command). Protection is marked off first, so neither the watchdog
+     * nor the heartbeat restarts it and onDestroy logs a clean stop, not an outage.
      */
-    public static void unlockSession(String packageName) {
-        unlockedPackage = packageName;
-        lastUnlockTimestamp = System.currentTimeMillis();
-        Log.d(TAG, "Owner Verified. Grace Period active for: " + packageName);
+    public static void stopGuard(Context context) {
+        HFSDatabaseHelper.getInstance(context).setGuardEnabled(false);
+        GuardWatchdogJobService.cancel(context);
+        context.stopService(new Intent(context, AppMonitorService.class));
     }
 
     @Override
     public void onCreate() {
         super.onCreate();
         db = HFSDatabaseHelper.getInstance(this);
-        monitorHandler = new Handler(Looper.getMainLooper());
+        lockEngine.setOwnPackage(getPackageName());
+        lockEngine.setGracePolicy(pkg -> db.getSessionGraceMs(pkg, SESSION_GRACE_MS));
+        checkpoint = new GuardCheckpoint(this);
+        checkpoint.restoreInto(lockEngine);
+        healthLog = GuardHealthLog.getInstance(this);
+        healthLog.onGuardStarted();
+        foregroundTracker = new ForegroundAppTracker(this);
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        costMeter = new TickCostMeter(db.getTickBudgetMicros(DEFAULT_TICK_BUDGET_US), debuggable);
+        monitorThread = new HandlerThread("HFS-GuardThread", Process.THREAD_PRIORITY_BACKGROUND);
+        monitorThread.start();
+        monitorHandler = new Handler(monitorThread.getLooper());
+        monitorHandler.post(costMeter::startOnGuardThread);
+        mainHandler = new Handler(Looper.getMainLooper());
+        contextSignals = new ContextSignals(this, monitorHandler);
+        monitorHandler.post(contextSignals::start);
+        lockEngine.setLockCondition(this::requiresLockNow);
+        runningInstance = this;
+        registerDeviceStateReceiver();
+
+        // Warm the label cache so the lock trigger never resolves names over IPC
+        labelCache = AppLabelCache.getInstance(this);
+        packageChangeReceiver = new PackageChangeReceiver();
+        ContextCompat.registerReceiver(this, packageChangeReceiver, PackageChangeReceiver.createFilter(),
+                null, monitorHandler, ContextCompat.RECEIVER_NOT_EXPORTED);
+        monitorHandler.post(() -> labelCache.prefetch(db.getProtectedPackages()));
+
+        // Inflated once here; showing it later is a visibility flip, not an inflation
+        lockOverlay = new LockOverlayController(this);
+
+        monitorHandler.post(this::applyTraceSetting);
+    }
+
+    /**
+     * Starts or stops the UsageEvents trace to match the debug setting.
+     * Runs on the guard thread.
+     */
+    private void applyTraceSetting() {
+        boolean enabled = db.isUsageTraceEnabled();
+        if (enabled && traceRecorder == null) {
+            File directory = new File(getExternalFilesDir(null), TRACE_DIR);
+            String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+            try {
+                if (!directory.exists() && !directory.mkdirs()) {
+                    throw new IOException("Cannot create " + directory);
+                }
+                traceRecorder = new UsageTraceRecorder(new File(directory, "usage-" + stamp + ".hfst"));
+                foregroundTracker.setTraceRecorder(traceRecorder);
+                Log.i(TAG, "Usage trace recording to " + traceRecorder.getFile());
+            } catch (IOException e) {
+                Log.e(TAG, "Usage trace unavailable: " + e.getMessage());
+            }
+        } else if (!enabled && traceRecorder != null) {
+            stopTrace();
+        }
+    }
+
+    private void stopTrace() {
+        if (traceRecorder == null) return;
+        foregroundTracker.setTraceRecorder(null);
+        traceRecorder.close();
+        Log.i(TAG, "Usage trace closed: " + traceRecorder.getEventCount() + " events");
+        traceRecorder = null;
+    }
+
+    private void recordTraceMarker(int type) {
+        if (traceRecorder != null) {
+            traceRecorder.recordMarker(type, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Feeds screen, keyguard and battery transitions into the adaptive scheduler.
+     */
+    private void registerDeviceStateReceiver() {
+        scheduler.setBatteryLow(isBatteryLowNow());
+        KeyguardManager km = (KeyguardManager) getSystemService(Context.KEYGUARD_SERVICE);
+        PowerManager pm = (PowerManager) getSystemService(Context.POWER_SERVICE);
+        if ((pm != null && !pm.isInteractive()) || (km != null && km.isKeyguardLocked())) {
+            scheduler.onScreenOff();
+        }
+
+        deviceStateReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                String action = intent.getAction();
+                if (action == null) return;
+
+                // A tick counts its own wakeup; count the broadcast only when none follows
+                boolean ticked = false;
+                switch (action) {
+                    case Intent.ACTION_SCREEN_OFF:
+                        recordTraceMarker(UsageTraceRecorder.TYPE_SCREEN_OFF);
+                        if (traceRecorder != null) traceRecorder.flush();
+                        scheduler.onScreenOff();
+                        // Every unlocked app must be re-authenticated after the screen wakes
+                        lockEngine.clearSessions();
+                        // A kill after screen-off skips onDestroy; the restart must not bring the sessions back
+                        checkpoint.save(lockEngine);
+                        break;
+                    case Intent.ACTION_SCREEN_ON:
+                        // Without a keyguard no USER_PRESENT follows, so resume right away
+                        KeyguardManager keyguard = (KeyguardManager) getSystemService(Context.KEYGUARD_SERVICE);
+                        if (keyguard == null || keyguard.isKeyguardLocked()) break;
+                        recordTraceMarker(UsageTraceRecorder.TYPE_USER_PRESENT);
+                        scheduler.onUserPresent();
+                        ticked = startMonitoringLoop();
+                        break;
+                    case Intent.ACTION_USER_PRESENT:
+                        recordTraceMarker(UsageTraceRecorder.TYPE_USER_PRESENT);
+                        scheduler.onUserPresent();
+                        ticked = startMonitoringLoop();
+                        break;
+                    case Intent.ACTION_BATTERY_LOW:
+                        scheduler.setBatteryLow(true);
+                        break;
+                    case Intent.ACTION_BATTERY_OKAY:
+                        scheduler.setBatteryLow(false);
+                        break;
+                    case PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED:
+                        PowerManager power = (PowerManager) getSystemService(Context.POWER_SERVICE);
+                        if (power != null && power.isDeviceIdleMode()) {
+                            Log.i(TAG, "Device entered Doze. Checkpointing guard state.");
+                            checkpoint.save(lockEngine);
+                        } else {
+                            ticked = recoverFromGap("doze exit");
+                        }
+                        break;
+                }
+                if (!ticked) {
+                    costMeter.onWakeup(SystemClock.elapsedRealtime());
+                }
+            }
+        };
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_USER_PRESENT);
+        filter.addAction(Intent.ACTION_BATTERY_LOW);
+        filter.addAction(Intent.ACTION_BATTERY_OKAY);
+        filter.addAction(PowerManager.ACTION_DEVICE_IDLE_MODE_CHANGED);
+        // Delivered on the guard thread so the scheduler is only touched from one thread
+        ContextCompat.registerReceiver(this, deviceStateReceiver, filter, null, monitorHandler,
+                ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    private boolean isBatteryLowNow() {
+        BatteryManager bm = (BatteryManager) getSystemService(Context.BATTERY_SERVICE);
+        if (bm == null) return false;
+        int level = bm.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+        return level > 0 && level <= LOW_BATTERY_PERCENT && !bm.isCharging();
+    }
+
+    /**
+     * Entry point for ForegroundAccessibilityService.
+     * Runs the same trigger logic as the poller, but only when a window actually changes.
+     */
+    public static void onForegroundEvent(String packageName, long eventAt) {
+        AppMonitorService service = runningInstance;
+        if (service != null) {
+            service.monitorHandler.post(() -> service.runMeasuredTick(packageName, eventAt));
+        }
+    }
+
+    /**
+     * Called when the accessibility detector connects or disconnects so the
+     * poller can be parked or resumed.
+     */
+    public static void onDetectionSourceChanged() {
+        AppMonitorService service = runningInstance;
+        if (service != null) {
+            service.monitorHandler.post(service::startMonitoringLoop);
+        }
+    }
+
+    /**
+     * Called by LockScreenActivity once its first frame is drawn.
+     * The activity now covers the app, so the shield can step aside.
+     */
+    public static void onLockScreenDrawn() {
+        AppMonitorService service = runningInstance;
+        if (service != null) {
+            service.mainHandler.post(service::handOffToLockScreen);
+        }
+    }
+
+    private void handOffToLockScreen() {
+        long triggerAt = lastTriggerAt;
+        long shieldAt = lockOverlay.getShownAt();
+        lockOverlay.hide();
+        if (triggerAt < 0) return;
+
+        long activityMs = SystemClock.elapsedRealtime() - triggerAt;
+        if (shieldAt >= 0) {
+            Log.i(TAG, "Lock latency: overlay covered in " + (shieldAt - triggerAt)
+                    + " ms, activity first frame in " + activityMs + " ms");
+        } else {
+            Log.i(TAG, "Lock latency: activity first frame in " + activityMs + " ms (no overlay)");
+        }
+        lastTriggerAt = -1;
+    }
+
+    /**
+     * Called by SettingsFragment when the usage trace debug toggle changes.
+     */
+    public static void onTraceSettingChanged() {
+        AppMonitorService service = runningInstance;
+        if (service != null) {
+            service.monitorHandler.post(service::applyTraceSetting);
+        }
+    }
+
+    /**
+     * Called by GuardHeartbeatReceiver on every heartbeat alarm.
+     */
+    public static void onHeartbeat() {
+        AppMonitorService service = runningInstance;
+        if (service != null) {
+            service.monitorHandler.post(() -> {
+                // The restarted tick counts this wakeup; count it here only if none runs
+                if (!service.recoverFromGap("heartbeat")) {
+                    service.costMeter.onWakeup(SystemClock.elapsedRealtime());
+                }
+                service.checkpoint.save(lockEngine);
+                service.healthLog.beat(true);
+            });
+        }
+    }
+
+    /**
+     * Checks whether the poller missed its schedule (Doze, frozen process) and
+     * restarts it. Runs on the guard thread.
+     *
+     * @return true if a tick was posted.
+     */
+    private boolean recoverFromGap(String cause) {
+        long now = SystemClock.elapsedRealtime();
+        if (expectedTickAt >= 0 && now - expectedTickAt > GAP_TOLERANCE_MS) {
+            long gap = now - lastTickAt;
+            gapCount++;
+            worstGapMs = Math.max(worstGapMs, gap);
+            Log.w(TAG, "Recovered from a " + gap + " ms detection gap (" + cause + ")");
+        }
+        return startMonitoringLoop();
     }
 
     @Override
@@ -72,8 +413,15 @@ public class AppMonitorService extends Service {
         // Start as high-priority Foreground Service
         startForeground(NOTIFICATION_ID, createSecurityNotification());
 
-        // Start the monitoring loop
-        startMonitoringLoop();
+        // Start the monitoring loop on the guard thread
+        monitorHandler.post(this::startMonitoringLoop);
+
+        // Wakes the guard even when Doze or the OEM freezes the loop
+        GuardHeartbeatReceiver.schedule(this);
+
+        // Protection is on until the owner turns it off; the watchdog enforces that
+        db.setGuardEnabled(true);
+        GuardWatchdogJobService.schedule(this);
 
         return START_STICKY; 
     }
@@ -106,105 +454,259 @@ public class AppMonitorService extends Service {
 
     /**
      * Main detection loop.
+     * Used only as a fallback: while the accessibility detector is connected
+     * the loop stays parked and the main Looper is not woken at all.
+     *
+     * @return true if a tick was posted, false if the loop stays parked.
      */
-    private void startMonitoringLoop() {
+    private boolean startMonitoringLoop() {
+        if (monitorRunnable != null) {
+            monitorHandler.removeCallbacks(monitorRunnable);
+        }
+
+        if (ForegroundAccessibilityService.isConnected()) {
+            Log.d(TAG, "Event-driven detection active. Poller parked.");
+            return false;
+        }
+
+        if (scheduler.isSuspended()) {
+            Log.d(TAG, "Screen off. Poller suspended until the user is present.");
+            return false;
+        }
+
         monitorRunnable = new Runnable() {
             @Override
             public void run() {
-                // 1. Skip check if the Lock Screen is already visible
-                if (isLockActive) {
-                    monitorHandler.postDelayed(this, MONITOR_TICK_MS);
+                if (ForegroundAccessibilityService.isConnected()) {
                     return;
                 }
 
-                String currentApp = getForegroundPackageName();
-                Set<String> protectedApps = db.getProtectedPackages();
+                boolean changed = runMeasuredTick(null, -1);
 
-                // 2. RE-ARM LOGIC: If user leaves the app, reset the session instantly
-                if (!currentApp.equals(unlockedPackage) && !currentApp.equals(getPackageName())) {
-                    if (!unlockedPackage.isEmpty()) {
-                        Log.d(TAG, "User left protected area. Security Re-armed.");
-                        unlockedPackage = "";
-                    }
+                long now = SystemClock.elapsedRealtime();
+                if (scheduler.isReportDue(now)) {
+                    Log.i(TAG, "Adaptive scheduler saved " + scheduler.getSavedWakeupsPerHour(now)
+                            + " wakeups/hour vs fixed polling");
                 }
 
-                // 3. TRIGGER LOGIC
-                if (protectedApps.contains(currentApp)) {
-                    // Check if current session is valid
-                    boolean isSessionValid = currentApp.equals(unlockedPackage) && 
-                            (System.currentTimeMillis() - lastUnlockTimestamp < SESSION_GRACE_MS);
-
-                    if (!isSessionValid) {
-                        Log.i(TAG, "Security Breach: Triggering System Lock for " + currentApp);
-                        triggerLockOverlay(currentApp);
-                    }
+                long delay = scheduler.nextDelay(now, changed);
+                if (delay != MonitorScheduler.SUSPENDED) {
+                    expectedTickAt = now + delay;
+                    monitorHandler.postDelayed(this, delay);
+                } else {
+                    expectedTickAt = -1;
                 }
-
-                monitorHandler.postDelayed(this, MONITOR_TICK_MS);
             }
         };
         monitorHandler.post(monitorRunnable);
+        return true;
+    }
+
+    /**
+     * One guard tick under cost accounting.
+     *
+     * @param pushedPackage Package pushed by the accessibility detector, or null to poll UsageStats.
+     * @return true if the foreground package changed.
+     */
+    private boolean runMeasuredTick(String pushedPackage, long pushedEventAt) {
+        long now = SystemClock.elapsedRealtime();
+        lastTickAt = now;
+        healthLog.beat(false);
+        costMeter.onWakeup(now);
+        costMeter.begin();
+
+        boolean changed;
+        if (pushedPackage != null) {
+            changed = evaluateForegroundApp(pushedPackage, pushedEventAt);
+        } else {
+            String foreground = getForegroundPackageName();
+            long eventAt = toElapsed(foregroundTracker.getForegroundSince());
+            changed = evaluateForegroundApp(foreground, eventAt);
+        }
+
+        if (costMeter.end(now) && (lastBudgetWarningAt < 0
+                || now - lastBudgetWarningAt >= BUDGET_WARNING_INTERVAL_MS)) {
+            lastBudgetWarningAt = now;
+            Log.w(TAG, "Guard tick exceeded its " + costMeter.getBudgetMicros()
+                    + " us CPU budget. See dumpsys for totals.");
+        }
+
+        // Sessions only change around app switches; keep the restart checkpoint current
+        if (changed) {
+            checkpoint.save(lockEngine);
+        }
+        return changed;
+    }
+
+    /**
+     * Feeds the app currently on screen to the lock engine and acts on its decision.
+     *
+     * @param eventAt elapsedRealtime of the event that revealed the app, or -1 if unknown.
+     * @return true if the foreground package changed since the last call.
+     */
+    private boolean evaluateForegroundApp(String currentApp, long eventAt) {
+        boolean changed = !currentApp.equals(lastForegroundPackage);
+        lastForegroundPackage = currentApp;
+
+        long now = SystemClock.elapsedRealtime();
+        LockDecisionEngine.Decision decision = lockEngine.onForeground(
+                now, currentApp, db.getProtectedMatcher());
+
+        if (decision == LockDecisionEngine.Decision.LOCK) {
+            Log.i(TAG, "Security Breach: Triggering System Lock for " + currentApp);
+            triggerLockOverlay(currentApp, eventAt, now);
+        } else if (decision == LockDecisionEngine.Decision.REARM) {
+            Log.d(TAG, "Unlock session expired. Security Re-armed.");
+        }
+        return changed;
+    }
+
+    /**
+     * Lock condition for the engine: the owner's rules at this minute and in this context.
+     * Runs on the guard thread; allocation-free once the context mask is cached.
+     */
+    private boolean requiresLockNow(String packageName) {
+        ProtectionRuleTable rules = db.getRuleTable();
+        if (rules.isEmpty()) return true;
+        return rules.requiresLock(packageName, contextSignals.minuteOfWeekNow(),
+                contextSignals.maskFor(rules));
     }
 
     /**
      * Identifies the current app on screen.
+     * The tracker only reads events newer than its cursor, so quiet ticks are cheap.
      */
     private String getForegroundPackageName() {
-        UsageStatsManager usm = (UsageStatsManager) getSystemService(Context.USAGE_STATS_SERVICE);
-        long time = System.currentTimeMillis();
-        UsageEvents events = usm.queryEvents(time - 5000, time);
-        UsageEvents.Event event = new UsageEvents.Event();
-        String currentPkg = "";
-
-        while (events.hasNextEvent()) {
-            events.getNextEvent(event);
-            if (event.getEventType() == UsageEvents.Event.MOVE_TO_FOREGROUND) {
-                currentPkg = event.getPackageName();
-            }
-        }
-        return currentPkg;
+        return foregroundTracker.poll(System.currentTimeMillis());
+    }
+
+    /**
+     * Converts a UsageEvents wall-clock timestamp to elapsedRealtime, or -1 if unknown.
+     */
+    private static long toElapsed(long wallTimestamp) {
+        if (wallTimestamp < 0) return -1;
+        return SystemClock.elapsedRealtime() - (System.currentTimeMillis() - wallTimestamp);
     }
 
     /**
      * Launches the Lock Screen Overlay.
+     * The label comes from the pre-filled cache; only the overlay and startActivity
+     * are posted to main. The overlay covers the app first, the activity follows.
      */
-    private void triggerLockOverlay(String packageName) {
-        String appName = getAppNameFromPackage(packageName);
+    private void triggerLockOverlay(String packageName, long eventAt, long detectedAt) {
+        if (!lockDispatcher.tryDispatch(packageName, detectedAt, recheckRunning)) {
+            Log.d(TAG, "Lock launch coalesced for " + packageName
+                    + " (suppressed so far: " + lockDispatcher.getSuppressedCount() + ")");
+            scheduleRecheck(packageName);
+            return;
+        }
+
+        String appName = labelCache.getLabel(packageName);
         
         Intent lockIntent = new Intent(this, LockScreenActivity.class);
         lockIntent.putExtra("TARGET_APP_PACKAGE", packageName);
         lockIntent.putExtra("TARGET_APP_NAME", appName);
+        lockIntent.putExtra(LockLatencyTracker.EXTRA_EVENT_AT, eventAt);
+        lockIntent.putExtra(LockLatencyTracker.EXTRA_DETECTED_AT, detectedAt);
         
         lockIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK 
                           | Intent.FLAG_ACTIVITY_SINGLE_TOP 
                           | Intent.FLAG_ACTIVITY_CLEAR_TOP
                           | Intent.FLAG_ACTIVITY_NO_USER_ACTION);
         
-        try {
-            startActivity(lockIntent);
-        } catch (Exception e) {
-            Log.e(TAG, "Failed to start lock overlay: " + e.getMessage());
-        }
+        lastTriggerAt = SystemClock.elapsedRealtime();
+        mainHandler.post(() -> {
+            try {
+                lockOverlay.show();
+                lockIntent.putExtra(LockLatencyTracker.EXTRA_LAUNCHED_AT, SystemClock.elapsedRealtime());
+                startActivity(lockIntent);
+            } catch (Exception e) {
+                lockOverlay.hide();
+                lockDispatcher.onDispatchFailed();
+                Log.e(TAG, "Failed to start lock overlay: " + e.getMessage());
+                monitorHandler.post(() -> scheduleRecheck(packageName));
+            }
+        });
     }
 
-    private String getAppNameFromPackage(String packageName) {
-        PackageManager pm = getPackageManager();
-        try {
-            ApplicationInfo ai = pm.getApplicationInfo(packageName, 0);
-            return (String) pm.getApplicationLabel(ai);
-        } catch (PackageManager.NameNotFoundException e) {
-            return packageName; 
-        }
+    /**
+     * A LOCK that was not dispatched must not leave the app uncovered: in
+     * event-driven mode no further event may arrive for it. Re-checks the
+     * current foreground app shortly after. Runs on the guard thread.
+     */
+    private void scheduleRecheck(String packageName) {
+        lockEngine.onLockSuppressed(packageName);
+        monitorHandler.removeCallbacks(suppressedRecheck);
+        monitorHandler.postDelayed(suppressedRecheck, SUPPRESSED_RECHECK_MS);
     }
 
     @Override
     public void onDestroy() {
+        runningInstance = null;
+        lockEngine.setLockCondition(pkg -> true);
+        // A deliberate stop must not be undone by the heartbeat
+        GuardHeartbeatReceiver.cancel(this);
+        checkpoint.save(lockEngine);
+        if (!db.isGuardEnabled()) {
+            // Owner switched protection off: the next start is not an outage
+            healthLog.onCleanStop();
+        }
+        if (lockOverlay != null) {
+            lockOverlay.release();
+        }
+        if (deviceStateReceiver != null) {
+            unregisterReceiver(deviceStateReceiver);
+        }
+        if (packageChangeReceiver != null) {
+            unregisterReceiver(packageChangeReceiver);
+        }
         if (monitorHandler != null && monitorRunnable != null) {
             monitorHandler.removeCallbacks(monitorRunnable);
         }
+        if (monitorHandler != null) {
+            monitorHandler.removeCallbacks(suppressedRecheck);
+        }
+        if (monitorThread != null) {
+            monitorHandler.post(this::stopTrace);
+            monitorHandler.post(contextSignals::stop);
+            monitorThread.quitSafely();
+        }
         super.onDestroy();
     }
 
+    /**
+     * Guard cost report for `adb shell dumpsys activity service`.
+     * Pass "budget <microseconds>" to change the per-tick warning budget.
+     */
+    @Override
+    protected void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
+        if (args != null && args.length == 2 && "budget".equals(args[0])) {
+            try {
+                long budget = Long.parseLong(args[1]);
+                db.setTickBudgetMicros(budget);
+                costMeter.setBudgetMicros(budget);
+                pw.println("Tick budget set to " + budget + " us");
+            } catch (NumberFormatException e) {
+                pw.println("Invalid budget: " + args[1]);
+            }
+            return;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        pw.println("HFS Guard Cost");
+        pw.println("  Detection: " + (ForegroundAccessibilityService.isConnected() ? "event-driven" : "polling")
+                + (scheduler.isSuspended() ? " (suspended)" : ""));
+        costMeter.dump(pw, now);
+        pw.println("  Poller wakeups saved vs fixed loop: " + scheduler.getSavedWakeupsPerHour(now) + "/hour");
+        pw.println("  Lock launches coalesced: " + lockDispatcher.getSuppressedCount());
+        pw.println("  Open unlock sessions: " + lockEngine.getOpenSessionCount());
+        ProtectionRuleTable rules = db.getRuleTable();
+        pw.println("  Protection rules: " + rules.size() + " (" + rules.getSegmentCount() + " time segments)");
+        pw.println("  Detection gaps recovered: " + gapCount + " (worst " + worstGapMs + " ms)");
+        pw.println("  Outages (24h): " + healthLog.getOutageCount(24L * 60 * 60 * 1000)
+                + ", unprotected " + healthLog.getUnprotectedMs(24L * 60 * 60 * 1000) + " ms");
+    }
+
     @Nullable
     @Override
     public IBinder onBind(Intent intent) { return null; }
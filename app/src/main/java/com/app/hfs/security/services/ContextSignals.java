@@ -0,0 +1,318 @@
+package com.hfs.security.services;
+
+import android.Manifest;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkRequest;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.hfs.security.utils.ProtectionRuleTable;
+
+import java.util.TimeZone;
+
+/**
+ * Device context for the protection rules: charging, Wi-Fi network, rough location
+ * and the local time zone.
+ * 1. Every signal is pushed by the system (receivers, network callback, passive
+ *    location) onto the guard thread; nothing is polled per tick.
+ * 2. A source is only registered while some rule needs it.
+ * 3. The rules' context mask is recomputed only after a signal changed.
+ * 4. A location fix counts for LOCATION_MAX_AGE_MS after it was taken; place
+ *    rules stop matching once it ages out, so they fail closed (lock).
+ * All methods must be called on the guard thread.
+ */
+public class ContextSignals {
+
+    private static final String TAG = "HFS_ContextSignals";
+
+    // Passive updates piggyback on other apps' fixes and cost us nothing
+    private static final long LOCATION_MIN_INTERVAL_MS = 60 * 1000;
+    private static final float LOCATION_MIN_DISTANCE_M = 25;
+    // Passive fixes only come when another app asks; an older fix proves nothing about now
+    private static final long LOCATION_MAX_AGE_MS = 10 * 60 * 1000;
+
+    private final Context context;
+    private final Handler handler;
+
+    private boolean charging;
+    private String wifiSsid;
+    private boolean hasLocation;
+    private double latitude;
+    private double longitude;
+    private TimeZone timeZone = TimeZone.getDefault();
+
+    // Bumped whenever a signal changes; invalidates the cached mask
+    private int version;
+    private ProtectionRuleTable maskTable;
+    private int maskVersion = -1;
+    private long mask;
+
+    private BroadcastReceiver stateReceiver;
+    private ConnectivityManager.NetworkCallback wifiCallback;
+    private LocationListener locationListener;
+    private final Runnable expireLocation = this::expireLocation;
+
+    public ContextSignals(Context context, Handler guardHandler) {
+        this.context = context.getApplicationContext();
+        this.handler = guardHandler;
+    }
+
+    /**
+     * Minute of the week in the device's current time zone. Allocation-free.
+     */
+    public int minuteOfWeekNow() {
+        long now = System.currentTimeMillis();
+        return ProtectionRuleTable.minuteOfWeek(now, timeZone.getOffset(now));
+    }
+
+    /**
+     * Context mask of {@code table} for the current signals. Cached until a signal
+     * or the table changes; a new table also (un)registers the sources it needs.
+     */
+    public long maskFor(ProtectionRuleTable table) {
+        if (table != maskTable) {
+            updateSources(table);
+            maskTable = table;
+            maskVersion = -1;
+        }
+        if (maskVersion != version) {
+            mask = table.contextMask(charging, wifiSsid, hasLocation, latitude, longitude);
+            maskVersion = version;
+        }
+        return mask;
+    }
+
+    /**
+     * Registers the always-on sources: power and time zone broadcasts.
+     */
+    public void start() {
+        stateReceiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context ctx, Intent intent) {
+                String action = intent.getAction();
+                if (Intent.ACTION_POWER_CONNECTED.equals(action)) {
+                    setCharging(true);
+                } else if (Intent.ACTION_POWER_DISCONNECTED.equals(action)) {
+                    setCharging(false);
+                } else if (Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+                    timeZone = TimeZone.getDefault();
+                }
+            }
+        };
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_POWER_CONNECTED);
+        filter.addAction(Intent.ACTION_POWER_DISCONNECTED);
+        filter.addAction(Intent.ACTION_TIMEZONE_CHANGED);
+        ContextCompat.registerReceiver(context, stateReceiver, filter, null, handler,
+                ContextCompat.RECEIVER_NOT_EXPORTED);
+        charging = isChargingNow();
+    }
+
+    public void stop() {
+        if (stateReceiver != null) {
+            context.unregisterReceiver(stateReceiver);
+            stateReceiver = null;
+        }
+        stopWifi();
+        stopLocation();
+        maskTable = null;
+    }
+
+    private void updateSources(ProtectionRuleTable table) {
+        if (table.usesCharging()) {
+            // POWER_CONNECTED/DISCONNECTED may have been missed before the rules existed
+            setCharging(isChargingNow());
+        }
+        if (table.usesWifi()) startWifi(); else stopWifi();
+        if (table.usesPlaces()) startLocation(); else stopLocation();
+    }
+
+    private void setCharging(boolean value) {
+        if (charging != value) {
+            charging = value;
+            version++;
+        }
+    }
+
+    private boolean isChargingNow() {
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        return battery != null && battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0;
+    }
+
+    // --- WI-FI ---
+
+    private void startWifi() {
+        if (wifiCallback != null) return;
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm == null) return;
+
+        NetworkRequest request = new NetworkRequest.Builder()
+                .addTransportType(NetworkCapabilities.TRANSPORT_WIFI)
+                .build();
+        wifiCallback = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                // Without this flag the SSID is redacted from the capabilities
+                ? new WifiCallback(ConnectivityManager.NetworkCallback.FLAG_INCLUDE_LOCATION_INFO)
+                : new WifiCallback();
+        try {
+            cm.registerNetworkCallback(request, wifiCallback, handler);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Wi-Fi callback unavailable: " + e.getMessage());
+            wifiCallback = null;
+        }
+    }
+
+    private void stopWifi() {
+        if (wifiCallback == null) return;
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        if (cm != null) {
+            try {
+                cm.unregisterNetworkCallback(wifiCallback);
+            } catch (RuntimeException ignored) {
+            }
+        }
+        wifiCallback = null;
+        setWifiSsid(null);
+    }
+
+    private void setWifiSsid(String ssid) {
+        boolean same = ssid == null ? wifiSsid == null : ssid.equals(wifiSsid);
+        if (!same) {
+            wifiSsid = ssid;
+            version++;
+        }
+    }
+
+    private String readSsid(NetworkCapabilities capabilities) {
+        String raw = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            if (capabilities.getTransportInfo() instanceof WifiInfo) {
+                raw = ((WifiInfo) capabilities.getTransportInfo()).getSSID();
+            }
+        } else {
+            WifiManager wifi = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+            if (wifi != null && wifi.getConnectionInfo() != null) {
+                raw = wifi.getConnectionInfo().getSSID();
+            }
+        }
+        if (raw == null || WifiManager.UNKNOWN_SSID.equals(raw)) return null;
+        if (raw.length() >= 2 && raw.startsWith("\"") && raw.endsWith("\"")) {
+            raw = raw.substring(1, raw.length() - 1);
+        }
+        return raw;
+    }
+
+    private class WifiCallback extends ConnectivityManager.NetworkCallback {
+        WifiCallback() {
+            super();
+        }
+
+        WifiCallback(int flags) {
+            super(flags);
+        }
+
+        @Override
+        public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+            setWifiSsid(readSsid(capabilities));
+        }
+
+        @Override
+        public void onLost(@NonNull Network network) {
+            setWifiSsid(null);
+        }
+    }
+
+    // --- LOCATION ---
+
+    private void startLocation() {
+        if (locationListener != null) return;
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED
+                && ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_COARSE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            Log.w(TAG, "Place rules need location permission; they will not match until granted.");
+            return;
+        }
+        LocationManager lm = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        if (lm == null) return;
+
+        locationListener = new LocationListener() {
+            @Override
+            public void onLocationChanged(@NonNull Location location) {
+                setLocation(location);
+            }
+
+            // Required on API < 30, where these are abstract
+            @Override
+            public void onStatusChanged(String provider, int status, Bundle extras) {}
+
+            @Override
+            public void onProviderEnabled(@NonNull String provider) {}
+
+            @Override
+            public void onProviderDisabled(@NonNull String provider) {}
+        };
+        try {
+            setLocation(lm.getLastKnownLocation(LocationManager.PASSIVE_PROVIDER));
+            lm.requestLocationUpdates(LocationManager.PASSIVE_PROVIDER, LOCATION_MIN_INTERVAL_MS,
+                    LOCATION_MIN_DISTANCE_M, locationListener, handler.getLooper());
+        } catch (SecurityException | IllegalArgumentException e) {
+            Log.e(TAG, "Passive location unavailable: " + e.getMessage());
+            locationListener = null;
+        }
+    }
+
+    private void stopLocation() {
+        if (locationListener == null) return;
+        LocationManager lm = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+        if (lm != null) {
+            lm.removeUpdates(locationListener);
+        }
+        locationListener = null;
+        handler.removeCallbacks(expireLocation);
+        hasLocation = false;
+        version++;
+    }
+
+    private void setLocation(Location location) {
+        if (location == null) return;
+        long ageMs = (SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos()) / 1_000_000;
+        if (ageMs > LOCATION_MAX_AGE_MS) {
+            Log.d(TAG, "Ignoring a location fix " + ageMs / 1000 + " s old");
+            return;
+        }
+        hasLocation = true;
+        latitude = location.getLatitude();
+        longitude = location.getLongitude();
+        version++;
+        handler.removeCallbacks(expireLocation);
+        handler.postDelayed(expireLocation, LOCATION_MAX_AGE_MS - Math.max(0, ageMs));
+    }
+
+    /**
+     * No newer fix arrived in time: the last one no longer says where the phone is.
+     */
+    private void expireLocation() {
+        if (!hasLocation) return;
+        hasLocation = false;
+        version++;
+    }
+}
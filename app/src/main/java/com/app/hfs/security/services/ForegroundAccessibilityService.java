@@ -0,0 +1,91 @@
+package com.hfs.security.services;
+
+import android.accessibilityservice.AccessibilityService;
+import android.content.Context;
+import android.content.Intent;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.accessibility.AccessibilityEvent;
+import android.view.inputmethod.InputMethodInfo;
+import android.view.inputmethod.InputMethodManager;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Event-Driven Foreground Detector.
+ * When the user grants HFS accessibility access, window changes are pushed
+ * straight into AppMonitorService instead of being polled from UsageStats.
+ * Lock latency is then set by the system event, not by the monitor tick.
+ * Without this grant, AppMonitorService keeps using its UsageStats poller.
+ */
+public class ForegroundAccessibilityService extends AccessibilityService {
+
+    private static final String TAG = "HFS_A11yDetector";
+
+    // Read by the monitor loop to decide whether polling is still required
+    private static volatile boolean connected = false;
+
+    // Windows from these packages never represent a real app switch
+    private final Set<String> ignoredPackages = new HashSet<>();
+
+    public static boolean isConnected() {
+        return connected;
+    }
+
+    @Override
+    protected void onServiceConnected() {
+        super.onServiceConnected();
+        loadIgnoredPackages();
+        connected = true;
+        Log.i(TAG, "Accessibility detector connected. UsageStats polling suspended.");
+        AppMonitorService.onDetectionSourceChanged();
+    }
+
+    /**
+     * The system UI shade and soft keyboards raise window events on top of
+     * the current app. Treating them as a foreground switch would re-arm the
+     * owner's session every time the keyboard opens.
+     */
+    private void loadIgnoredPackages() {
+        ignoredPackages.clear();
+        ignoredPackages.add("com.android.systemui");
+
+        InputMethodManager imm = (InputMethodManager) getSystemService(Context.INPUT_METHOD_SERVICE);
+        if (imm != null) {
+            for (InputMethodInfo info : imm.getEnabledInputMethodList()) {
+                ignoredPackages.add(info.getPackageName());
+            }
+        }
+    }
+
+    @Override
+    public void onAccessibilityEvent(AccessibilityEvent event) {
+        if (event == null || event.getEventType() != AccessibilityEvent.TYPE_WINDOW_STATE_CHANGED) {
+            return;
+        }
+
+        CharSequence pkg = event.getPackageName();
+        if (pkg == null) return;
+
+        String packageName = pkg.toString();
+        if (ignoredPackages.contains(packageName)) return;
+
+        // Event times use the uptime clock; the guard measures with elapsedRealtime
+        long eventAt = SystemClock.elapsedRealtime() - (SystemClock.uptimeMillis() - event.getEventTime());
+        AppMonitorService.onForegroundEvent(packageName, eventAt);
+    }
+
+    @Override
+    public void onInterrupt() {
+        // Nothing to cancel: events are handled synchronously
+    }
+
+    @Override
+    public boolean onUnbind(Intent intent) {
+        connected = false;
+        Log.w(TAG, "Accessibility detector disconnected. Falling back to UsageStats polling.");
+        AppMonitorService.onDetectionSourceChanged();
+        return super.onUnbind(intent);
+    }
+}
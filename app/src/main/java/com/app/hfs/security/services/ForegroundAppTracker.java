@@ -0,0 +1,110 @@
+package com.hfs.security.services;
+
+import android.app.usage.UsageEvents;
+import android.app.usage.UsageStatsManager;
+import android.content.Context;
+import android.os.Build;
+
+/**
+ * Incremental Foreground Tracker.
+ * Replaces the fixed 5-second UsageEvents re-scan with a cursor:
+ * 1. Remembers the timestamp of the last event it consumed and only asks for newer events.
+ * 2. Keeps the last known foreground package between ticks (see ForegroundState).
+ * 3. Uses ACTIVITY_RESUMED / ACTIVITY_PAUSED on API 29+ (MOVE_TO_FOREGROUND / BACKGROUND below).
+ * 4. Optionally mirrors every consumed event into a UsageTraceRecorder.
+ * Not thread-safe: call it from the monitor loop only.
+ */
+public class ForegroundAppTracker {
+
+    // First query after start looks back as far as the old fixed window did
+    private static final long INITIAL_LOOKBACK_MS = 5000;
+    // Upper bound on catch-up after a long stall, so one query never walks hours of events
+    private static final long MAX_LOOKBACK_MS = 60 * 1000;
+
+    private static final int EVENT_RESUMED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+            ? UsageEvents.Event.ACTIVITY_RESUMED
+            : UsageEvents.Event.MOVE_TO_FOREGROUND;
+    private static final int EVENT_PAUSED = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+            ? UsageEvents.Event.ACTIVITY_PAUSED
+            : UsageEvents.Event.MOVE_TO_BACKGROUND;
+
+    private final UsageStatsManager usageStatsManager;
+    // Reused for every event so a tick never allocates event holders
+    private final UsageEvents.Event event = new UsageEvents.Event();
+    private final ForegroundState state = new ForegroundState();
+
+    private UsageTraceRecorder traceRecorder;
+
+    public ForegroundAppTracker(Context context) {
+        usageStatsManager = (UsageStatsManager) context.getSystemService(Context.USAGE_STATS_SERVICE);
+    }
+
+    /**
+     * Debug mode: every event the tracker consumes is also written to the recorder.
+     * Pass null to stop recording.
+     */
+    public void setTraceRecorder(UsageTraceRecorder recorder) {
+        traceRecorder = recorder;
+    }
+
+    /**
+     * Consumes any events newer than the cursor and returns the app currently on screen.
+     * Returns an empty string when no foreground app is known.
+     */
+    public String poll(long now) {
+        if (usageStatsManager == null) return state.getForegroundPackage();
+
+        long lastEventTime = state.getLastEventTime();
+        long begin = lastEventTime < 0 ? now - INITIAL_LOOKBACK_MS : lastEventTime + 1;
+        begin = Math.max(begin, now - MAX_LOOKBACK_MS);
+
+        if (begin < now) {
+            UsageEvents events = usageStatsManager.queryEvents(begin, now);
+            if (events != null) {
+                while (events.hasNextEvent()) {
+                    events.getNextEvent(event);
+                    consume(event.getEventType(), event.getPackageName(), event.getTimeStamp());
+                }
+            }
+        }
+
+        // An activity paused and nothing else resumed (e.g. the screen turned off)
+        return state.settle(now);
+    }
+
+    private void consume(int type, String packageName, long timestamp) {
+        if (type == EVENT_RESUMED) {
+            state.onResumed(packageName, timestamp);
+            if (traceRecorder != null) {
+                traceRecorder.record(UsageTraceRecorder.TYPE_RESUMED, packageName, timestamp);
+            }
+        } else if (type == EVENT_PAUSED) {
+            // Usually followed within milliseconds by the next RESUMED; settled in poll()
+            state.onPaused(packageName, timestamp);
+            if (traceRecorder != null) {
+                traceRecorder.record(UsageTraceRecorder.TYPE_PAUSED, packageName, timestamp);
+            }
+        } else {
+            state.onOtherEvent(timestamp);
+        }
+    }
+
+    public String getForegroundPackage() {
+        return state.getForegroundPackage();
+    }
+
+    /**
+     * Wall-clock timestamp of the event that brought the current foreground
+     * app to the front, or -1 if unknown.
+     */
+    public long getForegroundSince() {
+        return state.getForegroundSince();
+    }
+
+    /**
+     * Timestamp of the newest event consumed so far, or -1 before the first poll.
+     */
+    public long getLastEventTime() {
+        return state.getLastEventTime();
+    }
+}
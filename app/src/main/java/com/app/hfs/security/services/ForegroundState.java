@@ -0,0 +1,75 @@
+package com.hfs.security.services;
+
+/**
+ * Foreground Event Folding.
+ * Turns a stream of resume / pause events into "the app currently on screen":
+ * 1. A resume makes its package the foreground.
+ * 2. A pause of the foreground package is held for PAUSE_SETTLE_MS, because
+ *    the next resume normally follows within milliseconds.
+ * 3. A pause that settles without a resume clears the foreground (e.g. screen off).
+ * Framework-free, so ForegroundAppTracker and the JVM trace replayer share the same rules.
+ * Not thread-safe.
+ */
+public class ForegroundState {
+
+    // A pause with no resume after this long means nothing we can see is in front
+    static final long PAUSE_SETTLE_MS = 1000;
+
+    private long lastEventTime = -1;
+    private String foregroundPackage = "";
+    private long foregroundSince = -1;
+    private long pendingPauseTime = -1;
+
+    public void onResumed(String packageName, long timestamp) {
+        advanceCursor(timestamp);
+        if (!packageName.equals(foregroundPackage)) {
+            foregroundSince = timestamp;
+        }
+        foregroundPackage = packageName;
+        pendingPauseTime = -1;
+    }
+
+    public void onPaused(String packageName, long timestamp) {
+        advanceCursor(timestamp);
+        if (packageName.equals(foregroundPackage)) {
+            pendingPauseTime = timestamp;
+        }
+    }
+
+    /**
+     * Any other event type: only moves the cursor so it is not read again.
+     */
+    public void onOtherEvent(long timestamp) {
+        advanceCursor(timestamp);
+    }
+
+    /**
+     * Applies the pause-settle rule at {@code now} and returns the foreground package.
+     */
+    public String settle(long now) {
+        if (pendingPauseTime >= 0 && now - pendingPauseTime >= PAUSE_SETTLE_MS) {
+            foregroundPackage = "";
+            foregroundSince = -1;
+            pendingPauseTime = -1;
+        }
+        return foregroundPackage;
+    }
+
+    public String getForegroundPackage() {
+        return foregroundPackage;
+    }
+
+    public long getForegroundSince() {
+        return foregroundSince;
+    }
+
+    public long getLastEventTime() {
+        return lastEventTime;
+    }
+
+    private void advanceCursor(long timestamp) {
+        if (timestamp > lastEventTime) {
+            lastEventTime = timestamp;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.hfs.security.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.provider.Settings;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Guard Restart Checkpoint.
+ * A tiny persisted copy of the in-memory unlock sessions, so an OEM kill and
+ * START_STICKY restart do not re-prompt the owner for apps they just unlocked.
+ * 1. Sessions are stored as remaining grace time relative to elapsedRealtime.
+ * 2. A checkpoint is only restored on the same boot (Settings.Global.BOOT_COUNT).
+ * 3. Kept in its own preferences file, away from the user's configuration.
+ */
+public class GuardCheckpoint {
+
+    private static final String TAG = "HFS_Checkpoint";
+    private static final String PREF_CHECKPOINT = "hfs_guard_checkpoint";
+
+    private static final String KEY_BOOT_COUNT = "boot_count";
+    private static final String KEY_SAVED_AT = "saved_at_elapsed";
+    private static final String KEY_SESSIONS = "sessions";
+
+    private static final Type SESSIONS_TYPE = new TypeToken<Map<String, long[]>>() {}.getType();
+
+    private final Context context;
+    private final SharedPreferences prefs;
+    private final Gson gson = new Gson();
+
+    public GuardCheckpoint(Context context) {
+        this.context = context.getApplicationContext();
+        this.prefs = this.context.getSharedPreferences(PREF_CHECKPOINT, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Saves the engine's live sessions. Asynchronous; safe to call every app switch.
+     */
+    public void save(LockDecisionEngine engine) {
+        long now = SystemClock.elapsedRealtime();
+        Map<String, long[]> sessions = engine.exportSessions(now);
+        prefs.edit()
+                .putInt(KEY_BOOT_COUNT, bootCount())
+                .putLong(KEY_SAVED_AT, now)
+                .putString(KEY_SESSIONS, gson.toJson(sessions, SESSIONS_TYPE))
+                .apply();
+    }
+
+    /**
+     * Restores sessions from the last checkpoint of this boot, minus the time the
+     * guard was down.
+     *
+     * @return Number of sessions restored.
+     */
+    public int restoreInto(LockDecisionEngine engine) {
+        long savedAt = prefs.getLong(KEY_SAVED_AT, -1);
+        long now = SystemClock.elapsedRealtime();
+        if (savedAt < 0 || savedAt > now || prefs.getInt(KEY_BOOT_COUNT, -1) != bootCount()) {
+            return 0;
+        }
+
+        Map<String, long[]> saved = parse(prefs.getString(KEY_SESSIONS, null));
+        long downtime = now - savedAt;
+        int restored = 0;
+        for (long[] value : saved.values()) {
+            if (value != null && value.length >= 2) {
+                value[0] -= downtime;
+                if (value[0] > 0) restored++;
+            }
+        }
+        engine.restoreSessions(saved, now);
+        Log.i(TAG, "Restored " + restored + " unlock session(s) after " + downtime + " ms down");
+        return restored;
+    }
+
+    private Map<String, long[]> parse(String json) {
+        if (json == null) return Collections.emptyMap();
+        try {
+            Map<String, long[]> parsed = gson.fromJson(json, SESSIONS_TYPE);
+            return parsed != null ? parsed : Collections.<String, long[]>emptyMap();
+        } catch (RuntimeException e) {
+            return Collections.emptyMap();
+        }
+    }
+
+    private int bootCount() {
+        return Settings.Global.getInt(context.getContentResolver(), Settings.Global.BOOT_COUNT, -1);
+    }
+}
@@ -0,0 +1,155 @@
+package com.hfs.security.services;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Guard Health Log.
+ * Persists the guard's heartbeat and every outage it suffered, so we know how
+ * long protection was actually down:
+ * 1. The guard beats on its ticks (persisted at most every BEAT_PERSIST_MS) and on heartbeats.
+ * 2. A guard that starts without a clean stop records an outage from its last
+ *    beat (or the boot, if later) until now.
+ * 3. Outages older than 7 days are dropped.
+ * All times are wall-clock so windows survive reboots.
+ */
+public class GuardHealthLog {
+
+    private static final String TAG = "HFS_GuardHealth";
+    private static final String PREF_HEALTH = "hfs_guard_health";
+
+    private static final String KEY_LAST_BEAT = "last_beat";
+    private static final String KEY_CLEAN_STOP = "clean_stop";
+    private static final String KEY_OUTAGES = "outages";
+
+    private static final long BEAT_PERSIST_MS = 30 * 1000;
+    private static final long RETENTION_MS = 7L * 24 * 60 * 60 * 1000;
+    // Restarts faster than this are not worth recording
+    private static final long MIN_OUTAGE_MS = 1000;
+
+    private static final Type OUTAGES_TYPE = new TypeToken<ArrayList<long[]>>() {}.getType();
+
+    private static GuardHealthLog instance;
+
+    private final SharedPreferences prefs;
+    private final Gson gson = new Gson();
+    private long lastPersistedBeat = -1;
+
+    private GuardHealthLog(Context context) {
+        prefs = context.getSharedPreferences(PREF_HEALTH, Context.MODE_PRIVATE);
+    }
+
+    public static synchronized GuardHealthLog getInstance(Context context) {
+        if (instance == null) {
+            instance = new GuardHealthLog(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Called when the guard starts. Records the outage since the last beat
+     * unless the previous run was stopped on purpose.
+     *
+     * @return Length of the recorded outage in ms, or 0.
+     */
+    public synchronized long onGuardStarted() {
+        long now = System.currentTimeMillis();
+        long lastBeat = prefs.getLong(KEY_LAST_BEAT, -1);
+        boolean cleanStop = prefs.getBoolean(KEY_CLEAN_STOP, true);
+
+        long outage = 0;
+        if (!cleanStop && lastBeat > 0 && lastBeat < now) {
+            // Time with the phone switched off is not "unprotected"
+            long bootedAt = now - SystemClock.elapsedRealtime();
+            long start = Math.max(lastBeat, bootedAt);
+            if (now - start >= MIN_OUTAGE_MS) {
+                outage = now - start;
+                addOutage(start, now);
+                Log.w(TAG, "Guard restarted after " + outage + " ms without protection");
+            }
+        }
+
+        prefs.edit().putBoolean(KEY_CLEAN_STOP, false).putLong(KEY_LAST_BEAT, now).apply();
+        lastPersistedBeat = now;
+        return outage;
+    }
+
+    /**
+     * The guard is alive. Persisted at most every BEAT_PERSIST_MS unless forced.
+     */
+    public synchronized void beat(boolean force) {
+        long now = System.currentTimeMillis();
+        if (!force && lastPersistedBeat > 0 && now - lastPersistedBeat < BEAT_PERSIST_MS) return;
+        prefs.edit().putLong(KEY_LAST_BEAT, now).apply();
+        lastPersistedBeat = now;
+    }
+
+    /**
+     * The guard was stopped on purpose; its next start is not an outage.
+     */
+    public synchronized void onCleanStop() {
+        prefs.edit()
+                .putBoolean(KEY_CLEAN_STOP, true)
+                .putLong(KEY_LAST_BEAT, System.currentTimeMillis())
+                .apply();
+    }
+
+    public synchronized long getLastBeat() {
+        return prefs.getLong(KEY_LAST_BEAT, -1);
+    }
+
+    /**
+     * Total unprotected time that overlaps the last {@code windowMs}.
+     */
+    public synchronized long getUnprotectedMs(long windowMs) {
+        long now = System.currentTimeMillis();
+        long from = now - windowMs;
+        long total = 0;
+        for (long[] outage : loadOutages()) {
+            long start = Math.max(outage[0], from);
+            long end = Math.min(outage[1], now);
+            if (end > start) total += end - start;
+        }
+        return total;
+    }
+
+    public synchronized int getOutageCount(long windowMs) {
+        long from = System.currentTimeMillis() - windowMs;
+        int count = 0;
+        for (long[] outage : loadOutages()) {
+            if (outage[1] > from) count++;
+        }
+        return count;
+    }
+
+    private void addOutage(long start, long end) {
+        List<long[]> outages = loadOutages();
+        long cutoff = end - RETENTION_MS;
+        List<long[]> kept = new ArrayList<>();
+        for (long[] outage : outages) {
+            if (outage[1] > cutoff) kept.add(outage);
+        }
+        kept.add(new long[] {start, end});
+        prefs.edit().putString(KEY_OUTAGES, gson.toJson(kept, OUTAGES_TYPE)).apply();
+    }
+
+    private List<long[]> loadOutages() {
+        String json = prefs.getString(KEY_OUTAGES, null);
+        if (json == null) return new ArrayList<>();
+        try {
+            List<long[]> parsed = gson.fromJson(json, OUTAGES_TYPE);
+            return parsed != null ? parsed : new ArrayList<>();
+        } catch (RuntimeException e) {
+            return new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.hfs.security.services;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.hfs.security.utils.HFSDatabaseHelper;
+
+/**
+ * Guard Watchdog.
+ * A persisted periodic job, independent of the heartbeat alarm, that makes sure
+ * the guard is up whenever the owner has switched protection on:
+ * 1. Guard process gone   -> restart AppMonitorService (the restart records the outage).
+ * 2. Guard up but its heartbeat is stale -> kick its loop back into life.
+ */
+public class GuardWatchdogJobService extends JobService {
+
+    private static final String TAG = "HFS_Watchdog";
+    private static final int JOB_ID = 3003;
+
+    // JobScheduler's minimum period
+    private static final long CHECK_PERIOD_MS = 15 * 60 * 1000;
+    // Two missed heartbeat alarms plus slack
+    private static final long STALE_BEAT_MS = 11 * 60 * 1000;
+
+    /**
+     * Schedules the watchdog. Idempotent; survives reboots.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null || scheduler.getPendingJob(JOB_ID) != null) return;
+
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, GuardWatchdogJobService.class))
+                .setPeriodic(CHECK_PERIOD_MS)
+                .setPersisted(true)
+                .build();
+        scheduler.schedule(job);
+    }
+
+    public static void cancel(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler != null) {
+            scheduler.cancel(JOB_ID);
+        }
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        if (!HFSDatabaseHelper.getInstance(this).isGuardEnabled()) {
+            cancel(this);
+            return false;
+        }
+
+        if (!AppMonitorService.isRunning()) {
+            Log.w(TAG, "Guard is down while protection is enabled. Restarting...");
+            try {
+                ContextCompat.startForegroundService(this, new Intent(this, AppMonitorService.class));
+            } catch (Exception e) {
+                Log.e(TAG, "Watchdog restart failed: " + e.getMessage());
+            }
+        } else {
+            long sinceBeat = System.currentTimeMillis() - GuardHealthLog.getInstance(this).getLastBeat();
+            if (sinceBeat > STALE_BEAT_MS) {
+                Log.w(TAG, "Guard heartbeat is " + sinceBeat + " ms old. Kicking the monitor loop.");
+                AppMonitorService.onHeartbeat();
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        return true;
+    }
+}
@@ -0,0 +1,210 @@
+package com.hfs.security.services;
+
+import com.hfs.security.utils.ProtectedAppMatcher;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Framework-free Lock Decision Engine.
+ * Holds the guard's re-arm, grace-period and trigger rules as an explicit state machine:
+ *
+ *   ARMED    --protected app, no live session-->   LOCKING
+ *   LOCKING  --owner verified-->                   UNLOCKED
+ *   LOCKING  --lock screen closed-->               ARMED / UNLOCKED
+ *   UNLOCKED --user leaves the app-->              ARMED (session grace countdown starts)
+ *
+ * Unlock sessions live in an UnlockSessionTable, so several apps can stay
+ * unlocked at once, each with its own grace period.
+ * The guard thread feeds foreground changes and LockScreenActivity feeds auth
+ * events from the main thread. Every transition runs under the engine's monitor,
+ * so the phase and the session table always change together.
+ * A LockCondition (the owner's protection rules) can waive the lock for a
+ * protected app; it is consulted only when a lock would otherwise trigger.
+ * All timestamps must come from the same monotonic clock.
+ */
+public class LockDecisionEngine {
+
+    public enum Decision { NONE, LOCK, UNLOCK, REARM }
+
+    public enum Phase { ARMED, LOCKING, UNLOCKED }
+
+    /**
+     * Supplies the grace period for a package when its session opens.
+     */
+    public interface GracePolicy {
+        long graceFor(String packageName);
+    }
+
+    /**
+     * Decides whether a protected app must be locked right now. Runs on the hot path:
+     * implementations must be cheap and must not allocate.
+     */
+    public interface LockCondition {
+        boolean requiresLock(String packageName);
+    }
+
+    // A requested lock that never reports shown is abandoned after this long
+    static final long LOCK_SHOW_TIMEOUT_MS = 3000;
+
+    private final UnlockSessionTable sessions = new UnlockSessionTable();
+    private volatile GracePolicy gracePolicy;
+    private volatile LockCondition lockCondition = packageName -> true;
+    private volatile String ownPackage = "";
+
+    private Phase phase = Phase.ARMED;
+    private String foreground = "";
+    private long lockRequestedAt;
+    private boolean lockShown;
+
+    public LockDecisionEngine(long defaultGraceMs) {
+        this.gracePolicy = packageName -> defaultGraceMs;
+    }
+
+    /**
+     * Our own package never ends a session: the lock screen itself runs in it.
+     */
+    public void setOwnPackage(String packageName) {
+        ownPackage = packageName == null ? "" : packageName;
+    }
+
+    public void setGracePolicy(GracePolicy policy) {
+        gracePolicy = policy;
+    }
+
+    public void setLockCondition(LockCondition condition) {
+        lockCondition = condition;
+    }
+
+    /**
+     * Foreground package observed at {@code timestamp}.
+     * Repeated calls with the same package return NONE without allocating.
+     */
+    public synchronized Decision onForeground(long timestamp, String packageName, ProtectedAppMatcher protectedApps) {
+        boolean rearmed = sessions.advance(timestamp) > 0;
+        boolean lockPending = phase == Phase.LOCKING
+                && (lockShown || timestamp - lockRequestedAt < LOCK_SHOW_TIMEOUT_MS);
+
+        // Same app as before: nothing to decide, unless a requested lock never appeared
+        if (packageName.equals(foreground) && (lockPending || phase != Phase.LOCKING)) {
+            return rearmed ? Decision.REARM : Decision.NONE;
+        }
+
+        // Leaving an unlocked app starts its grace countdown
+        if (!foreground.equals(packageName) && !foreground.equals(ownPackage)) {
+            sessions.release(foreground, timestamp);
+        }
+        foreground = packageName;
+
+        // Lock screen requested or visible: only remember where the user is
+        if (lockPending) {
+            return rearmed ? Decision.REARM : Decision.NONE;
+        }
+
+        // TRIGGER: protected app without a live session, unless a rule waives it
+        if (protectedApps.isProtected(packageName) && !sessions.resume(packageName, timestamp)
+                && lockCondition.requiresLock(packageName)) {
+            phase = Phase.LOCKING;
+            lockRequestedAt = timestamp;
+            lockShown = false;
+            return Decision.LOCK;
+        }
+
+        phase = sessions.isOpen(packageName, timestamp) ? Phase.UNLOCKED : Phase.ARMED;
+        return rearmed ? Decision.REARM : Decision.NONE;
+    }
+
+    /**
+     * The LOCK for {@code packageName} was not dispatched (coalesced, or the
+     * Intent was lost). Forgets it so the next observation of the app decides
+     * again instead of waiting for a lock screen that is not coming.
+     */
+    public synchronized void onLockSuppressed(String packageName) {
+        if (phase != Phase.LOCKING || lockShown || !packageName.equals(foreground)) return;
+        phase = Phase.ARMED;
+        foreground = "";
+    }
+
+    /**
+     * The lock screen is on screen. Also covers lock screens opened from the notification.
+     */
+    public synchronized void onLockShown(long timestamp) {
+        if (phase != Phase.LOCKING) {
+            lockRequestedAt = timestamp;
+        }
+        phase = Phase.LOCKING;
+        lockShown = true;
+    }
+
+    /**
+     * The owner authenticated for {@code packageName}; its session opens now.
+     */
+    public synchronized Decision onAuthSucceeded(long timestamp, String packageName) {
+        sessions.open(packageName, timestamp, gracePolicy.graceFor(packageName));
+        phase = Phase.UNLOCKED;
+        lockShown = false;
+        return Decision.UNLOCK;
+    }
+
+    /**
+     * The lock screen closed without (or after) authentication.
+     */
+    public synchronized void onLockDismissed() {
+        if (phase != Phase.LOCKING) return;
+        phase = Phase.ARMED;
+        lockShown = false;
+    }
+
+    /**
+     * Drops every unlock session, e.g. when the screen turns off. The app left
+     * in front is forgotten too, so waking straight back into it locks again.
+     */
+    public synchronized void clearSessions() {
+        sessions.clear();
+        if (phase == Phase.LOCKING) return;
+        phase = Phase.ARMED;
+        foreground = "";
+    }
+
+    public synchronized Phase getPhase() {
+        return phase;
+    }
+
+    public synchronized boolean isLockActive() {
+        return phase == Phase.LOCKING && lockShown;
+    }
+
+    /**
+     * Whether {@code packageName} could be shown at {@code timestamp} without a prompt.
+     */
+    public synchronized boolean hasLiveSession(String packageName, long timestamp) {
+        return sessions.isOpen(packageName, timestamp);
+    }
+
+    /**
+     * Live sessions as package -> {remaining ms, grace ms}, for the restart checkpoint.
+     */
+    public synchronized Map<String, long[]> exportSessions(long timestamp) {
+        Map<String, long[]> out = new HashMap<>();
+        sessions.exportTo(out, timestamp);
+        return out;
+    }
+
+    /**
+     * Restores sessions from a checkpoint taken before the guard was restarted.
+     * Existing sessions win over checkpointed ones.
+     */
+    public synchronized void restoreSessions(Map<String, long[]> saved, long timestamp) {
+        for (Map.Entry<String, long[]> entry : saved.entrySet()) {
+            long[] value = entry.getValue();
+            if (value == null || value.length < 2 || value[0] <= 0) continue;
+            if (!sessions.isOpen(entry.getKey(), timestamp)) {
+                sessions.restore(entry.getKey(), timestamp, value[0], value[1]);
+            }
+        }
+    }
+
+    public synchronized int getOpenSessionCount() {
+        return sessions.size();
+    }
+}
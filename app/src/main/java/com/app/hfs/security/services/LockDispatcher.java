@@ -0,0 +1,94 @@
+package com.hfs.security.services;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-flight Lock Dispatcher.
+ * Sits between a LOCK decision and the startActivity call so that bouncing
+ * between a protected app and the launcher (or a burst of foreground events)
+ * produces one Intent dispatch instead of several:
+ * 1. An in-flight flag is set atomically before the Intent is sent and cleared
+ *    when LockScreenActivity reports shown or dismissed.
+ * 2. Triggers for the same package within COALESCE_WINDOW_MS are merged.
+ * 3. Every suppressed trigger is counted, except the guard's own re-checks of
+ *    a trigger that was already counted.
+ * A dispatch that never reports back is abandoned after LOCK_SHOW_TIMEOUT_MS,
+ * so a lost Intent can never disable the lock. Framework-free and thread-safe.
+ */
+public class LockDispatcher {
+
+    static final long COALESCE_WINDOW_MS = 750;
+
+    private final AtomicBoolean inFlight = new AtomicBoolean(false);
+    private final AtomicLong suppressed = new AtomicLong();
+
+    private volatile long dispatchedAt = -1;
+    private volatile String dispatchedPackage = "";
+
+    /**
+     * Claims the right to launch the lock screen for {@code packageName}.
+     *
+     * @return true if the caller must send the Intent; false if the trigger was coalesced.
+     */
+    public boolean tryDispatch(String packageName, long now) {
+        return tryDispatch(packageName, now, false);
+    }
+
+    /**
+     * @param retry True when re-checking a trigger that was already suppressed
+     *              (and counted) once, so it is not counted again.
+     */
+    public boolean tryDispatch(String packageName, long now, boolean retry) {
+        long last = dispatchedAt;
+        boolean recent = last >= 0 && now - last < COALESCE_WINDOW_MS;
+
+        if (recent && packageName.equals(dispatchedPackage)) {
+            if (!retry) suppressed.incrementAndGet();
+            return false;
+        }
+
+        if (!inFlight.compareAndSet(false, true)) {
+            // Another launch is still on its way; only a stuck one may be replaced
+            if (last >= 0 && now - last < LockDecisionEngine.LOCK_SHOW_TIMEOUT_MS) {
+                if (!retry) suppressed.incrementAndGet();
+                return false;
+            }
+        }
+
+        dispatchedPackage = packageName;
+        dispatchedAt = now;
+        return true;
+    }
+
+    /**
+     * The Intent could not be delivered: allow the next trigger straight away.
+     */
+    public void onDispatchFailed() {
+        dispatchedAt = -1;
+        inFlight.set(false);
+    }
+
+    /**
+     * LockScreenActivity is on screen; the flight is over.
+     */
+    public void onLockShown() {
+        inFlight.set(false);
+    }
+
+    /**
+     * LockScreenActivity closed; later triggers are no longer coalesced with this one.
+     */
+    public void onLockDismissed() {
+        inFlight.set(false);
+        dispatchedAt = -1;
+    }
+
+    public boolean isInFlight() {
+        return inFlight.get();
+    }
+
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+}
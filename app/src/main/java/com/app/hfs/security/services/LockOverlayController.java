@@ -0,0 +1,118 @@
+package com.hfs.security.services;
+
+import android.content.Context;
+import android.graphics.PixelFormat;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.WindowManager;
+
+import com.hfs.security.R;
+import com.hfs.security.utils.PermissionHelper;
+
+/**
+ * Persistent Lock Shield.
+ * A pre-inflated TYPE_APPLICATION_OVERLAY window owned by AppMonitorService.
+ * 1. Added once (hidden, untouchable) when the guard starts.
+ * 2. Shown instantly when a protected app is detected, covering its content.
+ * 3. Hidden again once LockScreenActivity has drawn its first frame and taken over
+ *    the biometric / credential flow.
+ * Only used when the user has granted "Draw Over Other Apps"; otherwise the
+ * guard relies on LockScreenActivity alone. All methods must run on the main thread.
+ */
+public class LockOverlayController {
+
+    private static final String TAG = "HFS_LockOverlay";
+
+    // Safety net: never leave the shield up if the lock screen fails to appear
+    private static final long MAX_SHIELD_MS = LockDecisionEngine.LOCK_SHOW_TIMEOUT_MS;
+
+    private final WindowManager windowManager;
+    private final View shieldView;
+    private final WindowManager.LayoutParams params;
+    private final Runnable autoHide = this::hide;
+
+    private boolean attached = false;
+    private long shownAt = -1;
+
+    public LockOverlayController(Context context) {
+        windowManager = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
+        shieldView = LayoutInflater.from(context).inflate(R.layout.layout_lock_overlay, null);
+        shieldView.setVisibility(View.GONE);
+
+        params = new WindowManager.LayoutParams(
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.MATCH_PARENT,
+                WindowManager.LayoutParams.TYPE_APPLICATION_OVERLAY,
+                hiddenFlags(),
+                PixelFormat.OPAQUE);
+
+        if (PermissionHelper.canDrawOverlays(context) && windowManager != null) {
+            try {
+                windowManager.addView(shieldView, params);
+                attached = true;
+            } catch (Exception e) {
+                Log.e(TAG, "Overlay window unavailable, using activity path only: " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isAvailable() {
+        return attached;
+    }
+
+    /**
+     * Covers the screen immediately. Touches are consumed so the protected
+     * app cannot be used while LockScreenActivity starts.
+     */
+    public void show() {
+        if (!attached) return;
+
+        shownAt = SystemClock.elapsedRealtime();
+        params.flags = visibleFlags();
+        shieldView.setVisibility(View.VISIBLE);
+        windowManager.updateViewLayout(shieldView, params);
+
+        shieldView.removeCallbacks(autoHide);
+        shieldView.postDelayed(autoHide, MAX_SHIELD_MS);
+    }
+
+    /**
+     * Returns the shield to its hidden, untouchable state.
+     */
+    public void hide() {
+        if (!attached || shownAt < 0) return;
+
+        shieldView.removeCallbacks(autoHide);
+        shieldView.setVisibility(View.GONE);
+        params.flags = hiddenFlags();
+        windowManager.updateViewLayout(shieldView, params);
+        shownAt = -1;
+    }
+
+    /**
+     * elapsedRealtime at which the shield was last shown, or -1 if hidden.
+     */
+    public long getShownAt() {
+        return shownAt;
+    }
+
+    public void release() {
+        if (!attached) return;
+        shieldView.removeCallbacks(autoHide);
+        windowManager.removeViewImmediate(shieldView);
+        attached = false;
+    }
+
+    private static int hiddenFlags() {
+        return WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                | WindowManager.LayoutParams.FLAG_NOT_TOUCHABLE
+                | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN;
+    }
+
+    private static int visibleFlags() {
+        return WindowManager.LayoutParams.FLAG_NOT_FOCUSABLE
+                | WindowManager.LayoutParams.FLAG_LAYOUT_IN_SCREEN;
+    }
+}
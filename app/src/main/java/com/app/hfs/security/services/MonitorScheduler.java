@@ -0,0 +1,115 @@
+package com.hfs.security.services;
+
+/**
+ * Adaptive Tick Policy for the Guard Loop.
+ * Decides how long the monitor sleeps between UsageStats checks:
+ * 1. Suspends completely while the screen is off or the keyguard is up.
+ * 2. Ticks fast right after an app switch, when the next switch is most likely.
+ * 3. Backs off while the same package stays in the foreground, but never past
+ *    MAX_TICK_MS: a protected app opened mid-backoff is visible for at most
+ *    that long before the lock fires (the old fixed loop's 500 ms).
+ * 4. Skips the fast ticks while the battery is low, within the same cap.
+ * Also counts how many wakeups it saved against the old fixed 500 ms loop.
+ * Framework-free; all times are elapsedRealtime milliseconds supplied by the caller.
+ */
+public class MonitorScheduler {
+
+    /** Returned by {@link #nextDelay} when the loop should not be re-posted. */
+    public static final long SUSPENDED = -1;
+
+    // The old fixed period, used as the baseline for the savings counter
+    static final long BASELINE_TICK_MS = 500;
+
+    private static final long FAST_TICK_MS = 250;
+    // Worst-case exposure window for a newly opened protected app
+    static final long MAX_TICK_MS = BASELINE_TICK_MS;
+    private static final int LOW_BATTERY_FACTOR = 2;
+    private static final long HOUR_MS = 60 * 60 * 1000;
+
+    private boolean screenInteractive = true;
+    private boolean batteryLow = false;
+    private long currentDelay = FAST_TICK_MS;
+
+    // Savings accounting
+    private long startedAt = -1;
+    private long ticks = 0;
+    private long lastReportAt = -1;
+
+    /**
+     * Computes the delay before the next tick.
+     *
+     * @param now Current elapsedRealtime.
+     * @param foregroundChanged Whether this tick saw a different foreground package.
+     * @return Delay in milliseconds, or {@link #SUSPENDED}.
+     */
+    public synchronized long nextDelay(long now, boolean foregroundChanged) {
+        if (startedAt < 0) {
+            startedAt = now;
+            lastReportAt = now;
+        }
+        ticks++;
+
+        if (!screenInteractive) {
+            return SUSPENDED;
+        }
+
+        if (foregroundChanged) {
+            currentDelay = FAST_TICK_MS;
+        } else {
+            currentDelay = Math.min(currentDelay * 2, MAX_TICK_MS);
+        }
+
+        return batteryLow ? Math.min(currentDelay * LOW_BATTERY_FACTOR, MAX_TICK_MS) : currentDelay;
+    }
+
+    /**
+     * Screen turned off: the loop stops until the user is present again.
+     */
+    public synchronized void onScreenOff() {
+        screenInteractive = false;
+    }
+
+    /**
+     * User unlocked the device (or the screen came on without a keyguard).
+     * The first ticks after waking run fast because an app launch usually follows.
+     */
+    public synchronized void onUserPresent() {
+        screenInteractive = true;
+        currentDelay = FAST_TICK_MS;
+    }
+
+    public synchronized void setBatteryLow(boolean low) {
+        batteryLow = low;
+    }
+
+    public synchronized boolean isSuspended() {
+        return !screenInteractive;
+    }
+
+    /**
+     * Wakeups avoided per hour compared to a fixed {@link #BASELINE_TICK_MS} loop
+     * running over the same wall time (including time spent suspended).
+     */
+    public synchronized long getSavedWakeupsPerHour(long now) {
+        long elapsed = now - startedAt;
+        if (startedAt < 0 || elapsed <= 0) return 0;
+
+        long baselineTicks = elapsed / BASELINE_TICK_MS;
+        return (baselineTicks - ticks) * HOUR_MS / elapsed;
+    }
+
+    public synchronized long getTickCount() {
+        return ticks;
+    }
+
+    /**
+     * Returns true once per hour so the caller can log the savings figure.
+     */
+    public synchronized boolean isReportDue(long now) {
+        if (lastReportAt >= 0 && now - lastReportAt >= HOUR_MS) {
+            lastReportAt = now;
+            return true;
+        }
+        return false;
+    }
+}
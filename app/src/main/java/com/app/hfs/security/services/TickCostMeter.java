@@ -0,0 +1,166 @@
+package com.hfs.security.services;
+
+import android.os.Debug;
+import android.os.SystemClock;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Guard Cost Accounting.
+ * Measures what every guard tick costs on the device it runs on:
+ * 1. Thread CPU time (Debug.threadCpuTimeNanos, falling back to currentThreadTimeMillis).
+ * 2. Wall time spent inside the tick.
+ * 3. Allocations (Debug.getThreadAllocCount; debuggable builds only).
+ * 4. Guard thread wakeups (ticks, pushed events and broadcasts).
+ * Totals roll over one-minute buckets so the last hour is always available,
+ * alongside totals since the guard started. begin()/end() belong to the guard
+ * thread; the rest may be read from any thread (e.g. dumpsys).
+ */
+public class TickCostMeter {
+
+    private static final int BUCKETS = 60;
+    private static final long BUCKET_MS = 60 * 1000;
+
+    // Indices into each bucket's counters
+    private static final int TICKS = 0;
+    private static final int CPU_NS = 1;
+    private static final int WALL_NS = 2;
+    private static final int ALLOCS = 3;
+    private static final int WAKEUPS = 4;
+    private static final int OVER_BUDGET = 5;
+    private static final int FIELDS = 6;
+
+    private final boolean countAllocations;
+    private final long[][] buckets = new long[BUCKETS][FIELDS];
+    private final long[] totals = new long[FIELDS];
+    private long currentBucket = -1;
+    private long worstCpuNs;
+    private long startedAt = -1;
+
+    private volatile long budgetNs;
+
+    // Scratch for the tick in progress (guard thread only)
+    private long cpuStart;
+    private long wallStart;
+    private long allocStart;
+
+    public TickCostMeter(long budgetMicros, boolean countAllocations) {
+        this.budgetNs = budgetMicros * 1000;
+        this.countAllocations = countAllocations;
+    }
+
+    /**
+     * Must run once on the guard thread before the first tick when allocations are counted.
+     */
+    @SuppressWarnings("deprecation")
+    public void startOnGuardThread() {
+        if (countAllocations) {
+            Debug.startAllocCounting();
+        }
+    }
+
+    public void setBudgetMicros(long budgetMicros) {
+        budgetNs = budgetMicros * 1000;
+    }
+
+    public long getBudgetMicros() {
+        return budgetNs / 1000;
+    }
+
+    public void begin() {
+        cpuStart = threadCpuNanos();
+        wallStart = SystemClock.elapsedRealtimeNanos();
+        allocStart = countAllocations ? threadAllocs() : 0;
+    }
+
+    /**
+     * Closes the tick started by {@link #begin()}.
+     *
+     * @return true if the tick went over the CPU budget.
+     */
+    public boolean end(long now) {
+        long cpu = threadCpuNanos() - cpuStart;
+        long wall = SystemClock.elapsedRealtimeNanos() - wallStart;
+        long allocs = countAllocations ? threadAllocs() - allocStart : 0;
+        boolean over = cpu > budgetNs;
+
+        synchronized (this) {
+            long[] bucket = bucketFor(now);
+            add(bucket, TICKS, 1);
+            add(bucket, CPU_NS, cpu);
+            add(bucket, WALL_NS, wall);
+            add(bucket, ALLOCS, allocs);
+            if (over) add(bucket, OVER_BUDGET, 1);
+            worstCpuNs = Math.max(worstCpuNs, cpu);
+        }
+        return over;
+    }
+
+    /**
+     * The guard thread was woken up (tick, pushed event or broadcast).
+     */
+    public synchronized void onWakeup(long now) {
+        add(bucketFor(now), WAKEUPS, 1);
+    }
+
+    /**
+     * Prints last-hour and since-start totals, for AppMonitorService.dump().
+     */
+    public synchronized void dump(PrintWriter pw, long now) {
+        long[] hour = new long[FIELDS];
+        long oldest = now / BUCKET_MS - (BUCKETS - 1);
+        for (long b = Math.max(oldest, 0); b <= now / BUCKET_MS; b++) {
+            if (b > currentBucket) break;
+            long[] bucket = buckets[(int) (b % BUCKETS)];
+            for (int f = 0; f < FIELDS; f++) hour[f] += bucket[f];
+        }
+
+        pw.println("  Budget: " + getBudgetMicros() + " us CPU per tick");
+        pw.println("  Allocation counting: " + (countAllocations ? "on (debuggable build)" : "off"));
+        long uptime = startedAt < 0 ? 0 : now - startedAt;
+        pw.println("  Measuring for: " + uptime / 1000 + " s");
+        printRow(pw, "Last hour", hour);
+        printRow(pw, "Since start", totals);
+        pw.println(String.format(Locale.US, "  Worst tick CPU: %.1f us", worstCpuNs / 1000.0));
+    }
+
+    private void printRow(PrintWriter pw, String label, long[] v) {
+        long ticks = v[TICKS];
+        pw.println(String.format(Locale.US,
+                "  %s: ticks=%d wakeups=%d cpu=%.2f ms (%.1f us/tick) wall=%.2f ms allocs=%d over-budget=%d",
+                label, ticks, v[WAKEUPS], v[CPU_NS] / 1e6,
+                ticks == 0 ? 0.0 : v[CPU_NS] / 1000.0 / ticks,
+                v[WALL_NS] / 1e6, v[ALLOCS], v[OVER_BUDGET]));
+    }
+
+    private long[] bucketFor(long now) {
+        if (startedAt < 0) startedAt = now;
+        long index = now / BUCKET_MS;
+        if (index > currentBucket) {
+            // Clear every bucket we skipped over (at most a full revolution)
+            long from = Math.max(currentBucket + 1, index - BUCKETS + 1);
+            for (long b = from; b <= index; b++) {
+                long[] bucket = buckets[(int) (b % BUCKETS)];
+                for (int f = 0; f < FIELDS; f++) bucket[f] = 0;
+            }
+            currentBucket = index;
+        }
+        return buckets[(int) (currentBucket % BUCKETS)];
+    }
+
+    private void add(long[] bucket, int field, long value) {
+        bucket[field] += value;
+        totals[field] += value;
+    }
+
+    private static long threadCpuNanos() {
+        long nanos = Debug.threadCpuTimeNanos();
+        return nanos >= 0 ? nanos : SystemClock.currentThreadTimeMillis() * 1000000L;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static long threadAllocs() {
+        return Debug.getThreadAllocCount();
+    }
+}
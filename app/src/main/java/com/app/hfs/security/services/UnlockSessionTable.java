@@ -0,0 +1,187 @@
+package com.hfs.security.services;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Owner Unlock Sessions.
+ * Holds any number of concurrently unlocked apps, each with its own grace period:
+ * 1. A session is pinned (never expires) while its app is in the foreground.
+ * 2. When the user leaves the app, its grace countdown starts.
+ * 3. Returning within the grace period resumes the session without a new prompt.
+ * Expiry runs on a hashed timing wheel, so advancing the clock costs O(1) per
+ * elapsed wheel tick regardless of how many sessions are open.
+ * Not thread-safe: LockDecisionEngine serialises all access.
+ */
+public class UnlockSessionTable {
+
+    // Wheel resolution and size: 64 x 250 ms covers a 16 s horizon per revolution
+    static final long WHEEL_TICK_MS = 250;
+    private static final int WHEEL_SLOTS = 64;
+    private static final int WHEEL_MASK = WHEEL_SLOTS - 1;
+
+    private final Map<String, Session> sessions = new HashMap<>();
+    private final Session[] wheel = new Session[WHEEL_SLOTS];
+    private long wheelCursor = -1;
+
+    /**
+     * Opens (or refreshes) a session. Its countdown starts immediately and is
+     * cancelled once the app reaches the foreground.
+     */
+    public void open(String packageName, long now, long graceMs) {
+        Session session = sessions.get(packageName);
+        if (session == null) {
+            session = new Session(packageName);
+            sessions.put(packageName, session);
+        }
+        session.graceMs = graceMs;
+        schedule(session, now + graceMs);
+    }
+
+    /**
+     * The app reached the foreground. Returns true if it still holds a live
+     * session, which is then pinned until {@link #release} is called.
+     */
+    public boolean resume(String packageName, long now) {
+        Session session = sessions.get(packageName);
+        if (session == null) return false;
+
+        if (session.scheduled && session.deadline <= now) {
+            // Expired but not yet reclaimed by the wheel
+            remove(session);
+            return false;
+        }
+        unschedule(session);
+        return true;
+    }
+
+    /**
+     * The app left the foreground: start its grace countdown.
+     */
+    public void release(String packageName, long now) {
+        Session session = sessions.get(packageName);
+        if (session != null && !session.scheduled) {
+            schedule(session, now + session.graceMs);
+        }
+    }
+
+    public boolean isOpen(String packageName, long now) {
+        Session session = sessions.get(packageName);
+        return session != null && (!session.scheduled || session.deadline > now);
+    }
+
+    /**
+     * Moves the wheel up to {@code now} and drops every session whose grace ran out.
+     *
+     * @return Number of sessions that expired.
+     */
+    public int advance(long now) {
+        long target = now / WHEEL_TICK_MS;
+        if (wheelCursor < 0) {
+            wheelCursor = target;
+        }
+        if (target < wheelCursor) return 0;
+
+        int expired = 0;
+        // After a long gap every slot is visited once; entries keep their exact deadline
+        long steps = Math.min(target - wheelCursor, WHEEL_SLOTS - 1);
+        for (long tick = target - steps; tick <= target; tick++) {
+            Session node = wheel[(int) (tick & WHEEL_MASK)];
+            while (node != null) {
+                Session next = node.next;
+                if (node.deadline <= now) {
+                    remove(node);
+                    expired++;
+                }
+                node = next;
+            }
+        }
+        wheelCursor = target;
+        return expired;
+    }
+
+    /**
+     * Drops every session, e.g. when the screen turns off.
+     */
+    public void clear() {
+        sessions.clear();
+        for (int i = 0; i < WHEEL_SLOTS; i++) {
+            wheel[i] = null;
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    /**
+     * Copies every live session into {@code out} as package -> {remaining ms, grace ms}.
+     * A pinned (foreground) session reports its full grace period as remaining.
+     */
+    public void exportTo(Map<String, long[]> out, long now) {
+        for (Session session : sessions.values()) {
+            long remaining = session.scheduled ? session.deadline - now : session.graceMs;
+            if (remaining > 0) {
+                out.put(session.packageName, new long[] {remaining, session.graceMs});
+            }
+        }
+    }
+
+    /**
+     * Re-creates a session saved by {@link #exportTo}; its countdown runs from {@code now}.
+     */
+    public void restore(String packageName, long now, long remainingMs, long graceMs) {
+        open(packageName, now, graceMs);
+        schedule(sessions.get(packageName), now + remainingMs);
+    }
+
+    private void schedule(Session session, long deadline) {
+        unschedule(session);
+        session.deadline = deadline;
+        session.slot = (int) ((deadline / WHEEL_TICK_MS) & WHEEL_MASK);
+        session.scheduled = true;
+
+        Session head = wheel[session.slot];
+        session.prev = null;
+        session.next = head;
+        if (head != null) head.prev = session;
+        wheel[session.slot] = session;
+    }
+
+    private void unschedule(Session session) {
+        if (!session.scheduled) return;
+
+        if (session.prev != null) {
+            session.prev.next = session.next;
+        } else {
+            wheel[session.slot] = session.next;
+        }
+        if (session.next != null) session.next.prev = session.prev;
+
+        session.prev = null;
+        session.next = null;
+        session.scheduled = false;
+    }
+
+    private void remove(Session session) {
+        unschedule(session);
+        sessions.remove(session.packageName);
+    }
+
+    /**
+     * One unlocked app; doubles as its own timing-wheel list node.
+     */
+    private static final class Session {
+        final String packageName;
+        long graceMs;
+        long deadline;
+        int slot;
+        boolean scheduled;
+        Session prev;
+        Session next;
+
+        Session(String packageName) {
+            this.packageName = packageName;
+        }
+    }
+}
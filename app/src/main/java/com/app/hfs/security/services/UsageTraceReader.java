@@ -0,0 +1,95 @@
+package com.hfs.security.services;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UsageEvents Trace Reader.
+ * Decodes the files written by UsageTraceRecorder; the format is documented
+ * there. Kept next to the recorder so both sides of the format change together.
+ * Framework-free.
+ */
+public final class UsageTraceReader {
+
+    /**
+     * One decoded trace record. {@code packageName} is null for device-state markers.
+     */
+    public static final class Event {
+        public final int type;
+        public final String packageName;
+        public final long timestamp;
+
+        Event(int type, String packageName, long timestamp) {
+            this.type = type;
+            this.packageName = packageName;
+            this.timestamp = timestamp;
+        }
+    }
+
+    private UsageTraceReader() {
+    }
+
+    /**
+     * Decodes a whole trace. A record cut off by a killed recorder ends the
+     * trace; everything before it is kept.
+     */
+    public static List<Event> read(InputStream input) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+        if (in.readInt() != UsageTraceRecorder.MAGIC) {
+            throw new IOException("Not an HFS usage trace");
+        }
+        int version = in.readUnsignedByte();
+        if (version != UsageTraceRecorder.VERSION) {
+            throw new IOException("Unsupported trace version " + version);
+        }
+
+        List<Event> events = new ArrayList<>();
+        List<String> packages = new ArrayList<>();
+        long timestamp;
+        try {
+            timestamp = in.readLong();
+        } catch (EOFException empty) {
+            return events;
+        }
+
+        while (true) {
+            int type = in.read();
+            if (type < 0) break;
+            try {
+                if (type == UsageTraceRecorder.TYPE_STRING) {
+                    byte[] utf8 = new byte[(int) readVarint(in)];
+                    in.readFully(utf8);
+                    packages.add(new String(utf8, StandardCharsets.UTF_8));
+                    continue;
+                }
+                long zigzag = readVarint(in);
+                timestamp += (zigzag >>> 1) ^ -(zigzag & 1);
+                String packageName = null;
+                if (type == UsageTraceRecorder.TYPE_RESUMED || type == UsageTraceRecorder.TYPE_PAUSED) {
+                    packageName = packages.get((int) readVarint(in));
+                }
+                events.add(new Event(type, packageName, timestamp));
+            } catch (EOFException truncated) {
+                // The recorder may have been killed mid-record; keep what is complete
+                break;
+            }
+        }
+        return events;
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+}
@@ -0,0 +1,170 @@
+package com.hfs.security.services;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * UsageEvents Trace Recorder (debug mode).
+ * Writes the event stream the guard sees to a compact binary file so real
+ * app-switch sequences can be replayed offline. UsageTraceReader decodes it.
+ *
+ * Format (all integers are unsigned LEB128 varints unless noted):
+ *   header : "HFST" magic, version byte, first timestamp (8 bytes, big-endian)
+ *   record : type byte, then
+ *            TYPE_STRING        -> length, UTF-8 bytes (next package id)
+ *            TYPE_RESUMED/PAUSED -> zigzag timestamp delta, package id
+ *            TYPE_SCREEN_OFF/USER_PRESENT -> zigzag timestamp delta
+ * Package names are written once and then referenced by id, so a typical
+ * app switch costs 4-6 bytes. Framework-free; call from the guard thread only.
+ */
+public class UsageTraceRecorder {
+
+    static final int MAGIC = 0x48465354; // "HFST"
+    static final int VERSION = 1;
+
+    static final int TYPE_STRING = 0;
+    public static final int TYPE_RESUMED = 1;
+    public static final int TYPE_PAUSED = 2;
+    public static final int TYPE_SCREEN_OFF = 3;
+    public static final int TYPE_USER_PRESENT = 4;
+
+    // Stop recording instead of filling the disk if debug mode is left on
+    private static final long MAX_TRACE_BYTES = 8L * 1024 * 1024;
+
+    private final File file;
+    private final Map<String, Integer> packageIds = new HashMap<>();
+    private OutputStream out;
+    private long lastTimestamp = Long.MIN_VALUE;
+    private long bytesWritten;
+    private long eventCount;
+
+    public UsageTraceRecorder(File file) throws IOException {
+        this.file = file;
+        this.out = new BufferedOutputStream(new FileOutputStream(file), 16 * 1024);
+        writeInt(MAGIC);
+        writeByte(VERSION);
+    }
+
+    /**
+     * Records a resume / pause event for {@code packageName}.
+     */
+    public void record(int type, String packageName, long timestamp) {
+        if (out == null) return;
+        try {
+            writeBaseTimestamp(timestamp);
+            Integer id = packageIds.get(packageName);
+            if (id == null) {
+                id = packageIds.size();
+                packageIds.put(packageName, id);
+                byte[] utf8 = packageName.getBytes(StandardCharsets.UTF_8);
+                writeByte(TYPE_STRING);
+                writeVarint(utf8.length);
+                out.write(utf8);
+                bytesWritten += utf8.length;
+            }
+            writeTypeAndDelta(type, timestamp);
+            writeVarint(id);
+            afterRecord();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    /**
+     * Records a device-state marker (screen off / user present).
+     */
+    public void recordMarker(int type, long timestamp) {
+        if (out == null) return;
+        try {
+            writeBaseTimestamp(timestamp);
+            writeTypeAndDelta(type, timestamp);
+            afterRecord();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    public boolean isRecording() {
+        return out != null;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getEventCount() {
+        return eventCount;
+    }
+
+    public void flush() {
+        if (out == null) return;
+        try {
+            out.flush();
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    public void close() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // Nothing left to salvage
+        }
+        out = null;
+    }
+
+    private void writeBaseTimestamp(long timestamp) throws IOException {
+        if (lastTimestamp == Long.MIN_VALUE) {
+            // First record: the full timestamp completes the header once
+            writeLong(timestamp);
+            lastTimestamp = timestamp;
+        }
+    }
+
+    private void writeTypeAndDelta(int type, long timestamp) throws IOException {
+        writeByte(type);
+        long delta = timestamp - lastTimestamp;
+        writeVarint((delta << 1) ^ (delta >> 63));
+        lastTimestamp = timestamp;
+    }
+
+    private void afterRecord() {
+        eventCount++;
+        if (bytesWritten >= MAX_TRACE_BYTES) {
+            close();
+        }
+    }
+
+    private void writeByte(int value) throws IOException {
+        out.write(value);
+        bytesWritten++;
+    }
+
+    private void writeInt(int value) throws IOException {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            writeByte((value >>> shift) & 0xFF);
+        }
+    }
+
+    private void writeLong(long value) throws IOException {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            writeByte((int) (value >>> shift) & 0xFF);
+        }
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+}
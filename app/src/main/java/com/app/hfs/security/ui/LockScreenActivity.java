@@ -9,8 +9,10 @@ import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
+import android.view.ViewTreeObserver;
 import android.view.WindowManager;
 import android.widget.Toast;
 
@@ -22,7 +24,6 @@ import androidx.biometric.BiometricManager;
 import androidx.biometric.BiometricPrompt;
 import androidx.camera.core.CameraSelector;
 import androidx.camera.core.ImageAnalysis;
-import androidx.camera.core.ImageProxy;
 import androidx.camera.core.Preview;
 import androidx.camera.lifecycle.ProcessCameraProvider;
 import androidx.core.app.ActivityCompat;
@@ -31,13 +32,18 @@ import androidx.core.content.ContextCompat;
 import com.hfs.security.R;
 import com.hfs.security.databinding.ActivityLockScreenBinding;
 import com.hfs.security.services.AppMonitorService;
-import com.hfs.security.utils.FileSecureHelper;
+import com.hfs.security.services.LockDecisionEngine;
+import com.hfs.security.utils.EvidencePipeline;
+import com.hfs.security.utils.FrameRingBuffer;
 import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.IntrusionDatabase;
 import com.hfs.security.utils.LocationHelper;
+import com.hfs.security.utils.LockLatencyTracker;
 import com.hfs.security.utils.SmsHelper;
 
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
@@ -49,20 +55,35 @@ import java.util.concurrent.Executors;
  * 1. Resolved Android 9 (API 28) Authenticator combination crash.
  * 2. Implemented KeyguardManager fallback for System PIN on older devices.
  * 3. Maintained Invisible Intruder Capture and HFS MPIN backup.
+ * 4. Reports its first drawn frame so the guard's instant overlay can step aside
+ *    and the end-to-end lock latency can be recorded.
+ * 5. Records each intruder alert (photo, location, SMS status) in IntrusionDatabase.
+ * 6. The evidence frames are picked and copied out of the ring on the camera
+ *    thread, between analyzer calls, and saved by EvidencePipeline; nothing
+ *    heavy runs on the UI thread.
+ * 7. Pre-trigger ring: the last few camera frames are kept, and the
+ *    best-scoring ones from the seconds around the failed attempt become the evidence.
  */
 public class LockScreenActivity extends AppCompatActivity {
 
     private static final String TAG = "HFS_LockScreen";
     private static final int SYSTEM_CREDENTIAL_REQUEST_CODE = 505;
+    private static final String ALERT_TYPE = "System Security Failure";
+    private static final int EVIDENCE_FRAMES = 3;
+    private static final long EVIDENCE_WINDOW_MS = 2000;
+    public static final int RING_MAX_FRAMES = 8;
+    public static final int RING_DEFAULT_KB = 4096;
 
     private ActivityLockScreenBinding binding;
     private ExecutorService cameraExecutor;
     private HFSDatabaseHelper db;
+    private LockDecisionEngine lockEngine;
     private String targetPackage;
+    private long createdAt;
     
     private boolean isActionTaken = false;
-    private boolean isCameraCaptured = false;
-    private ImageProxy lastCapturedFrame = null;
+    private EvidencePipeline evidence;
+    private FrameRingBuffer frameRing;
 
     private Executor biometricExecutor;
     private BiometricPrompt biometricPrompt;
@@ -71,9 +92,12 @@ public class LockScreenActivity extends AppCompatActivity {
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        createdAt = SystemClock.elapsedRealtime();
 
         // Prevent loop re-triggering while this screen is active
-        AppMonitorService.isLockActive = true;
+        lockEngine = AppMonitorService.getLockEngine();
+        lockEngine.onLockShown(SystemClock.elapsedRealtime());
+        AppMonitorService.getLockDispatcher().onLockShown();
 
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_SHOW_WHEN_LOCKED
                 | WindowManager.LayoutParams.FLAG_DISMISS_KEYGUARD
@@ -82,9 +106,13 @@ public class LockScreenActivity extends AppCompatActivity {
 
         binding = ActivityLockScreenBinding.inflate(getLayoutInflater());
         setContentView(binding.getRoot());
+        notifyFirstFrame();
 
         db = HFSDatabaseHelper.getInstance(this);
         cameraExecutor = Executors.newSingleThreadExecutor();
+        evidence = EvidencePipeline.getInstance(this);
+        frameRing = new FrameRingBuffer(evidence, RING_MAX_FRAMES,
+                db.getEvidenceRingKb(RING_DEFAULT_KB) * 1024L);
         targetPackage = getIntent().getStringExtra("TARGET_APP_PACKAGE");
 
         binding.lockContainer.setVisibility(View.VISIBLE);
@@ -103,6 +131,27 @@ public class LockScreenActivity extends AppCompatActivity {
         binding.btnFingerprint.setOnClickListener(v -> triggerSystemAuth());
     }
 
+    /**
+     * Tells AppMonitorService once this screen has actually drawn, so the
+     * pre-inflated overlay covering the protected app can be hidden.
+     */
+    private void notifyFirstFrame() {
+        View root = binding.getRoot();
+        root.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            private boolean reported = false;
+
+            @Override
+            public void onDraw() {
+                if (reported) return;
+                reported = true;
+                LockLatencyTracker.getInstance().recordLock(getIntent(), createdAt, SystemClock.elapsedRealtime());
+                AppMonitorService.onLockScreenDrawn();
+                // Listeners cannot be removed from inside onDraw
+                root.post(() -> root.getViewTreeObserver().removeOnDrawListener(this));
+            }
+        });
+    }
+
     /**
      * Logic: Splits the logic between Android 10+ and Android 9 (Your device).
      */
@@ -189,13 +238,13 @@ public class LockScreenActivity extends AppCompatActivity {
     }
 
     private void onOwnerVerified() {
-        AppMonitorService.isLockActive = false;
         if (targetPackage != null) {
-            AppMonitorService.unlockSession(targetPackage);
-        }
-        if (lastCapturedFrame != null) {
-            lastCapturedFrame.close();
+            lockEngine.onAuthSucceeded(SystemClock.elapsedRealtime(), targetPackage);
+            Log.d(TAG, "Owner Verified. Grace Period active for: " + targetPackage);
+        } else {
+            lockEngine.onLockDismissed();
         }
+        releaseRing();
         finish();
     }
 
@@ -213,14 +262,8 @@ public class LockScreenActivity extends AppCompatActivity {
                         .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
                         .build();
 
-                imageAnalysis.setAnalyzer(cameraExecutor, image -> {
-                    if (!isCameraCaptured) {
-                        isCameraCaptured = true;
-                        lastCapturedFrame = image;
-                    } else {
-                        image.close();
-                    }
-                });
+                // Keeps the last few frames (scored) until an alert picks from them
+                imageAnalysis.setAnalyzer(cameraExecutor, frameRing::onFrame);
 
                 CameraSelector cameraSelector = CameraSelector.DEFAULT_FRONT_CAMERA;
                 cameraProvider.unbindAll();
@@ -246,43 +289,65 @@ public class LockScreenActivity extends AppCompatActivity {
     private void triggerIntruderAlert() {
         if (isActionTaken) return;
         isActionTaken = true;
+        long failedAt = SystemClock.elapsedRealtime();
 
-        runOnUiThread(() -> {
-            if (lastCapturedFrame != null) {
-                FileSecureHelper.saveIntruderCapture(LockScreenActivity.this, lastCapturedFrame);
-            }
-            fetchLocationAndSendAlert();
-            Toast.makeText(this, "⚠ Unauthorized access logged", Toast.LENGTH_LONG).show();
+        String appName = getIntent().getStringExtra("TARGET_APP_NAME");
+        // The camera executor is single-threaded, so the copy never waits on onFrame for the ring;
+        // the row insert, encoding and file I/O then happen on the evidence writer thread
+        cameraExecutor.execute(() -> {
+            List<EvidencePipeline.Frame> frames = frameRing.takeBest(failedAt, EVIDENCE_WINDOW_MS, EVIDENCE_FRAMES);
+            frameRing.close();
+            evidence.recordIntrusion(targetPackage, appName, ALERT_TYPE, frames,
+                    intrusionId -> runOnUiThread(() -> fetchLocationAndSendAlert(intrusionId)));
         });
+        Toast.makeText(this, "⚠ Unauthorized access logged", Toast.LENGTH_LONG).show();
     }
 
-    private void fetchLocationAndSendAlert() {
+    private void fetchLocationAndSendAlert(long intrusionId) {
         String appName = getIntent().getStringExtra("TARGET_APP_NAME");
         final String finalAppName = (appName == null) ? "a Protected App" : appName;
+        IntrusionDatabase intrusions = IntrusionDatabase.getInstance(this);
 
         LocationHelper.getDeviceLocation(this, new LocationHelper.LocationResultCallback() {
             @Override
             public void onLocationFound(String mapLink) {
-                SmsHelper.sendAlertSms(LockScreenActivity.this, finalAppName, mapLink, "System Security Failure");
+                intrusions.setLocation(intrusionId, mapLink);
+                intrusions.setSmsStatus(intrusionId,
+                        SmsHelper.sendAlertSms(LockScreenActivity.this, finalAppName, mapLink, ALERT_TYPE));
             }
 
             @Override
             public void onLocationFailed(String error) {
-                SmsHelper.sendAlertSms(LockScreenActivity.this, finalAppName, "GPS Signal Lost", "System Security Failure");
+                intrusions.setLocation(intrusionId, "GPS Signal Lost");
+                intrusions.setSmsStatus(intrusionId,
+                        SmsHelper.sendAlertSms(LockScreenActivity.this, finalAppName, "GPS Signal Lost", ALERT_TYPE));
             }
         });
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // The cap may have changed in Settings while this screen was in the background
+        frameRing.setMaxBytes(db.getEvidenceRingKb(RING_DEFAULT_KB) * 1024L);
+    }
+
     @Override
     protected void onDestroy() {
+        releaseRing();
         cameraExecutor.shutdown();
-        AppMonitorService.isLockActive = false;
-        if (lastCapturedFrame != null) {
-            lastCapturedFrame.close();
-        }
+        lockEngine.onLockDismissed();
+        AppMonitorService.getLockDispatcher().onLockDismissed();
         super.onDestroy();
     }
 
+    /**
+     * Closes the ring behind any evidence copy already queued on the camera thread.
+     */
+    private void releaseRing() {
+        if (!cameraExecutor.isShutdown()) cameraExecutor.execute(frameRing::close);
+    }
+
     @Override
     public void onBackPressed() {}
 }
\ No newline at end of file
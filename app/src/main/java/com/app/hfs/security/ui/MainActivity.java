@@ -27,6 +27,7 @@ import androidx.navigation.ui.NavigationUI;
 import com.hfs.security.R;
 import com.hfs.security.databinding.ActivityMainBinding;
 import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.PermissionHelper;
 
 /**
  * The Primary Host Activity for HFS Security.
@@ -75,6 +76,11 @@ public class MainActivity extends AppCompatActivity {
 
         checkAllSecurityPermissions();
 
+        // The settings file was corrupt and had no readable backup
+        if (db.isConfigReset()) {
+            showConfigResetWarning();
+        }
+
         // FIX: The Setup Redirect Logic
         // We now check if the Master PIN is empty. If it is NOT empty, we don't show the toast.
         if (getIntent().getBooleanExtra("SHOW_SETUP", false)) {
@@ -169,13 +175,33 @@ public class MainActivity extends AppCompatActivity {
                 .show();
     }
 
-    private void showHelpDialog() {
+    private void showConfigResetWarning() {
         new AlertDialog.Builder(this, R.style.Theme_HFS_Dialog)
+                .setTitle("Settings Were Reset")
+                .setMessage("HFS could not read its saved settings. Your MPIN, trusted number and "
+                        + "protected apps are back to their defaults and must be set up again.")
+                .setCancelable(false)
+                .setPositiveButton("Open Settings", (dialog, which) -> {
+                    db.acknowledgeConfigReset();
+                    if (navController != null) navController.navigate(R.id.nav_settings);
+                })
+                .show();
+    }
+
+    private void showHelpDialog() {
+        AlertDialog.Builder builder = new AlertDialog.Builder(this, R.style.Theme_HFS_Dialog)
                 .setTitle("HFS Security Help")
                 .setMessage("• Phone Security: Ensure you have a system screen lock (Face/Finger/PIN) enabled.\n\n" +
                            "• App Security: Set your 4-digit HFS MPIN in Settings.\n\n" +
+                           "• Instant Lock: Enable HFS under Accessibility so apps lock the moment they open.\n\n" +
                            "• Stealth: Dial your MPIN and press Call to unhide.")
-                .setPositiveButton("Got it", null)
-                .show();
+                .setPositiveButton("Got it", null);
+
+        // Offer the event-driven detector only when it is not yet enabled
+        if (!PermissionHelper.isAccessibilityDetectorEnabled(this)) {
+            builder.setNeutralButton("Enable Instant Lock",
+                    (dialog, which) -> PermissionHelper.openAccessibilitySettings(this));
+        }
+        builder.show();
     }
 }
\ No newline at end of file
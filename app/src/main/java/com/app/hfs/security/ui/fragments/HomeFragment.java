@@ -17,18 +17,22 @@ import androidx.navigation.Navigation;
 import com.hfs.security.R;
 import com.hfs.security.databinding.FragmentHomeBinding;
 import com.hfs.security.services.AppMonitorService;
+import com.hfs.security.services.GuardHealthLog;
 import com.hfs.security.utils.HFSDatabaseHelper;
 
 /**
  * The Main Dashboard of the HFS App.
  * Provides the user with a master toggle to activate/deactivate 
  * the Silent Intruder Detection Service.
+ * Also shows how long protection was down (guard outages) over 24 hours and 7 days.
  */
 public class HomeFragment extends Fragment {
 
     private FragmentHomeBinding binding;
     private HFSDatabaseHelper db;
 
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -92,6 +96,19 @@ public class HomeFragment extends Fragment {
         // Display summary counts from the database
         int protectedCount = db.getProtectedAppsCount();
         binding.tvProtectedAppsSummary.setText(protectedCount + " Apps currently protected");
+
+        // Cumulative time the guard was down while protection was switched on
+        GuardHealthLog health = GuardHealthLog.getInstance(requireContext());
+        binding.tvUnprotectedTime.setText("Unprotected: 24h " + formatDuration(health.getUnprotectedMs(DAY_MS))
+                + " · 7d " + formatDuration(health.getUnprotectedMs(7 * DAY_MS)));
+    }
+
+    private static String formatDuration(long ms) {
+        long seconds = ms / 1000;
+        if (seconds < 60) return seconds + "s";
+        long minutes = seconds / 60;
+        if (minutes < 60) return minutes + "m " + (seconds % 60) + "s";
+        return (minutes / 60) + "h " + (minutes % 60) + "m";
     }
 
     /**
@@ -109,9 +126,8 @@ public class HomeFragment extends Fragment {
      * Stops the background monitor.
      */
     private void stopSecurityService() {
-        Intent serviceIntent = new Intent(requireContext(), AppMonitorService.class);
-        requireContext().stopService(serviceIntent);
-        
+        AppMonitorService.stopGuard(requireContext());
+
         binding.getRoot().postDelayed(this::refreshUI, 500);
     }
 
@@ -14,21 +14,25 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.core.content.FileProvider;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.hfs.security.R;
 import com.hfs.security.adapters.IntruderLogAdapter;
 // CORRECTED IMPORT: Matches fragment_history.xml
 import com.hfs.security.databinding.FragmentHistoryBinding; 
 import com.hfs.security.models.IntruderLog;
+import com.hfs.security.utils.IntrusionDatabase;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Screen for viewing Intruder Evidence (Phase 6).
- * Scans the hidden internal directory for captured photos and intrusion logs.
+ * Reads intrusion records from IntrusionDatabase in pages, newest first,
+ * loading the next page as the grid scrolls.
  * Displays data in a grid for easy identification of intruders.
  */
 public class IntruderHistoryFragment extends Fragment implements IntruderLogAdapter.OnLogActionListener {
@@ -37,6 +41,15 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
     private FragmentHistoryBinding binding;
     private IntruderLogAdapter adapter;
     private List<IntruderLog> intruderLogList;
+    private IntrusionDatabase intrusions;
+
+    private static final int PAGE_SIZE = 30;
+    // Queries and deletes run off the UI thread; one executor per view
+    private ExecutorService executor;
+    private boolean loadingPage = false;
+    private boolean reachedEnd = false;
+    // Bumped on every reload so a page from an older listing is dropped
+    private int listingGeneration = 0;
 
     @Nullable
     @Override
@@ -51,6 +64,10 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
         super.onViewCreated(view, savedInstanceState);
         
         intruderLogList = new ArrayList<>();
+        intrusions = IntrusionDatabase.getInstance(requireContext());
+        executor = Executors.newSingleThreadExecutor();
+        // Runs ahead of the first page on the same executor, so it is listed
+        executor.execute(intrusions::importLegacyPhotos);
         setupRecyclerView();
         loadIntrusionLogs();
 
@@ -66,37 +83,61 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
         binding.rvIntruderLogs.setLayoutManager(new GridLayoutManager(requireContext(), 2));
         adapter = new IntruderLogAdapter(intruderLogList, this);
         binding.rvIntruderLogs.setAdapter(adapter);
+
+        // Fetch the next page when the user nears the end of what is loaded
+        binding.rvIntruderLogs.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                GridLayoutManager layoutManager = (GridLayoutManager) recyclerView.getLayoutManager();
+                if (dy > 0 && layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= intruderLogList.size() - PAGE_SIZE / 2) {
+                    loadNextPage();
+                }
+            }
+        });
     }
 
     /**
-     * Scans the HFS internal storage directory for .jpg files.
-     * Path: /Android/data/com.hfs.security/files/intruders/
+     * Restarts the listing from the newest intrusion.
      */
     private void loadIntrusionLogs() {
-        binding.progressBar.setVisibility(View.VISIBLE);
+        listingGeneration++;
+        loadingPage = false;
+        reachedEnd = false;
         intruderLogList.clear();
+        adapter.notifyDataSetChanged();
+        loadNextPage();
+    }
 
-        // Reference the secure intruders directory
-        File intrudersDir = new File(requireContext().getExternalFilesDir(null), "intruders");
-        
-        if (intrudersDir.exists() && intrudersDir.isDirectory()) {
-            File[] photoFiles = intrudersDir.listFiles((dir, name) -> 
-                    name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".png"));
-            
-            if (photoFiles != null) {
-                for (File file : photoFiles) {
-                    intruderLogList.add(new IntruderLog(file));
-                }
-            }
-        }
-
-        // Sort by timestamp: Newest intrusion attempts at the top
-        Collections.sort(intruderLogList, (log1, log2) -> 
-                Long.compare(log2.getTimestamp(), log1.getTimestamp()));
+    /**
+     * Appends the next page of intrusions, keyed on the last loaded row.
+     */
+    private void loadNextPage() {
+        if (loadingPage || reachedEnd) return;
+        loadingPage = true;
+        binding.progressBar.setVisibility(View.VISIBLE);
 
-        binding.progressBar.setVisibility(View.GONE);
-        adapter.notifyDataSetChanged();
+        final int generation = listingGeneration;
+        final IntruderLog after = intruderLogList.isEmpty()
+                ? null : intruderLogList.get(intruderLogList.size() - 1);
+        executor.execute(() -> {
+            List<IntruderLog> page = intrusions.getPage(after, null, PAGE_SIZE);
+            if (getActivity() == null || !isAdded()) return;
+            getActivity().runOnUiThread(() -> {
+                if (binding == null || generation != listingGeneration) return;
+                loadingPage = false;
+                reachedEnd = page.size() < PAGE_SIZE;
+
+                int start = intruderLogList.size();
+                intruderLogList.addAll(page);
+                adapter.notifyItemRangeInserted(start, page.size());
+                binding.progressBar.setVisibility(View.GONE);
+                updateEmptyState();
+            });
+        });
+    }
 
+    private void updateEmptyState() {
         // Toggle Empty State UI
         if (intruderLogList.isEmpty()) {
             binding.tvNoIntruders.setVisibility(View.VISIBLE);
@@ -115,6 +156,10 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
      */
     @Override
     public void onLogClicked(IntruderLog log) {
+        if (!log.hasPhoto()) {
+            Toast.makeText(requireContext(), "No photo was captured for this alert", Toast.LENGTH_SHORT).show();
+            return;
+        }
         File file = new File(log.getFilePath());
         Uri uri = FileProvider.getUriForFile(requireContext(), 
                 requireContext().getPackageName() + ".fileprovider", file);
@@ -138,13 +183,20 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
         new AlertDialog.Builder(requireContext())
                 .setTitle("Delete Evidence?")
                 .setMessage("This will permanently remove this intruder photo.")
-                .setPositiveButton("Delete", (dialog, which) -> {
-                    File file = new File(log.getFilePath());
-                    if (file.delete()) {
+                .setPositiveButton("Delete", (dialog, which) -> executor.execute(() -> {
+                    intrusions.delete(log);
+                    if (getActivity() == null || !isAdded()) return;
+                    getActivity().runOnUiThread(() -> {
+                        if (binding == null) return;
+                        int position = intruderLogList.indexOf(log);
+                        if (position >= 0) {
+                            intruderLogList.remove(position);
+                            adapter.notifyItemRemoved(position);
+                        }
+                        updateEmptyState();
                         Toast.makeText(requireContext(), "Log deleted", Toast.LENGTH_SHORT).show();
-                        loadIntrusionLogs();
-                    }
-                })
+                    });
+                }))
                 .setNegativeButton("Cancel", null)
                 .show();
     }
@@ -153,18 +205,20 @@ public class IntruderHistoryFragment extends Fragment implements IntruderLogAdap
         new AlertDialog.Builder(requireContext())
                 .setTitle("Clear All Logs?")
                 .setMessage("Are you sure you want to delete ALL intruder history?")
-                .setPositiveButton("Clear All", (dialog, which) -> {
-                    for (IntruderLog log : intruderLogList) {
-                        new File(log.getFilePath()).delete();
-                    }
-                    loadIntrusionLogs();
-                })
+                .setPositiveButton("Clear All", (dialog, which) -> executor.execute(() -> {
+                    intrusions.deleteAll();
+                    if (getActivity() == null || !isAdded()) return;
+                    getActivity().runOnUiThread(() -> {
+                        if (binding != null) loadIntrusionLogs();
+                    });
+                }))
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
     @Override
     public void onDestroyView() {
+        executor.shutdownNow();
         super.onDestroyView();
         binding = null;
     }
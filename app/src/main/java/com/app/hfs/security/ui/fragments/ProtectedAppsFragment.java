@@ -1,23 +1,33 @@
 package com.hfs.security.ui.fragments;
 
 import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.text.Editable;
+import android.text.InputType;
+import android.text.TextUtils;
 import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.appcompat.app.AlertDialog;
+import androidx.core.content.pm.PackageInfoCompat;
 import androidx.fragment.app.Fragment;
 import androidx.recyclerview.widget.LinearLayoutManager;
 
+import com.hfs.security.R;
 import com.hfs.security.adapters.AppSelectionAdapter;
 import com.hfs.security.databinding.FragmentProtectedAppsBinding;
 import com.hfs.security.models.AppInfo;
+import com.hfs.security.services.AppMonitorService;
+import com.hfs.security.utils.AppLabelCache;
 import com.hfs.security.utils.HFSDatabaseHelper;
 
 import java.util.ArrayList;
@@ -34,6 +44,10 @@ import java.util.concurrent.Executors;
  * 1. Enabled HFS Self-Protection: HFS now appears in its own list.
  * 2. Enabled System Apps: Gallery, Photos, and Files are now visible.
  * 3. Thread Safety: Includes isAdded() checks to prevent tab-switching crashes.
+ * 4. Auto-protect rules: package patterns and app categories that protect new
+ *    installs automatically (applied by PackageChangeReceiver).
+ * 5. Per-app grace period: long-press an app to choose how long it stays
+ *    unlocked after the user leaves it.
  */
 public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapter.OnAppSelectionListener {
 
@@ -41,6 +55,29 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
     private AppSelectionAdapter adapter;
     private List<AppInfo> fullAppList;
     private HFSDatabaseHelper db;
+    private AppLabelCache labelCache;
+
+    // Platform app categories offered for auto-protect (there is no finance category)
+    private static final int[] AUTO_PROTECT_CATEGORIES = {
+            ApplicationInfo.CATEGORY_SOCIAL,
+            ApplicationInfo.CATEGORY_IMAGE,
+            ApplicationInfo.CATEGORY_VIDEO,
+            ApplicationInfo.CATEGORY_AUDIO,
+            ApplicationInfo.CATEGORY_NEWS,
+            ApplicationInfo.CATEGORY_MAPS,
+            ApplicationInfo.CATEGORY_PRODUCTIVITY,
+            ApplicationInfo.CATEGORY_GAME
+    };
+    private static final String[] AUTO_PROTECT_CATEGORY_NAMES = {
+            "Social", "Photos & Images", "Video", "Audio", "News", "Maps", "Productivity", "Games"
+    };
+    
+    // Grace period choices offered on long-press; -1 means "use the default"
+    private static final long[] GRACE_OPTIONS_MS = {-1, 0, 30_000, 60_000, 5 * 60_000};
+    private static final String[] GRACE_OPTION_NAMES = {
+            "Default (" + AppMonitorService.SESSION_GRACE_MS / 1000 + " seconds)",
+            "Lock as soon as I leave", "30 seconds", "1 minute", "5 minutes"
+    };
     
     // Executor for background processing to keep the UI responsive
     private final ExecutorService executor = Executors.newSingleThreadExecutor();
@@ -58,10 +95,12 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
         super.onViewCreated(view, savedInstanceState);
         
         db = HFSDatabaseHelper.getInstance(requireContext());
+        labelCache = AppLabelCache.getInstance(requireContext());
         fullAppList = new ArrayList<>();
         
         setupRecyclerView();
         setupSearch();
+        binding.tvAutoProtect.setOnClickListener(v -> showAutoProtectDialog());
         
         // Load all apps including system apps
         loadInstalledApps();
@@ -104,13 +143,14 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
             PackageManager pm = getContext().getPackageManager();
             
             // Fetch all applications regardless of system or user status
-            List<ApplicationInfo> packages = pm.getInstalledApplications(PackageManager.GET_META_DATA);
+            List<PackageInfo> packages = pm.getInstalledPackages(0);
             List<AppInfo> tempInfoList = new ArrayList<>();
             
             // Get currently protected packages from local database
             Set<String> savedProtectedPackages = db.getProtectedPackages();
 
-            for (ApplicationInfo app : packages) {
+            for (PackageInfo pkgInfo : packages) {
+                ApplicationInfo app = pkgInfo.applicationInfo;
                 /* 
                  * ENHANCEMENT: 
                  * We use getLaunchIntentForPackage. This is the professional way to 
@@ -125,6 +165,11 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
                     String name = app.loadLabel(pm).toString();
                     Drawable icon = app.loadIcon(pm);
                     boolean isAlreadyProtected = savedProtectedPackages.contains(app.packageName);
+
+                    // Share the label with the guard so lock time needs no IPC
+                    if (isAlreadyProtected) {
+                        labelCache.put(app.packageName, PackageInfoCompat.getLongVersionCode(pkgInfo), name);
+                    }
                     
                     tempInfoList.add(new AppInfo(name, app.packageName, icon, isAlreadyProtected));
                 }
@@ -175,6 +220,7 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
         
         if (isSelected) {
             currentProtectedSet.add(packageName);
+            executor.execute(() -> labelCache.prefetch(Collections.singleton(packageName)));
         } else {
             currentProtectedSet.remove(packageName);
         }
@@ -183,6 +229,73 @@ public class ProtectedAppsFragment extends Fragment implements AppSelectionAdapt
         db.saveProtectedPackages(currentProtectedSet);
     }
 
+    /**
+     * Interface callback: Triggered when an app is long-pressed.
+     * The choice applies from the app's next unlock.
+     */
+    @Override
+    public void onAppGraceRequested(AppInfo app) {
+        String packageName = app.getPackageName();
+        int current = 0;
+        if (db.hasSessionGraceOverride(packageName)) {
+            long graceMs = db.getSessionGraceMs(packageName, AppMonitorService.SESSION_GRACE_MS);
+            for (int i = 1; i < GRACE_OPTIONS_MS.length; i++) {
+                if (GRACE_OPTIONS_MS[i] == graceMs) current = i;
+            }
+        }
+
+        new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
+                .setTitle("Keep " + app.getAppName() + " unlocked for")
+                .setSingleChoiceItems(GRACE_OPTION_NAMES, current, (dialog, which) -> {
+                    if (GRACE_OPTIONS_MS[which] < 0) {
+                        db.clearSessionGraceMs(packageName);
+                    } else {
+                        db.setSessionGraceMs(packageName, GRACE_OPTIONS_MS[which]);
+                    }
+                    dialog.dismiss();
+                })
+                .setNegativeButton("CANCEL", null)
+                .show();
+    }
+
+    /**
+     * Edits the rules that protect newly installed apps: comma-separated package
+     * patterns (e.g. com.*bank*) plus app categories.
+     */
+    private void showAutoProtectDialog() {
+        int categoryMask = db.getAutoProtectCategories();
+        boolean[] checked = new boolean[AUTO_PROTECT_CATEGORIES.length];
+        for (int i = 0; i < checked.length; i++) {
+            checked[i] = (categoryMask & (1 << AUTO_PROTECT_CATEGORIES[i])) != 0;
+        }
+
+        EditText etPatterns = new EditText(requireContext());
+        etPatterns.setHint("Package patterns, e.g. com.*bank*, org.telegram");
+        etPatterns.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS);
+        etPatterns.setText(TextUtils.join(", ", db.getAutoProtectPatterns()));
+
+        new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
+                .setTitle("Auto-protect new apps")
+                .setMultiChoiceItems(AUTO_PROTECT_CATEGORY_NAMES, checked,
+                        (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setView(etPatterns)
+                .setPositiveButton("SAVE", (dialog, which) -> {
+                    List<String> patterns = new ArrayList<>();
+                    for (String pattern : etPatterns.getText().toString().split("[,\\s]+")) {
+                        if (!pattern.isEmpty()) patterns.add(pattern);
+                    }
+                    int mask = 0;
+                    for (int i = 0; i < checked.length; i++) {
+                        if (checked[i]) mask |= 1 << AUTO_PROTECT_CATEGORIES[i];
+                    }
+                    db.saveAutoProtectRules(patterns, mask);
+                    Toast.makeText(getContext(), "New installs matching these rules will be protected",
+                            Toast.LENGTH_SHORT).show();
+                })
+                .setNegativeButton("CANCEL", null)
+                .show();
+    }
+
     @Override
     public void onDestroyView() {
         // Stop background loading immediately to prevent crashes
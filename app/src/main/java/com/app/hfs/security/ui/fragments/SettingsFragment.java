@@ -5,23 +5,44 @@ import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.net.Uri;
 import android.os.Bundle;
 import android.text.TextUtils;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
+import androidx.core.content.FileProvider;
 import androidx.fragment.app.Fragment;
 
 import com.hfs.security.R;
+import com.hfs.security.databinding.DialogProtectionRuleBinding;
 import com.hfs.security.databinding.FragmentSettingsBinding;
+import com.hfs.security.models.ProtectionRule;
 import com.hfs.security.receivers.AdminReceiver;
+import com.hfs.security.services.AppMonitorService;
+import com.hfs.security.ui.LockScreenActivity;
 import com.hfs.security.ui.SplashActivity;
+import com.hfs.security.utils.EvidencePipeline;
 import com.hfs.security.utils.HFSDatabaseHelper;
+import com.hfs.security.utils.LocationHelper;
+import com.hfs.security.utils.LockLatencyTracker;
+import com.hfs.security.utils.YuvConverter;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Advanced Settings Screen for HFS Security.
@@ -29,6 +50,11 @@ import com.hfs.security.utils.HFSDatabaseHelper;
  * 1. Sets 'Setup Complete' flag upon saving credentials to stop the toast loop.
  * 2. Removed all dead references to Face/Rescan logic.
  * 3. Manages MPIN, Trusted Number, Stealth Mode, and Anti-Uninstall.
+ * 4. Shows lock latency percentiles and exports them as JSON (Diagnostics).
+ * 5. Toggles the guard's UsageEvents trace recorder (debug mode).
+ * 6. Shows the intruder evidence pipeline's per-stage timings next to them.
+ * 7. Edits the conditional protection rules (time, charging, Wi-Fi, place).
+ * 8. Sets how much memory the lock screen may spend on recent camera frames.
  */
 public class SettingsFragment extends Fragment {
 
@@ -37,6 +63,17 @@ public class SettingsFragment extends Fragment {
     private DevicePolicyManager devicePolicyManager;
     private ComponentName adminComponent;
 
+    // Weekday bits in the order of the editor's day checkboxes (Monday first)
+    private static final int[] RULE_DAYS = {
+            ProtectionRule.MONDAY, ProtectionRule.TUESDAY, ProtectionRule.WEDNESDAY,
+            ProtectionRule.THURSDAY, ProtectionRule.FRIDAY, ProtectionRule.SATURDAY, ProtectionRule.SUNDAY
+    };
+    private static final String[] RULE_DAY_NAMES = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+    private static final float RULE_PLACE_RADIUS_M = 150;
+    private static final Pattern RULE_TIME = Pattern.compile("(\\d{1,2}):(\\d{2})");
+    private static final int[] EVIDENCE_MEMORY_KB = {1024, 2048, 4096, 8192};
+    private static final String[] EVIDENCE_MEMORY_NAMES = {"1 MB", "2 MB", "4 MB (default)", "8 MB"};
+
     @Nullable
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, @Nullable ViewGroup container, @Nullable Bundle savedInstanceState) {
@@ -83,6 +120,12 @@ public class SettingsFragment extends Fragment {
         // Load feature toggles for Stealth and Decoy modes
         binding.switchStealthMode.setChecked(db.isStealthModeEnabled());
         binding.switchFakeGallery.setChecked(db.isFakeGalleryEnabled());
+        showRulesSummary();
+        showEvidenceMemorySummary();
+
+        // Lock latency and evidence pipeline percentiles recorded since the process started
+        showLatencySummary();
+        binding.switchUsageTrace.setChecked(db.isUsageTraceEnabled());
     }
 
     /**
@@ -133,6 +176,277 @@ public class SettingsFragment extends Fragment {
         binding.switchFakeGallery.setOnCheckedChangeListener((buttonView, isChecked) -> {
             db.setFakeGalleryEnabled(isChecked);
         });
+
+        // 5. CONDITIONAL PROTECTION RULES
+        binding.layoutProtectionRules.setOnClickListener(v -> showProtectionRules());
+
+        // 6. EVIDENCE FRAME MEMORY (pre-trigger ring cap)
+        binding.layoutEvidenceMemory.setOnClickListener(v -> showEvidenceMemoryPicker());
+
+        // 7. DIAGNOSTICS EXPORT
+        binding.btnExportLatency.setOnClickListener(v -> exportLatencyReport());
+
+        // 8. USAGE TRACE (DEBUG): written to files/traces for offline replay
+        binding.switchUsageTrace.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            db.setUsageTraceEnabled(isChecked);
+            AppMonitorService.onTraceSettingChanged();
+            if (isChecked) {
+                Toast.makeText(getContext(), "Recording app switches to files/traces", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void showRulesSummary() {
+        if (binding == null) return;
+        int count = db.getProtectionRules().size();
+        binding.tvProtectionRulesSummary.setText(count == 0
+                ? "None: protected apps always lock"
+                : count + (count == 1 ? " rule decides" : " rules decide") + " when protected apps lock");
+    }
+
+    private void showEvidenceMemorySummary() {
+        int kilobytes = db.getEvidenceRingKb(LockScreenActivity.RING_DEFAULT_KB);
+        // Preview-size (640x480) NV21 frames, up to the ring's frame limit
+        int frames = (int) Math.min(LockScreenActivity.RING_MAX_FRAMES,
+                kilobytes * 1024L / YuvConverter.nv21Size(640, 480));
+        binding.tvEvidenceMemorySummary.setText(String.format(Locale.US,
+                "%d MB: up to %d recent camera frames kept for intruder photos",
+                kilobytes / 1024, frames));
+    }
+
+    /**
+     * Caps the lock screen's pre-trigger frame ring; an open lock screen
+     * picks the new cap up when it comes back to the front.
+     */
+    private void showEvidenceMemoryPicker() {
+        int kilobytes = db.getEvidenceRingKb(LockScreenActivity.RING_DEFAULT_KB);
+        int current = -1;
+        for (int i = 0; i < EVIDENCE_MEMORY_KB.length; i++) {
+            if (EVIDENCE_MEMORY_KB[i] == kilobytes) current = i;
+        }
+
+        new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
+                .setTitle("Memory for evidence frames")
+                .setSingleChoiceItems(EVIDENCE_MEMORY_NAMES, current, (dialog, which) -> {
+                    db.setEvidenceRingKb(EVIDENCE_MEMORY_KB[which]);
+                    showEvidenceMemorySummary();
+                    dialog.dismiss();
+                })
+                .setNegativeButton("CANCEL", null)
+                .show();
+    }
+
+    /**
+     * Lists the rules in priority order; tapping one offers to delete it.
+     */
+    private void showProtectionRules() {
+        List<ProtectionRule> rules = db.getProtectionRules();
+        AlertDialog.Builder builder = new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
+                .setTitle("Protection Rules")
+                .setPositiveButton("ADD RULE", (dialog, which) -> showRuleEditor())
+                .setNegativeButton("CLOSE", null);
+        if (rules.isEmpty()) {
+            builder.setMessage("No rules yet, so protected apps lock every time.\n\n"
+                    + "Rules can waive or enforce the lock by time, charging, Wi-Fi or place. "
+                    + "When several match, the oldest rule decides.");
+        } else {
+            String[] items = new String[rules.size()];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = describeRule(rules.get(i));
+            }
+            builder.setItems(items, (dialog, which) -> confirmDeleteRule(which));
+        }
+        builder.show();
+    }
+
+    private void confirmDeleteRule(int index) {
+        List<ProtectionRule> rules = new ArrayList<>(db.getProtectionRules());
+        if (index >= rules.size()) return;
+        new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
+                .setTitle("Delete rule?")
+                .setMessage(describeRule(rules.get(index)))
+                .setPositiveButton("DELETE", (dialog, which) -> {
+                    rules.remove(index);
+                    db.saveProtectionRules(rules);
+                    showRulesSummary();
+                })
+                .setNegativeButton("CANCEL", null)
+                .show();
+    }
+
+    /**
+     * New-rule form. A place condition is anchored at the phone's current location.
+     */
+    private void showRuleEditor() {
+        DialogProtectionRuleBinding form = DialogProtectionRuleBinding.inflate(getLayoutInflater());
+        AlertDialog dialog = new AlertDialog.Builder(requireContext(), R.style.Theme_HFS_Dialog)
+                .setTitle("New Protection Rule")
+                .setView(form.getRoot())
+                .setPositiveButton("SAVE", null)
+                .setNegativeButton("CANCEL", null)
+                .show();
+
+        // Set after show() so an invalid form keeps the dialog open
+        dialog.getButton(AlertDialog.BUTTON_POSITIVE).setOnClickListener(v -> {
+            ProtectionRule rule = readRule(form);
+            if (rule == null) return;
+
+            int place = form.rgRulePlace.getCheckedRadioButtonId();
+            if (place != R.id.rbPlaceHere && place != R.id.rbPlaceAway) {
+                addRule(rule);
+                dialog.dismiss();
+                return;
+            }
+            v.setEnabled(false);
+            LocationHelper.getCoordinates(requireContext(), location -> {
+                if (!isAdded()) return;
+                v.setEnabled(true);
+                if (location == null) {
+                    Toast.makeText(getContext(), "Current location unavailable. Check the location permission.",
+                            Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                rule.setPlaceCondition(location.getLatitude(), location.getLongitude(),
+                        RULE_PLACE_RADIUS_M, place == R.id.rbPlaceHere);
+                addRule(rule);
+                dialog.dismiss();
+            });
+        });
+    }
+
+    /**
+     * Builds a rule from the form, or returns null after telling the owner what is wrong.
+     */
+    @Nullable
+    private ProtectionRule readRule(DialogProtectionRuleBinding form) {
+        ProtectionRule rule = new ProtectionRule();
+        String name = text(form.etRuleName);
+        rule.setName(name.isEmpty() ? "Rule " + (db.getProtectionRules().size() + 1) : name);
+        rule.setAllow(form.rbRuleAllow.isChecked());
+
+        Set<String> packages = new HashSet<>();
+        for (String pkg : text(form.etRulePackages).split("[,\\s]+")) {
+            if (!pkg.isEmpty()) packages.add(pkg);
+        }
+        rule.setPackages(packages);
+
+        int days = 0;
+        for (int i = 0; i < RULE_DAYS.length; i++) {
+            if (((CheckBox) form.layoutRuleDays.getChildAt(i)).isChecked()) days |= RULE_DAYS[i];
+        }
+        if (days == 0) {
+            Toast.makeText(getContext(), "Pick at least one day", Toast.LENGTH_SHORT).show();
+            return null;
+        }
+        rule.setDays(days);
+
+        String start = text(form.etRuleStart);
+        String end = text(form.etRuleEnd);
+        if (!start.isEmpty() || !end.isEmpty()) {
+            int startMinute = parseMinuteOfDay(start);
+            int endMinute = parseMinuteOfDay(end);
+            if (startMinute < 0 || endMinute < 0 || startMinute == endMinute) {
+                Toast.makeText(getContext(), "Enter both times as HH:mm, e.g. 09:00 and 17:30",
+                        Toast.LENGTH_SHORT).show();
+                return null;
+            }
+            rule.setTimeWindow(startMinute, endMinute);
+        }
+
+        int charging = form.rgRuleCharging.getCheckedRadioButtonId();
+        if (charging == R.id.rbChargingYes) {
+            rule.setCharging(true);
+        } else if (charging == R.id.rbChargingNo) {
+            rule.setCharging(false);
+        }
+
+        String ssid = text(form.etRuleWifi);
+        if (!ssid.isEmpty()) {
+            rule.setWifiCondition(ssid, !form.cbRuleWifiAway.isChecked());
+        }
+        return rule;
+    }
+
+    private void addRule(ProtectionRule rule) {
+        List<ProtectionRule> rules = new ArrayList<>(db.getProtectionRules());
+        rules.add(rule);
+        db.saveProtectionRules(rules);
+        showRulesSummary();
+        Toast.makeText(getContext(), "Rule saved", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * One line per rule, e.g. "Office: no lock, all apps, Mon Tue Wed Thu Fri, 09:00-17:00".
+     */
+    private static String describeRule(ProtectionRule rule) {
+        StringBuilder sb = new StringBuilder(rule.getName() == null ? "Rule" : rule.getName());
+        sb.append(rule.isAllow() ? ": no lock" : ": always lock");
+        int apps = rule.getPackages().size();
+        sb.append(apps == 0 ? ", all apps" : ", " + apps + (apps == 1 ? " app" : " apps"));
+        if (rule.getDays() != ProtectionRule.EVERY_DAY) {
+            List<String> days = new ArrayList<>();
+            for (int i = 0; i < RULE_DAYS.length; i++) {
+                if ((rule.getDays() & RULE_DAYS[i]) != 0) days.add(RULE_DAY_NAMES[i]);
+            }
+            sb.append(", ").append(TextUtils.join(" ", days));
+        }
+        if (rule.hasTimeWindow()) {
+            sb.append(String.format(Locale.US, ", %02d:%02d-%02d:%02d",
+                    rule.getStartMinute() / 60, rule.getStartMinute() % 60,
+                    rule.getEndMinute() / 60, rule.getEndMinute() % 60));
+        }
+        if (rule.getCharging() != null) {
+            sb.append(rule.getCharging() ? ", charging" : ", on battery");
+        }
+        if (rule.getWifiSsid() != null) {
+            sb.append(rule.isOnWifi() ? ", on " : ", not on ").append(rule.getWifiSsid());
+        }
+        if (rule.hasPlace()) {
+            sb.append(rule.isInsidePlace() ? ", at the saved place" : ", away from the saved place");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * "H:mm" or "HH:mm" to minutes since midnight, or -1.
+     */
+    private static int parseMinuteOfDay(String value) {
+        Matcher m = RULE_TIME.matcher(value);
+        if (!m.matches()) return -1;
+        int hour = Integer.parseInt(m.group(1));
+        int minute = Integer.parseInt(m.group(2));
+        return hour < 24 && minute < 60 ? hour * 60 + minute : -1;
+    }
+
+    private static String text(EditText field) {
+        return field.getText() == null ? "" : field.getText().toString().trim();
+    }
+
+    private void showLatencySummary() {
+        binding.tvLatencySummary.setText(LockLatencyTracker.getInstance().getSummary()
+                + "\n\n" + EvidencePipeline.getInstance(requireContext()).getSummary());
+    }
+
+    /**
+     * Writes the latency histograms to JSON and hands the file to a share target,
+     * so numbers from different builds and devices can be compared.
+     */
+    private void exportLatencyReport() {
+        LockLatencyTracker tracker = LockLatencyTracker.getInstance();
+        showLatencySummary();
+        try {
+            File file = tracker.exportJson(requireContext());
+            Uri uri = FileProvider.getUriForFile(requireContext(),
+                    requireContext().getPackageName() + ".fileprovider", file);
+
+            Intent share = new Intent(Intent.ACTION_SEND);
+            share.setType("application/json");
+            share.putExtra(Intent.EXTRA_STREAM, uri);
+            share.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            startActivity(Intent.createChooser(share, "Export Lock Latency"));
+        } catch (Exception e) {
+            Toast.makeText(getContext(), "Export failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+        }
     }
 
     /**
@@ -0,0 +1,103 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.core.content.pm.PackageInfoCompat;
+
+import java.util.Collection;
+
+/**
+ * App Label Cache.
+ * Keeps user-visible app names in memory so the lock trigger never needs a
+ * PackageManager IPC between detecting a protected app and covering it.
+ * 1. Filled when apps are protected (ProtectedAppsFragment) and when the guard starts.
+ * 2. Each entry remembers the versionCode its label was read from.
+ * 3. Invalidated by PackageChangeReceiver on PACKAGE_REPLACED / REMOVED / CHANGED.
+ */
+public class AppLabelCache {
+
+    private static final String TAG = "HFS_LabelCache";
+    private static final int MAX_ENTRIES = 256;
+
+    private static AppLabelCache instance;
+
+    private final PackageManager packageManager;
+    private final LruCache<String, Entry> cache = new LruCache<>(MAX_ENTRIES);
+
+    private AppLabelCache(Context context) {
+        packageManager = context.getPackageManager();
+    }
+
+    public static synchronized AppLabelCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new AppLabelCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the label for the package, resolving it through PackageManager
+     * only on a cache miss. Falls back to the package name if it is not installed.
+     */
+    public String getLabel(String packageName) {
+        Entry entry = cache.get(packageName);
+        if (entry != null) {
+            return entry.label;
+        }
+        Log.d(TAG, "Label cache miss for " + packageName);
+        Entry resolved = resolve(packageName);
+        return resolved != null ? resolved.label : packageName;
+    }
+
+    /**
+     * Records a label that the caller has already loaded.
+     * An older versionCode never overwrites a newer one.
+     */
+    public void put(String packageName, long versionCode, String label) {
+        Entry existing = cache.get(packageName);
+        if (existing == null || existing.versionCode <= versionCode) {
+            cache.put(packageName, new Entry(label, versionCode));
+        }
+    }
+
+    /**
+     * Resolves labels ahead of time. Performs IPC; call off the main thread.
+     */
+    public void prefetch(Collection<String> packageNames) {
+        for (String packageName : packageNames) {
+            if (cache.get(packageName) == null) {
+                resolve(packageName);
+            }
+        }
+    }
+
+    public void invalidate(String packageName) {
+        cache.remove(packageName);
+    }
+
+    private Entry resolve(String packageName) {
+        try {
+            PackageInfo info = packageManager.getPackageInfo(packageName, 0);
+            String label = info.applicationInfo.loadLabel(packageManager).toString();
+            Entry entry = new Entry(label, PackageInfoCompat.getLongVersionCode(info));
+            cache.put(packageName, entry);
+            return entry;
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    private static final class Entry {
+        final String label;
+        final long versionCode;
+
+        Entry(String label, long versionCode) {
+            this.label = label;
+            this.versionCode = versionCode;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.hfs.security.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Index of the owner's auto-protect rules, checked when a new app is installed.
+ * 1. Package patterns are prefixes over package segments, e.g. "com.*bank*" or
+ *    "org.telegram": each segment is a literal, "*" or a glob with '*' wildcards.
+ *    They are compiled into a trie keyed by segment, so literal prefixes cost one
+ *    hash lookup per segment however many patterns exist.
+ * 2. Categories (ApplicationInfo.category values) are a bitmask; O(1).
+ * Immutable; safe to share between threads.
+ */
+public final class AutoProtectIndex {
+
+    public static final AutoProtectIndex EMPTY = new AutoProtectIndex(new ArrayList<String>(), 0);
+
+    private static final String ANY_SEGMENT = "*";
+
+    private static final class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        // Same glob text -> same child, so duplicate globs are tested once
+        final Map<String, Node> globs = new HashMap<>();
+        Node any;
+        String pattern; // non-null when a pattern ends here
+    }
+
+    private final Node root = new Node();
+    private final int categoryMask;
+    private final int patternCount;
+
+    /**
+     * @param patterns Package patterns; blank or malformed entries are ignored.
+     * @param categoryMask Bit {@code 1 << category} per ApplicationInfo category to protect.
+     */
+    public AutoProtectIndex(Collection<String> patterns, int categoryMask) {
+        this.categoryMask = categoryMask;
+        int count = 0;
+        for (String pattern : patterns) {
+            if (insert(pattern)) count++;
+        }
+        patternCount = count;
+    }
+
+    /**
+     * Why {@code packageName} should be protected, or null if no rule covers it.
+     *
+     * @param category The app's ApplicationInfo.category, or -1 if undefined.
+     */
+    public String match(String packageName, int category) {
+        if (category >= 0 && category < 32 && (categoryMask & (1 << category)) != 0) {
+            return "category " + category;
+        }
+        if (packageName == null || patternCount == 0) return null;
+        String[] segments = packageName.toLowerCase(Locale.ROOT).split("\\.");
+        String pattern = find(root, segments, 0);
+        return pattern != null ? "pattern " + pattern : null;
+    }
+
+    public boolean isEmpty() {
+        return patternCount == 0 && categoryMask == 0;
+    }
+
+    public int getPatternCount() {
+        return patternCount;
+    }
+
+    public int getCategoryMask() {
+        return categoryMask;
+    }
+
+    private boolean insert(String pattern) {
+        if (pattern == null) return false;
+        String normalized = pattern.trim().toLowerCase(Locale.ROOT);
+        if (normalized.isEmpty()) return false;
+
+        String[] segments = normalized.split("\\.");
+        Node node = root;
+        for (String segment : segments) {
+            if (segment.isEmpty()) return false;
+            Node next;
+            if (ANY_SEGMENT.equals(segment)) {
+                if (node.any == null) node.any = new Node();
+                next = node.any;
+            } else if (segment.indexOf('*') >= 0) {
+                next = node.globs.get(segment);
+                if (next == null) {
+                    next = new Node();
+                    node.globs.put(segment, next);
+                }
+            } else {
+                next = node.literals.get(segment);
+                if (next == null) {
+                    next = new Node();
+                    node.literals.put(segment, next);
+                }
+            }
+            node = next;
+        }
+        if (node.pattern == null) node.pattern = normalized;
+        return true;
+    }
+
+    private static String find(Node node, String[] segments, int index) {
+        // Patterns are prefixes: reaching a pattern's end is a match
+        if (node.pattern != null) return node.pattern;
+        if (index == segments.length) return null;
+
+        String segment = segments[index];
+        Node literal = node.literals.get(segment);
+        if (literal != null) {
+            String found = find(literal, segments, index + 1);
+            if (found != null) return found;
+        }
+        if (node.any != null) {
+            String found = find(node.any, segments, index + 1);
+            if (found != null) return found;
+        }
+        for (Map.Entry<String, Node> glob : node.globs.entrySet()) {
+            if (globMatches(glob.getKey(), segment)) {
+                String found = find(glob.getValue(), segments, index + 1);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * '*'-only wildcard match with single backtracking; linear in practice.
+     */
+    static boolean globMatches(String glob, String text) {
+        int g = 0;
+        int t = 0;
+        int starAt = -1;
+        int resumeAt = 0;
+        while (t < text.length()) {
+            if (g < glob.length() && glob.charAt(g) != '*' && glob.charAt(g) == text.charAt(t)) {
+                g++;
+                t++;
+            } else if (g < glob.length() && glob.charAt(g) == '*') {
+                starAt = g++;
+                resumeAt = t;
+            } else if (starAt >= 0) {
+                g = starAt + 1;
+                t = ++resumeAt;
+            } else {
+                return false;
+            }
+        }
+        while (g < glob.length() && glob.charAt(g) == '*') {
+            g++;
+        }
+        return g == glob.length();
+    }
+}
@@ -0,0 +1,290 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Background Evidence Pipeline.
+ * Intruder photos are persisted off the UI thread in stages:
+ * 1. CAPTURE - the camera thread converts each frame the pre-trigger ring
+ *    keeps into NV21 (stride-aware) and scores it; at alert time the chosen
+ *    frames are copied out of the ring into pooled buffers.
+ * 2. ENCODE  - one JPEG encode into a reused in-memory buffer.
+ * 3. WRITE   - one write to the evidence file, EXIF orientation and thumbnail.
+ * 4. INDEX   - the IntrusionDatabase row is inserted first and its id handed
+ *    to the frames; frame 0 becomes the row's photo (with thumbnail), further
+ *    frames are added as extra frames.
+ * Jobs wait in a bounded queue served by one writer thread. When it is full
+ * new frames are refused and their buffers returned, so a burst of alerts can
+ * never pile up frame-sized buffers; the intrusion row is still recorded.
+ * Every stage feeds a LatencyHistogram.
+ */
+public class EvidencePipeline {
+
+    private static final String TAG = "HFS_Evidence";
+
+    public static final String STAGE_CAPTURE = "capture";
+    public static final String STAGE_QUEUE = "queue_wait";
+    public static final String STAGE_ENCODE = "encode";
+    public static final String STAGE_WRITE = "write";
+    public static final String STAGE_INDEX = "index";
+    public static final String STAGE_TOTAL = "submit_to_indexed";
+
+    private static final int QUEUE_CAPACITY = 4;
+    // Queued frames plus the one being encoded plus the one being copied out
+    private static final int POOL_CAPACITY = QUEUE_CAPACITY + 2;
+    private static final int JPEG_BUFFER_BYTES = 256 * 1024;
+
+    /**
+     * A frame copied out of the camera. Owns a pooled buffer until it is either
+     * passed to {@link #recordIntrusion} or handed back with {@link #recycle}.
+     */
+    public static final class Frame {
+        private final byte[] nv21;
+        private final int width;
+        private final int height;
+        private final int rotationDegrees;
+        private final long capturedAt;
+        private final double score;
+        private boolean recycled = false;
+
+        private Frame(byte[] nv21, int width, int height, int rotationDegrees, long capturedAt, double score) {
+            this.nv21 = nv21;
+            this.width = width;
+            this.height = height;
+            this.rotationDegrees = rotationDegrees;
+            this.capturedAt = capturedAt;
+            this.score = score;
+        }
+
+        /**
+         * SystemClock.elapsedRealtime() when the frame reached the analyzer.
+         */
+        public long getCapturedAt() {
+            return capturedAt;
+        }
+
+        /**
+         * FrameScorer score, higher is better.
+         */
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * Receives the intrusion's row id, or -1 if the insert failed. Called on
+     * the writer thread before the frames are saved.
+     */
+    public interface IntrusionCallback {
+        void onRecorded(long intrusionId);
+    }
+
+    private static EvidencePipeline instance;
+
+    private final Context context;
+    private final FrameBufferPool pool = new FrameBufferPool(POOL_CAPACITY);
+    private final ThreadPoolExecutor writer;
+    private final Map<String, LatencyHistogram> stages = new LinkedHashMap<>();
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    // Writer thread only
+    private final ByteArrayOutputStream jpegBuffer = new ByteArrayOutputStream(JPEG_BUFFER_BYTES);
+
+    private EvidencePipeline(Context context) {
+        this.context = context;
+        writer = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                r -> new Thread(r, "HFS-EvidenceWriter"));
+        for (String stage : new String[] {STAGE_CAPTURE, STAGE_QUEUE, STAGE_ENCODE,
+                STAGE_WRITE, STAGE_INDEX, STAGE_TOTAL}) {
+            stages.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public static synchronized EvidencePipeline getInstance(Context context) {
+        if (instance == null) {
+            instance = new EvidencePipeline(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Records the CAPTURE stage of one frame: conversion and scoring on the
+     * camera thread. Never allocates.
+     */
+    public void recordCapture(long nanos) {
+        stages.get(STAGE_CAPTURE).record(toMillis(nanos));
+    }
+
+    /**
+     * Copies NV21 bytes held elsewhere (the pre-trigger FrameRingBuffer) into a
+     * pooled frame, so the source can keep being overwritten.
+     */
+    public Frame copyFrame(byte[] nv21, int width, int height, int rotationDegrees,
+                           long capturedAt, double score) {
+        byte[] copy = pool.acquire(YuvConverter.nv21Size(width, height));
+        System.arraycopy(nv21, 0, copy, 0, copy.length);
+        return new Frame(copy, width, height, rotationDegrees, capturedAt, score);
+    }
+
+    /**
+     * Records a new intrusion and saves its frames on the writer thread. The
+     * row insert is the job's INDEX stage; frame 0 becomes its photo, later
+     * frames extra frames. The pipeline owns the frames from here on.
+     * If the queue is full the frames are dropped but the row is still recorded.
+     */
+    public void recordIntrusion(String packageName, String appName, String alertType,
+                                List<Frame> frames, IntrusionCallback callback) {
+        long submittedAt = SystemClock.elapsedRealtimeNanos();
+        try {
+            writer.execute(() -> {
+                long intrusionId = insertIntrusion(packageName, appName, alertType);
+                callback.onRecorded(intrusionId);
+                for (int i = 0; i < frames.size(); i++) {
+                    persist(intrusionId, i, frames.get(i), submittedAt);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            for (Frame frame : frames) {
+                recycle(frame);
+            }
+            Log.w(TAG, "Evidence queue full, dropped " + frames.size() + " frames ("
+                    + droppedCount.addAndGet(frames.size()) + " dropped so far)");
+            new Thread(() -> callback.onRecorded(insertIntrusion(packageName, appName, alertType)),
+                    "HFS-IntrusionIndex").start();
+        }
+    }
+
+    private long insertIntrusion(String packageName, String appName, String alertType) {
+        long start = SystemClock.elapsedRealtimeNanos();
+        long intrusionId = IntrusionDatabase.getInstance(context).recordIntrusion(packageName, appName, alertType);
+        stages.get(STAGE_INDEX).record(toMillis(SystemClock.elapsedRealtimeNanos() - start));
+        return intrusionId;
+    }
+
+    /**
+     * Returns an unused frame's buffer to the pool. Safe to call more than once.
+     */
+    public void recycle(Frame frame) {
+        if (frame == null) return;
+        synchronized (frame) {
+            if (frame.recycled) return;
+            frame.recycled = true;
+        }
+        pool.release(frame.nv21);
+    }
+
+    private void persist(long intrusionId, int index, Frame frame, long submittedAt) {
+        long started = SystemClock.elapsedRealtimeNanos();
+        long heapBefore = usedHeapBytes();
+
+        // ENCODE: the NV21 buffer is free again as soon as the JPEG exists
+        boolean encoded;
+        try {
+            jpegBuffer.reset();
+            encoded = FileSecureHelper.encodeJpeg(frame.nv21, frame.width, frame.height, jpegBuffer);
+        } finally {
+            recycle(frame);
+        }
+        long heapDelta = usedHeapBytes() - heapBefore;
+        long encodedAt = SystemClock.elapsedRealtimeNanos();
+        if (!encoded) {
+            Log.e(TAG, "JPEG encoder rejected the frame for intrusion " + intrusionId);
+            return;
+        }
+
+        // WRITE: one sequential write, then orientation and thumbnail
+        File file = FileSecureHelper.newEvidenceFile(context, intrusionId, index);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            jpegBuffer.writeTo(out);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save intruder photo: " + e.getMessage());
+            file.delete();
+            return;
+        }
+        int orientation = FileSecureHelper.exifOrientationFor(frame.rotationDegrees);
+        FileSecureHelper.writeOrientation(file, orientation);
+        File thumbnail = index == 0
+                ? FileSecureHelper.saveThumbnail(file, frame.width, frame.height, orientation) : null;
+        long writtenAt = SystemClock.elapsedRealtimeNanos();
+
+        // INDEX
+        IntrusionDatabase intrusions = IntrusionDatabase.getInstance(context);
+        if (index == 0) {
+            intrusions.setPhoto(intrusionId, file.getAbsolutePath(),
+                    thumbnail != null ? thumbnail.getAbsolutePath() : null);
+        } else {
+            long capturedWallTime = System.currentTimeMillis() - (SystemClock.elapsedRealtime() - frame.capturedAt);
+            intrusions.addFrame(intrusionId, file.getAbsolutePath(), capturedWallTime);
+        }
+        long indexedAt = SystemClock.elapsedRealtimeNanos();
+
+        stages.get(STAGE_QUEUE).record(toMillis(started - submittedAt));
+        stages.get(STAGE_ENCODE).record(toMillis(encodedAt - started));
+        stages.get(STAGE_WRITE).record(toMillis(writtenAt - encodedAt));
+        stages.get(STAGE_INDEX).record(toMillis(indexedAt - writtenAt));
+        stages.get(STAGE_TOTAL).record(toMillis(indexedAt - submittedAt));
+        Log.i(TAG, String.format(Locale.US,
+                "Evidence %d/%d saved: queue %.1f, encode %.1f, write %.1f, index %.1f ms (%d KB JPEG, heap %+d KB)",
+                intrusionId, index, (started - submittedAt) / 1e6, (encodedAt - started) / 1e6,
+                (writtenAt - encodedAt) / 1e6, (indexedAt - writtenAt) / 1e6,
+                jpegBuffer.size() / 1024, heapDelta / 1024));
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * One line per stage: "stage  p50 / p95 / p99 ms".
+     */
+    public String getSummary() {
+        LatencyHistogram total = stages.get(STAGE_TOTAL);
+        if (total.getTotalCount() == 0) {
+            return "No evidence photos saved since the app started.";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Evidence photos saved: ").append(total.getTotalCount())
+                .append(" (dropped ").append(droppedCount.get()).append(')');
+        for (Map.Entry<String, LatencyHistogram> stage : stages.entrySet()) {
+            LatencyHistogram h = stage.getValue();
+            sb.append('\n').append(stage.getKey()).append(": ");
+            if (h.getTotalCount() == 0) {
+                sb.append("n/a");
+                continue;
+            }
+            sb.append(String.format(Locale.US, "%d / %d / %d ms",
+                    h.getValueAtPercentile(50), h.getValueAtPercentile(95), h.getValueAtPercentile(99)));
+        }
+        return sb.toString();
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+
+    /**
+     * Java plus native heap in use; Bitmap pixels live on the native heap.
+     */
+    private static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory() + Debug.getNativeHeapAllocatedSize();
+    }
+}
@@ -4,19 +4,16 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.ImageFormat;
-import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.YuvImage;
-import android.media.Image;
 import android.util.Log;
 
-import androidx.camera.core.ImageProxy;
+import androidx.exifinterface.media.ExifInterface;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -26,94 +23,115 @@ import java.util.Locale;
  * Manages the secret saving of intruder photos.
  * Data is stored in: /Android/data/com.hfs.security/files/intruders/
  * This location is hidden from standard Gallery apps.
+ * Each photo gets a small thumbnail for the history grid, and both paths are
+ * recorded on the intrusion's IntrusionDatabase row.
+ * Frames are encoded to JPEG exactly once; orientation is stored as EXIF.
+ * Photos are written by EvidencePipeline, never on the UI thread.
  */
 public class FileSecureHelper {
 
     private static final String TAG = "HFS_FileSecure";
     private static final String INTRUDER_DIR = "intruders";
+    private static final String THUMBNAIL_DIR = "thumbs";
+    private static final int THUMBNAIL_SIZE_PX = 320;
+    private static final int JPEG_QUALITY = 90;
 
     /**
-     * Captures the current frame from the ImageProxy, converts it to a JPG,
-     * and saves it secretly to the internal storage.
-     * 
-     * @param context App context.
-     * @param imageProxy The frame from the front camera.
+     * The evidence directory, created if needed.
      */
-    public static void saveIntruderCapture(Context context, ImageProxy imageProxy) {
-        // 1. Convert ImageProxy to Bitmap
-        Bitmap bitmap = imageProxyToBitmap(imageProxy);
-        if (bitmap == null) return;
-
-        // 2. Rotate bitmap if necessary (Front camera usually needs 270 deg rotation)
-        int rotation = imageProxy.getImageInfo().getRotationDegrees();
-        bitmap = rotateBitmap(bitmap, rotation);
-
-        // 3. Prepare the Filename: AppName-PackageName-Timestamp.jpg
-        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        String fileName = "Intrusion-" + timestamp + ".jpg";
-
-        // 4. Get the secure internal directory
+    public static File getIntruderDirectory(Context context) {
         File directory = new File(context.getExternalFilesDir(null), INTRUDER_DIR);
         if (!directory.exists()) {
             directory.mkdirs();
         }
+        return directory;
+    }
+
+    /**
+     * A new evidence file for frame {@code index} of intrusion row {@code intrusionId}:
+     * Intrusion-Timestamp-Id.jpg for the main photo, Intrusion-Timestamp-Id-Index.jpg
+     * for extra frames, so photos taken in the same second never collide.
+     */
+    public static File newEvidenceFile(Context context, long intrusionId, int index) {
+        String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        String suffix = index == 0 ? "" : "-" + index;
+        return new File(getIntruderDirectory(context), "Intrusion-" + timestamp + "-" + intrusionId + suffix + ".jpg");
+    }
 
-        File file = new File(directory, fileName);
+    /**
+     * Encodes an NV21 frame to JPEG exactly once; orientation is added
+     * afterwards as EXIF by {@link #writeOrientation}.
+     */
+    public static boolean encodeJpeg(byte[] nv21, int width, int height, OutputStream out) {
+        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, width, height, null);
+        return yuvImage.compressToJpeg(new Rect(0, 0, width, height), JPEG_QUALITY, out);
+    }
 
-        // 5. Write the Bitmap to the file as a compressed JPEG
+    /**
+     * Writes a small preview so the history grid never decodes full photos.
+     * The JPEG is decoded subsampled, so no full-size Bitmap is ever allocated.
+     */
+    public static File saveThumbnail(File photo, int width, int height, int orientation) {
+        File thumbDir = new File(photo.getParentFile(), THUMBNAIL_DIR);
+        if (!thumbDir.exists()) {
+            thumbDir.mkdirs();
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = 1;
+        while (Math.max(width, height) / (options.inSampleSize * 2) >= THUMBNAIL_SIZE_PX) {
+            options.inSampleSize *= 2;
+        }
+        Bitmap thumb = BitmapFactory.decodeFile(photo.getAbsolutePath(), options);
+        if (thumb == null) return null;
+
+        File file = new File(thumbDir, photo.getName());
         try (FileOutputStream out = new FileOutputStream(file)) {
-            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
-            Log.i(TAG, "Intruder evidence saved: " + file.getAbsolutePath());
+            thumb.compress(Bitmap.CompressFormat.JPEG, 80, out);
         } catch (IOException e) {
-            Log.e(TAG, "Failed to save intruder photo: " + e.getMessage());
+            Log.e(TAG, "Failed to save thumbnail: " + e.getMessage());
+            return null;
         } finally {
-            bitmap.recycle();
+            thumb.recycle();
         }
+        writeOrientation(file, orientation);
+        return file;
     }
 
     /**
-     * Helper to convert CameraX YUV_420_888 format to Bitmap.
+     * EXIF orientation equal to rotating the sensor frame clockwise by
+     * {@code degrees} and then mirroring it horizontally (front camera), which
+     * is what the old Matrix path baked into the pixels. An unrotated frame was
+     * never mirrored, so it stays NORMAL.
      */
-    private static Bitmap imageProxyToBitmap(ImageProxy image) {
-        ImageProxy.PlaneProxy[] planes = image.getPlanes();
-        ByteBuffer yBuffer = planes[0].getBuffer();
-        ByteBuffer uBuffer = planes[1].getBuffer();
-        ByteBuffer vBuffer = planes[2].getBuffer();
-
-        int ySize = yBuffer.remaining();
-        int uSize = uBuffer.remaining();
-        int vSize = vBuffer.remaining();
-
-        byte[] nv21 = new byte[ySize + uSize + vSize];
-        yBuffer.get(nv21, 0, ySize);
-        vBuffer.get(nv21, ySize, vSize);
-        uBuffer.get(nv21, ySize + vSize, uSize);
-
-        YuvImage yuvImage = new YuvImage(nv21, ImageFormat.NV21, image.getWidth(), image.getHeight(), null);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        yuvImage.compressToJpeg(new Rect(0, 0, yuvImage.getWidth(), yuvImage.getHeight()), 100, out);
-
-        byte[] imageBytes = out.toByteArray();
-        return BitmapFactory.decodeByteArray(imageBytes, 0, imageBytes.length);
+    public static int exifOrientationFor(int degrees) {
+        switch (degrees) {
+            case 90:
+                return ExifInterface.ORIENTATION_TRANSPOSE;
+            case 180:
+                return ExifInterface.ORIENTATION_FLIP_VERTICAL;
+            case 270:
+                return ExifInterface.ORIENTATION_TRANSVERSE;
+            default:
+                return ExifInterface.ORIENTATION_NORMAL;
+        }
     }
 
-    /**
-     * Rotates a bitmap to the correct orientation.
-     */
-    private static Bitmap rotateBitmap(Bitmap bitmap, int degrees) {
-        if (degrees == 0) return bitmap;
-        Matrix matrix = new Matrix();
-        matrix.postRotate(degrees);
-        // Flip horizontally because it's a front camera (mirror effect)
-        matrix.postScale(-1, 1, bitmap.getWidth() / 2f, bitmap.getHeight() / 2f);
-        
-        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    public static void writeOrientation(File jpeg, int orientation) {
+        if (orientation == ExifInterface.ORIENTATION_NORMAL) return;
+        try {
+            ExifInterface exif = new ExifInterface(jpeg.getAbsolutePath());
+            exif.setAttribute(ExifInterface.TAG_ORIENTATION, Integer.toString(orientation));
+            exif.saveAttributes();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write photo orientation: " + e.getMessage());
+        }
     }
 
     /**
      * Deletes all intruder evidence logs.
      */
     public static void deleteAllLogs(Context context) {
+        IntrusionDatabase.getInstance(context).deleteAll();
         File directory = new File(context.getExternalFilesDir(null), INTRUDER_DIR);
         if (directory.exists() && directory.isDirectory()) {
             File[] files = directory.listFiles();
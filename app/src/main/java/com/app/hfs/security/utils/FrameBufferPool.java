@@ -0,0 +1,74 @@
+package com.hfs.security.utils;
+
+/**
+ * Size-Keyed Frame Buffer Pool.
+ * Camera frames arrive at one or two fixed sizes, so buffers are reused by exact
+ * length instead of allocating a multi-megabyte array per frame.
+ * 1. A fixed number of slots, scanned linearly; acquire/release never allocate
+ *    once the pool is warm.
+ * 2. When every slot is taken by another size (the resolution changed), the
+ *    released buffer replaces one of the stale ones.
+ */
+public class FrameBufferPool {
+
+    private final byte[][] slots;
+
+    /**
+     * @param capacity Most buffers kept for reuse; each costs one frame of memory.
+     */
+    public FrameBufferPool(int capacity) {
+        this.slots = new byte[Math.max(1, capacity)][];
+    }
+
+    /**
+     * A buffer of exactly {@code size} bytes, reused when one is free.
+     * Its contents are whatever the previous user left behind.
+     */
+    public synchronized byte[] acquire(int size) {
+        for (int i = 0; i < slots.length; i++) {
+            byte[] buffer = slots[i];
+            if (buffer != null && buffer.length == size) {
+                slots[i] = null;
+                return buffer;
+            }
+        }
+        return new byte[size];
+    }
+
+    /**
+     * Returns a buffer for reuse. The caller must not touch it afterwards.
+     */
+    public synchronized void release(byte[] buffer) {
+        if (buffer == null) return;
+        int stale = -1;
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == null) {
+                slots[i] = buffer;
+                return;
+            }
+            if (slots[i].length != buffer.length) stale = i;
+        }
+        // Full: a buffer of an old resolution makes way, otherwise drop this one
+        if (stale >= 0) slots[stale] = buffer;
+    }
+
+    /**
+     * Drops every pooled buffer.
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = null;
+        }
+    }
+
+    /**
+     * Bytes currently held for reuse.
+     */
+    public synchronized long getPooledBytes() {
+        long total = 0;
+        for (byte[] buffer : slots) {
+            if (buffer != null) total += buffer.length;
+        }
+        return total;
+    }
+}
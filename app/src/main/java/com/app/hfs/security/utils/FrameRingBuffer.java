@@ -0,0 +1,188 @@
+package com.hfs.security.utils;
+
+import android.os.SystemClock;
+
+import androidx.camera.core.ImageProxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Pre-trigger Frame Ring Buffer.
+ * The camera runs for the whole time the lock screen is up, but the alert can
+ * fire seconds after it started. The last K analysis frames are kept as NV21
+ * with their timestamps, so the evidence shows the moment of the failed attempt.
+ * 1. Fixed slots, allocated while the ring first fills and then overwritten in
+ *    place: a warm ring converts and scores frames without allocating.
+ * 2. K = min(maxFrames, maxBytes / frame size), so memory is capped whatever
+ *    the camera resolution; a new cap is applied to a running ring, keeping its
+ *    newest frames. Frames closer together than MIN_INTERVAL_MS are
+ *    closed unconverted, so K frames span a useful stretch of time.
+ * 3. Each slot carries its FrameScorer score; the best-scoring frames inside a
+ *    time window around the failure become the evidence, the best one the
+ *    intrusion photo. Only when the window is empty do the nearest frames stand in.
+ * onFrame() runs on the camera thread. takeBest() and close() are meant to be
+ * queued on the same single-threaded executor, so the copy never blocks a frame;
+ * all methods are still synchronized and safe from any thread.
+ */
+public class FrameRingBuffer {
+
+    private static final long MIN_INTERVAL_MS = 100;
+
+    private final EvidencePipeline pipeline;
+    private final YuvConverter converter = new YuvConverter();
+    private final FrameScorer scorer = new FrameScorer();
+    private final int maxFrames;
+    private long maxBytes;
+
+    private byte[][] buffers = new byte[0][];
+    private long[] capturedAt = new long[0];
+    private double[] scores = new double[0];
+    private int width;
+    private int height;
+    private int rotationDegrees;
+    private int head = 0;
+    private int count = 0;
+    private boolean closed = false;
+
+    /**
+     * @param pipeline Receives copies of the frames picked at trigger time.
+     * @param maxFrames Most frames kept (K).
+     * @param maxBytes Memory cap for all slots together.
+     */
+    public FrameRingBuffer(EvidencePipeline pipeline, int maxFrames, long maxBytes) {
+        this.pipeline = pipeline;
+        this.maxFrames = Math.max(1, maxFrames);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * ImageAnalysis callback. Always closes the image.
+     */
+    public void onFrame(ImageProxy image) {
+        try {
+            long now = SystemClock.elapsedRealtime();
+            synchronized (this) {
+                if (closed) return;
+                if (count > 0 && now - capturedAt[previous(head)] < MIN_INTERVAL_MS) return;
+
+                int rotation = image.getImageInfo().getRotationDegrees();
+                if (image.getWidth() != width || image.getHeight() != height || rotation != rotationDegrees) {
+                    resize(image.getWidth(), image.getHeight(), rotation);
+                }
+                if (buffers[head] == null) {
+                    buffers[head] = new byte[YuvConverter.nv21Size(width, height)];
+                }
+
+                long start = SystemClock.elapsedRealtimeNanos();
+                ImageProxy.PlaneProxy[] planes = image.getPlanes();
+                converter.convert(width, height,
+                        planes[0].getBuffer(), planes[0].getRowStride(),
+                        planes[1].getBuffer(), planes[2].getBuffer(),
+                        planes[1].getRowStride(), planes[1].getPixelStride(),
+                        buffers[head]);
+                scores[head] = scorer.score(planes[0].getBuffer(), width, height, planes[0].getRowStride());
+                pipeline.recordCapture(SystemClock.elapsedRealtimeNanos() - start);
+                capturedAt[head] = now;
+                head = (head + 1) % buffers.length;
+                count = Math.min(count + 1, buffers.length);
+            }
+        } finally {
+            image.close();
+        }
+    }
+
+    /**
+     * Copies out up to {@code frameCount} frames, best score first, taken
+     * within {@code windowMs} of {@code failureAt} (SystemClock.elapsedRealtime()).
+     * If no frame falls inside the window, the ones taken closest to it are used.
+     * The caller owns the returned frames (pass them to
+     * EvidencePipeline.recordIntrusion or recycle each).
+     */
+    public synchronized List<EvidencePipeline.Frame> takeBest(long failureAt, long windowMs, int frameCount) {
+        List<Integer> slots = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (Math.abs(capturedAt[i] - failureAt) <= windowMs) slots.add(i);
+        }
+        if (slots.isEmpty()) {
+            for (int i = 0; i < count; i++) {
+                slots.add(i);
+            }
+            Collections.sort(slots, (a, b) -> Long.compare(
+                    Math.abs(capturedAt[a] - failureAt), Math.abs(capturedAt[b] - failureAt)));
+            if (slots.size() > frameCount) slots.subList(frameCount, slots.size()).clear();
+        }
+        Collections.sort(slots, (a, b) -> Double.compare(scores[b], scores[a]));
+
+        List<EvidencePipeline.Frame> frames = new ArrayList<>(frameCount);
+        for (int i = 0; i < slots.size() && i < frameCount; i++) {
+            int slot = slots.get(i);
+            frames.add(pipeline.copyFrame(buffers[slot], width, height, rotationDegrees,
+                    capturedAt[slot], scores[slot]));
+        }
+        return frames;
+    }
+
+    /**
+     * Stops recording and frees every slot.
+     */
+    public synchronized void close() {
+        closed = true;
+        buffers = new byte[0][];
+        count = 0;
+    }
+
+    /**
+     * New memory cap (Settings). A running ring re-sizes straight away and keeps
+     * the newest frames that still fit.
+     */
+    public synchronized void setMaxBytes(long newMaxBytes) {
+        if (newMaxBytes == maxBytes) return;
+        maxBytes = newMaxBytes;
+        if (buffers.length == 0) return;
+
+        int slots = slotsFor(width, height);
+        if (slots == buffers.length) return;
+        byte[][] newBuffers = new byte[slots][];
+        long[] newCapturedAt = new long[slots];
+        double[] newScores = new double[slots];
+        int kept = Math.min(count, slots);
+        // Oldest kept frame first, so the newest lands just before the new head
+        for (int i = 0; i < kept; i++) {
+            int from = (head - kept + i + buffers.length) % buffers.length;
+            newBuffers[i] = buffers[from];
+            newCapturedAt[i] = capturedAt[from];
+            newScores[i] = scores[from];
+        }
+        buffers = newBuffers;
+        capturedAt = newCapturedAt;
+        scores = newScores;
+        head = kept % slots;
+        count = kept;
+    }
+
+    /**
+     * New frame geometry: recompute K and start over.
+     */
+    private void resize(int newWidth, int newHeight, int newRotation) {
+        width = newWidth;
+        height = newHeight;
+        rotationDegrees = newRotation;
+        int slots = slotsFor(width, height);
+        buffers = new byte[slots][];
+        capturedAt = new long[slots];
+        scores = new double[slots];
+        head = 0;
+        count = 0;
+    }
+
+    private int slotsFor(int frameWidth, int frameHeight) {
+        long frameBytes = YuvConverter.nv21Size(frameWidth, frameHeight);
+        return (int) Math.max(1, Math.min(maxFrames, maxBytes / frameBytes));
+    }
+
+    private int previous(int slot) {
+        return (slot + buffers.length - 1) % buffers.length;
+    }
+}
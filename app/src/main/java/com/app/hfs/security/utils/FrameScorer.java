@@ -0,0 +1,82 @@
+package com.hfs.security.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Evidence Frame Scorer.
+ * Rates a camera frame straight from its Y (luma) plane, without converting to
+ * RGB, so every analysis frame can be scored on the camera thread.
+ * 1. Sharpness - variance of the 4-neighbour Laplacian, sampled on a grid of
+ *    at most GRID x GRID points. Motion blur and defocus flatten it.
+ * 2. Exposure  - mean luma against mid-grey, scaled down by the share of
+ *    crushed or blown-out samples (frames taken while auto-exposure settles).
+ * score() = sharpness * exposure. The last frame's parts are kept for logging.
+ * Not thread-safe; one instance per camera thread.
+ */
+public class FrameScorer {
+
+    private static final int GRID = 64;
+    private static final double TARGET_LUMA = 118;
+    private static final int DARK_LUMA = 16;
+    private static final int BRIGHT_LUMA = 235;
+
+    private double sharpness;
+    private double brightness;
+    private double clippedFraction;
+
+    /**
+     * Scores one frame; higher is better. The buffer's position is not moved.
+     */
+    public double score(ByteBuffer y, int width, int height, int rowStride) {
+        int base = y.position();
+        int stepX = Math.max(1, (width - 2) / GRID);
+        int stepY = Math.max(1, (height - 2) / GRID);
+
+        long lumaSum = 0;
+        long laplacianSum = 0;
+        long laplacianSquares = 0;
+        int clipped = 0;
+        int samples = 0;
+        for (int row = 1; row < height - 1; row += stepY) {
+            int rowStart = base + row * rowStride;
+            for (int col = 1; col < width - 1; col += stepX) {
+                int i = rowStart + col;
+                int center = y.get(i) & 0xFF;
+                int laplacian = 4 * center
+                        - (y.get(i - 1) & 0xFF) - (y.get(i + 1) & 0xFF)
+                        - (y.get(i - rowStride) & 0xFF) - (y.get(i + rowStride) & 0xFF);
+                lumaSum += center;
+                laplacianSum += laplacian;
+                laplacianSquares += (long) laplacian * laplacian;
+                if (center < DARK_LUMA || center > BRIGHT_LUMA) clipped++;
+                samples++;
+            }
+        }
+        if (samples == 0) {
+            sharpness = brightness = clippedFraction = 0;
+            return 0;
+        }
+
+        double meanLaplacian = (double) laplacianSum / samples;
+        sharpness = (double) laplacianSquares / samples - meanLaplacian * meanLaplacian;
+        brightness = (double) lumaSum / samples;
+        clippedFraction = (double) clipped / samples;
+        return sharpness * getExposure();
+    }
+
+    /**
+     * 1 at mid-grey with nothing clipped, falling to 0 at black, white or all clipped.
+     */
+    public double getExposure() {
+        double balance = Math.max(0, 1 - Math.abs(brightness - TARGET_LUMA) / TARGET_LUMA);
+        return balance * (1 - clippedFraction);
+    }
+
+    public double getSharpness() {
+        return sharpness;
+    }
+
+    public double getBrightness() {
+        return brightness;
+    }
+}
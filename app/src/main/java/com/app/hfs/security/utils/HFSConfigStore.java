@@ -0,0 +1,463 @@
+package com.hfs.security.utils;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * Typed, versioned binary key-value store behind HFSDatabaseHelper.
+ * 1. Loaded with a single read when opened; reads are in-memory map lookups.
+ * 2. Every value carries its type; booleans live in the type byte, numbers are
+ *    varints, string sets are sorted and front-coded (package names share long
+ *    prefixes) and byte arrays are stored raw.
+ * 3. Writes are coalesced onto the writer executor and replace the file atomically:
+ *    write a temp file, fsync it, move the old file to .bak, rename the temp file
+ *    into place. A torn or corrupt file fails its CRC.
+ * 4. An unreadable file is set aside as .corrupt and the .bak copy is loaded
+ *    instead; only when both fail does the store start empty ({@link #wasReset}).
+ *
+ * File layout: MAGIC, VERSION, entry count, entries (key, type, value), CRC32.
+ */
+public final class HFSConfigStore {
+
+    private static final String TAG = "HFS_ConfigStore";
+
+    static final int MAGIC = 0x48465343; // "HFSC"
+    static final int VERSION = 1;
+
+    private static final int TYPE_FALSE = 0;
+    private static final int TYPE_TRUE = 1;
+    private static final int TYPE_INT = 2;
+    private static final int TYPE_LONG = 3;
+    private static final int TYPE_STRING = 4;
+    private static final int TYPE_STRING_SET = 5;
+    private static final int TYPE_BYTES = 6;
+
+    private final File file;
+    private final File tempFile;
+    private final File backupFile;
+    private final Executor writer;
+    private final AtomicBoolean writePending = new AtomicBoolean();
+
+    // Guarded by this. Sets and arrays are stored as immutable copies.
+    private final Map<String, Object> values = new HashMap<>();
+    private final boolean loadedFromDisk;
+    // Set by load(): a file existed but neither it nor the backup could be read
+    private boolean reset;
+
+    /**
+     * Opens the store, reading {@code file} if it exists.
+     *
+     * @param writer Executor that performs the (coalesced) disk writes.
+     */
+    public HFSConfigStore(File file, Executor writer) {
+        this.file = file;
+        this.tempFile = new File(file.getPath() + ".tmp");
+        this.backupFile = new File(file.getPath() + ".bak");
+        this.writer = writer;
+        this.loadedFromDisk = load();
+    }
+
+    /**
+     * False on first open (no file yet) or after a reset: the caller should migrate.
+     */
+    public boolean isLoadedFromDisk() {
+        return loadedFromDisk;
+    }
+
+    /**
+     * True when stored configuration existed but neither the file nor its backup
+     * could be read, so the store started empty. The caller should tell the owner.
+     */
+    public boolean wasReset() {
+        return reset;
+    }
+
+    // --- READS ---
+
+    public synchronized boolean contains(String key) {
+        return values.containsKey(key);
+    }
+
+    public synchronized boolean getBoolean(String key, boolean defValue) {
+        Object value = values.get(key);
+        return value instanceof Boolean ? (Boolean) value : defValue;
+    }
+
+    public synchronized int getInt(String key, int defValue) {
+        Object value = values.get(key);
+        return value instanceof Integer ? (Integer) value : defValue;
+    }
+
+    public synchronized long getLong(String key, long defValue) {
+        Object value = values.get(key);
+        return value instanceof Long ? (Long) value : defValue;
+    }
+
+    public synchronized String getString(String key, String defValue) {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : defValue;
+    }
+
+    /**
+     * Returns the stored set (read-only) or {@code defValue}.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized Set<String> getStringSet(String key, Set<String> defValue) {
+        Object value = values.get(key);
+        return value instanceof Set ? (Set<String>) value : defValue;
+    }
+
+    public synchronized byte[] getBytes(String key, byte[] defValue) {
+        Object value = values.get(key);
+        return value instanceof byte[] ? ((byte[]) value).clone() : defValue;
+    }
+
+    // --- WRITES (in memory now, on disk shortly after) ---
+
+    public void putBoolean(String key, boolean value) {
+        put(key, value);
+    }
+
+    public void putInt(String key, int value) {
+        put(key, value);
+    }
+
+    public void putLong(String key, long value) {
+        put(key, value);
+    }
+
+    public void putString(String key, String value) {
+        put(key, value);
+    }
+
+    public void putStringSet(String key, Set<String> value) {
+        put(key, value == null ? null : Collections.unmodifiableSet(new HashSet<>(value)));
+    }
+
+    public void putBytes(String key, byte[] value) {
+        put(key, value == null ? null : value.clone());
+    }
+
+    public void remove(String key) {
+        put(key, null);
+    }
+
+    public void clear() {
+        synchronized (this) {
+            values.clear();
+        }
+        scheduleWrite();
+    }
+
+    /**
+     * Writes the current contents on the calling thread. Used by migration, where
+     * the old storage is deleted right after.
+     */
+    public void commit() throws IOException {
+        writeFile(encode());
+    }
+
+    private void put(String key, Object value) {
+        synchronized (this) {
+            if (value == null) {
+                values.remove(key);
+            } else {
+                values.put(key, value);
+            }
+        }
+        scheduleWrite();
+    }
+
+    /**
+     * Coalesces bursts of puts into one write of the latest state.
+     */
+    private void scheduleWrite() {
+        if (!writePending.compareAndSet(false, true)) return;
+        writer.execute(() -> {
+            writePending.set(false);
+            try {
+                writeFile(encode());
+            } catch (IOException e) {
+                Log.e(TAG, "Config write failed: " + e.getMessage());
+            }
+        });
+    }
+
+    // --- ENCODING ---
+
+    synchronized byte[] encode() {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        writeInt(buffer, MAGIC);
+        buffer.write(VERSION);
+        writeVarint(buffer, values.size());
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            writeString(buffer, entry.getKey());
+            writeValue(buffer, entry.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.toByteArray());
+        writeInt(buffer, (int) crc.getValue());
+        return buffer.toByteArray();
+    }
+
+    private static void writeValue(ByteArrayOutputStream out, Object value) {
+        if (value instanceof Boolean) {
+            out.write((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+        } else if (value instanceof Integer) {
+            out.write(TYPE_INT);
+            writeVarint(out, zigzag((Integer) value));
+        } else if (value instanceof Long) {
+            out.write(TYPE_LONG);
+            writeVarint(out, zigzag((Long) value));
+        } else if (value instanceof String) {
+            out.write(TYPE_STRING);
+            writeString(out, (String) value);
+        } else if (value instanceof Set) {
+            out.write(TYPE_STRING_SET);
+            List<String> sorted = new ArrayList<>();
+            for (Object item : (Set<?>) value) {
+                sorted.add((String) item);
+            }
+            Collections.sort(sorted);
+            writeVarint(out, sorted.size());
+            String previous = "";
+            for (String item : sorted) {
+                int shared = sharedPrefix(previous, item);
+                writeVarint(out, shared);
+                writeString(out, item.substring(shared));
+                previous = item;
+            }
+        } else {
+            byte[] bytes = (byte[]) value;
+            out.write(TYPE_BYTES);
+            writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    private boolean load() {
+        if (!file.exists() && !backupFile.exists()) return false;
+        if (read(file)) return true;
+        if (file.exists()) {
+            // Keep the bad copy out of the way: the next write would rotate it over the backup
+            File corrupt = new File(file.getPath() + ".corrupt");
+            if (!file.renameTo(corrupt)) file.delete();
+        }
+        if (read(backupFile)) {
+            Log.w(TAG, "Config restored from its backup");
+            return true;
+        }
+        Log.e(TAG, "Config and its backup are unreadable; starting empty");
+        reset = true;
+        return false;
+    }
+
+    private boolean read(File source) {
+        if (!source.exists()) return false;
+        byte[] data;
+        try (InputStream in = new FileInputStream(source)) {
+            data = new byte[(int) source.length()];
+            new DataInputStream(in).readFully(data);
+        } catch (IOException e) {
+            Log.e(TAG, "Config read failed (" + source.getName() + "): " + e.getMessage());
+            return false;
+        }
+
+        try {
+            decode(data);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Discarding unreadable config (" + source.getName() + "): " + e.getMessage());
+            values.clear();
+            return false;
+        }
+    }
+
+    private void decode(byte[] data) throws IOException {
+        if (data.length < 9) throw new EOFException("truncated");
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 4);
+        Reader in = new Reader(data, data.length - 4);
+        int storedCrc = new Reader(data, data.length).seek(data.length - 4).readInt();
+        if ((int) crc.getValue() != storedCrc) throw new IOException("checksum mismatch");
+        if (in.readInt() != MAGIC) throw new IOException("not a config file");
+        int version = in.readByte();
+        if (version != VERSION) throw new IOException("unsupported version " + version);
+
+        int count = (int) in.readVarint();
+        for (int i = 0; i < count; i++) {
+            String key = in.readString();
+            int type = in.readByte();
+            switch (type) {
+                case TYPE_FALSE:
+                    values.put(key, Boolean.FALSE);
+                    break;
+                case TYPE_TRUE:
+                    values.put(key, Boolean.TRUE);
+                    break;
+                case TYPE_INT:
+                    values.put(key, (int) unzigzag(in.readVarint()));
+                    break;
+                case TYPE_LONG:
+                    values.put(key, unzigzag(in.readVarint()));
+                    break;
+                case TYPE_STRING:
+                    values.put(key, in.readString());
+                    break;
+                case TYPE_STRING_SET: {
+                    int size = (int) in.readVarint();
+                    Set<String> set = new HashSet<>(size * 2);
+                    String previous = "";
+                    for (int j = 0; j < size; j++) {
+                        int shared = (int) in.readVarint();
+                        previous = previous.substring(0, shared) + in.readString();
+                        set.add(previous);
+                    }
+                    values.put(key, Collections.unmodifiableSet(set));
+                    break;
+                }
+                case TYPE_BYTES:
+                    values.put(key, in.readBytes((int) in.readVarint()));
+                    break;
+                default:
+                    throw new IOException("unknown type " + type);
+            }
+        }
+    }
+
+    /**
+     * Write-temp + fsync + rename, so the file on disk is always complete. The
+     * previous file becomes the backup; if the process dies between the two
+     * renames, load() finds only the backup and uses it.
+     */
+    private void writeFile(byte[] data) throws IOException {
+        synchronized (tempFile) {
+            try (FileOutputStream out = new FileOutputStream(tempFile)) {
+                out.write(data);
+                out.flush();
+                out.getFD().sync();
+            }
+            if (file.exists() && !file.renameTo(backupFile)) {
+                Log.w(TAG, "Could not keep a backup of " + file.getName());
+            }
+            if (!tempFile.renameTo(file)) {
+                throw new IOException("rename to " + file.getName() + " failed");
+            }
+        }
+    }
+
+    // --- PRIMITIVES ---
+
+    private static int sharedPrefix(String a, String b) {
+        int max = Math.min(a.length(), b.length());
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        // Never split a surrogate pair across prefix and suffix
+        if (i > 0 && Character.isHighSurrogate(b.charAt(i - 1))) i--;
+        return i;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Bounds-checked cursor over the loaded bytes.
+     */
+    private static final class Reader {
+        private final byte[] data;
+        private final int limit;
+        private int pos;
+
+        Reader(byte[] data, int limit) {
+            this.data = data;
+            this.limit = limit;
+        }
+
+        Reader seek(int position) {
+            pos = position;
+            return this;
+        }
+
+        int readByte() throws EOFException {
+            if (pos >= limit) throw new EOFException("truncated");
+            return data[pos++] & 0xFF;
+        }
+
+        int readInt() throws EOFException {
+            return (readByte() << 24) | (readByte() << 16) | (readByte() << 8) | readByte();
+        }
+
+        long readVarint() throws IOException {
+            long result = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return result;
+            }
+            throw new IOException("malformed varint");
+        }
+
+        byte[] readBytes(int length) throws EOFException {
+            if (length < 0 || length > limit - pos) throw new EOFException("truncated");
+            byte[] out = Arrays.copyOfRange(data, pos, pos + length);
+            pos += length;
+            return out;
+        }
+
+        String readString() throws IOException {
+            int length = (int) readVarint();
+            if (length < 0 || length > limit - pos) throw new EOFException("truncated");
+            String value = new String(data, pos, length, StandardCharsets.UTF_8);
+            pos += length;
+            return value;
+        }
+    }
+}
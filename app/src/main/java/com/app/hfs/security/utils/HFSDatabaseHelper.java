@@ -2,40 +2,100 @@ package com.hfs.security.utils;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Log;
 
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
+import com.hfs.security.models.ProtectionRule;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
 
 /**
  * Manages local persistent storage for HFS Security.
  * FIXED: 
  * 1. Updated isSetupComplete() logic to verify PIN existence.
  * 2. Provides thread-safe access to all security configurations.
+ * 3. Keeps an immutable in-memory snapshot of the protected set so the
+ *    guard loop never parses anything; it is rebuilt only when the set changes.
+ * 4. Stores the conditional protection rules next to the protected set and
+ *    publishes them compiled (ProtectionRuleTable) for the guard loop.
+ * 5. Auto-protect rules (package patterns, categories) for new installs.
+ * 6. Backed by the typed binary HFSConfigStore (one read at start, atomic writes)
+ *    instead of SharedPreferences + Gson; the old prefs are migrated on first open.
+ *    Gson is only left for the structured rule and grace-override values.
  */
 public class HFSDatabaseHelper {
 
-    private static final String PREF_NAME = "hfs_security_prefs";
+    private static final String TAG = "HFS_Database";
+    private static final String CONFIG_FILE = "hfs_config.bin";
+    // Pre-HFSConfigStore storage, read once for migration
+    private static final String LEGACY_PREF_NAME = "hfs_security_prefs";
+    private static final String LEGACY_KEY_PROTECTED_ADDITIONS = "protected_packages_added";
     
     // Database Keys
     private static final String KEY_PROTECTED_PACKAGES = "protected_packages";
+    private static final String KEY_PROTECTION_RULES = "protection_rules";
+    private static final String KEY_AUTO_PROTECT_PATTERNS = "auto_protect_patterns";
+    private static final String KEY_AUTO_PROTECT_CATEGORIES = "auto_protect_categories";
     private static final String KEY_MASTER_PIN = "master_pin";
     private static final String KEY_TRUSTED_NUMBER = "trusted_number";
     private static final String KEY_SETUP_COMPLETE = "setup_complete";
     private static final String KEY_STEALTH_MODE = "stealth_mode_enabled";
     private static final String KEY_FAKE_GALLERY = "fake_gallery_enabled";
     private static final String KEY_OWNER_FACE_DATA = "owner_face_template";
+    private static final String KEY_SESSION_GRACE = "session_grace_overrides";
+    private static final String KEY_USAGE_TRACE = "usage_trace_enabled";
+    private static final String KEY_TICK_BUDGET = "tick_budget_us";
+    private static final String KEY_GUARD_ENABLED = "guard_enabled";
+    private static final String KEY_EVIDENCE_RING_KB = "evidence_ring_kb";
+    private static final String KEY_CONFIG_RESET = "config_reset";
 
     private static HFSDatabaseHelper instance;
-    private final SharedPreferences prefs;
+    private final HFSConfigStore store;
     private final Gson gson;
 
+    // Published snapshot of the protected set; replaced wholesale, never mutated
+    private volatile Set<String> protectedSnapshot;
+    // Hash-table view of the same set for the guard loop
+    private volatile ProtectedAppMatcher protectedMatcher = ProtectedAppMatcher.EMPTY;
+
+    // Conditional rules as stored, and compiled for the guard loop
+    private volatile List<ProtectionRule> protectionRules = Collections.emptyList();
+    private volatile ProtectionRuleTable ruleTable = ProtectionRuleTable.EMPTY;
+
+    // Compiled auto-protect rules for PACKAGE_ADDED
+    private volatile AutoProtectIndex autoProtectIndex = AutoProtectIndex.EMPTY;
+
+    // Per-package unlock grace overrides (package -> milliseconds)
+    private volatile Map<String, Long> sessionGraceOverrides;
+
     private HFSDatabaseHelper(Context context) {
-        prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
         gson = new Gson();
+        store = new HFSConfigStore(new File(context.getFilesDir(), CONFIG_FILE),
+                Executors.newSingleThreadExecutor(r -> new Thread(r, "HFS-ConfigWriter")));
+        if (!store.isLoadedFromDisk()) {
+            migrateFromPreferences(context);
+            if (store.wasReset()) {
+                Log.e(TAG, "Configuration unreadable; PIN, protected apps and rules are back to defaults");
+                // Kept until the owner has seen the warning
+                store.putBoolean(KEY_CONFIG_RESET, true);
+            }
+        }
+        publishProtectedSnapshot(new HashSet<>(
+                store.getStringSet(KEY_PROTECTED_PACKAGES, Collections.<String>emptySet())));
+        reloadSessionGraceOverrides();
+        reloadProtectionRules();
+        reloadAutoProtectIndex();
     }
 
     public static synchronized HFSDatabaseHelper getInstance(Context context) {
@@ -45,43 +105,262 @@ public class HFSDatabaseHelper {
         return instance;
     }
 
-    // --- PROTECTED APPS STORAGE ---
+    /**
+     * Copies the old SharedPreferences file into the config store, once.
+     * JSON-encoded sets become native string sets; everything else keeps its type.
+     */
+    private void migrateFromPreferences(Context context) {
+        SharedPreferences legacy = context.getSharedPreferences(LEGACY_PREF_NAME, Context.MODE_PRIVATE);
+        Map<String, ?> all = legacy.getAll();
+        if (all.isEmpty()) return;
 
-    public void saveProtectedPackages(Set<String> packages) {
-        String json = gson.toJson(packages);
-        prefs.edit().putString(KEY_PROTECTED_PACKAGES, json).apply();
+        Set<String> protectedPackages = new HashSet<>();
+        for (Map.Entry<String, ?> entry : all.entrySet()) {
+            String key = entry.getKey();
+            Object value = entry.getValue();
+            if (KEY_PROTECTED_PACKAGES.equals(key) || KEY_AUTO_PROTECT_PATTERNS.equals(key)) {
+                Set<String> parsed = parseJsonStringSet((String) value);
+                if (KEY_PROTECTED_PACKAGES.equals(key)) {
+                    protectedPackages.addAll(parsed);
+                } else {
+                    store.putStringSet(key, parsed);
+                }
+            } else if (LEGACY_KEY_PROTECTED_ADDITIONS.equals(key)) {
+                protectedPackages.addAll(castStringSet(value));
+            } else if (value instanceof Boolean) {
+                store.putBoolean(key, (Boolean) value);
+            } else if (value instanceof Integer) {
+                store.putInt(key, (Integer) value);
+            } else if (value instanceof Long) {
+                store.putLong(key, (Long) value);
+            } else if (value instanceof String) {
+                store.putString(key, (String) value);
+            } else if (value instanceof Set) {
+                store.putStringSet(key, castStringSet(value));
+            }
+        }
+        store.putStringSet(KEY_PROTECTED_PACKAGES, protectedPackages);
+
+        try {
+            store.commit();
+            context.deleteSharedPreferences(LEGACY_PREF_NAME);
+            Log.i(TAG, "Migrated " + all.size() + " settings to " + CONFIG_FILE);
+        } catch (IOException e) {
+            // Keep the old file; the next start migrates again
+            Log.e(TAG, "Settings migration failed: " + e.getMessage());
+        }
     }
 
-    public Set<String> getProtectedPackages() {
-        String json = prefs.getString(KEY_PROTECTED_PACKAGES, null);
-        if (json == null) {
+    private Set<String> parseJsonStringSet(String json) {
+        if (json == null) return new HashSet<>();
+        try {
+            Type type = new TypeToken<HashSet<String>>() {}.getType();
+            Set<String> parsed = gson.fromJson(json, type);
+            return parsed != null ? parsed : new HashSet<>();
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Discarding unreadable legacy set: " + e.getMessage());
             return new HashSet<>();
         }
-        Type type = new TypeToken<HashSet<String>>() {}.getType();
-        return gson.fromJson(json, type);
+    }
+
+    private static Set<String> castStringSet(Object value) {
+        Set<String> out = new HashSet<>();
+        for (Object item : (Set<?>) value) {
+            out.add(String.valueOf(item));
+        }
+        return out;
+    }
+
+    // --- PROTECTED APPS STORAGE ---
+
+    public synchronized void saveProtectedPackages(Set<String> packages) {
+        // Publish first so readers see the new set before the async write lands
+        publishProtectedSnapshot(new HashSet<>(packages));
+        store.putStringSet(KEY_PROTECTED_PACKAGES, packages);
+    }
+
+    /**
+     * Adds one package: the snapshot is extended in memory and the compact
+     * binary set is written in the background.
+     *
+     * @return false if the package was already protected.
+     */
+    public synchronized boolean addProtectedPackage(String packageName) {
+        if (protectedSnapshot.contains(packageName)) return false;
+
+        Set<String> updated = new HashSet<>(protectedSnapshot);
+        updated.add(packageName);
+        publishProtectedSnapshot(updated);
+        store.putStringSet(KEY_PROTECTED_PACKAGES, updated);
+        return true;
+    }
+
+    /**
+     * Returns the current protected set. O(1) and allocation-free.
+     * The returned set is read-only; copy it before modifying.
+     */
+    public Set<String> getProtectedPackages() {
+        return protectedSnapshot;
     }
 
     public int getProtectedAppsCount() {
-        return getProtectedPackages().size();
+        return protectedSnapshot.size();
+    }
+
+    /**
+     * Returns the allocation-free matcher built from the current snapshot.
+     */
+    public ProtectedAppMatcher getProtectedMatcher() {
+        return protectedMatcher;
+    }
+
+    private void publishProtectedSnapshot(Set<String> packages) {
+        protectedSnapshot = Collections.unmodifiableSet(packages);
+        protectedMatcher = new ProtectedAppMatcher(packages);
+    }
+
+    // --- CONDITIONAL PROTECTION RULES ---
+
+    /**
+     * Replaces the rule list. Order is priority: the first matching rule decides.
+     * Only the first ProtectionRuleTable.MAX_RULES rules take effect.
+     */
+    public void saveProtectionRules(List<ProtectionRule> rules) {
+        publishProtectionRules(new ArrayList<>(rules));
+        store.putString(KEY_PROTECTION_RULES, gson.toJson(rules));
+    }
+
+    /**
+     * Returns the stored rules. Read-only; copy before modifying.
+     */
+    public List<ProtectionRule> getProtectionRules() {
+        return protectionRules;
+    }
+
+    /**
+     * Returns the compiled rules for the guard loop. Rebuilt only when the rules change.
+     */
+    public ProtectionRuleTable getRuleTable() {
+        return ruleTable;
+    }
+
+    private void reloadProtectionRules() {
+        String json = store.getString(KEY_PROTECTION_RULES, null);
+        List<ProtectionRule> parsed = null;
+        if (json != null) {
+            try {
+                Type type = new TypeToken<ArrayList<ProtectionRule>>() {}.getType();
+                parsed = gson.fromJson(json, type);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Discarding unreadable protection rules: " + e.getMessage());
+            }
+        }
+        publishProtectionRules(parsed == null ? new ArrayList<>() : parsed);
+    }
+
+    private void publishProtectionRules(List<ProtectionRule> rules) {
+        if (rules.size() > ProtectionRuleTable.MAX_RULES) {
+            Log.w(TAG, "Only the first " + ProtectionRuleTable.MAX_RULES + " protection rules are applied");
+        }
+        protectionRules = Collections.unmodifiableList(rules);
+        ruleTable = new ProtectionRuleTable(rules);
+    }
+
+    // --- AUTO-PROTECT FOR NEW INSTALLS ---
+
+    /**
+     * @param patterns Package patterns such as "com.*bank*" (see AutoProtectIndex).
+     * @param categoryMask Bit {@code 1 << ApplicationInfo.category} per category to protect.
+     */
+    public void saveAutoProtectRules(List<String> patterns, int categoryMask) {
+        autoProtectIndex = new AutoProtectIndex(patterns, categoryMask);
+        store.putStringSet(KEY_AUTO_PROTECT_PATTERNS, new HashSet<>(patterns));
+        store.putInt(KEY_AUTO_PROTECT_CATEGORIES, categoryMask);
+    }
+
+    public List<String> getAutoProtectPatterns() {
+        List<String> patterns = new ArrayList<>(
+                store.getStringSet(KEY_AUTO_PROTECT_PATTERNS, Collections.<String>emptySet()));
+        Collections.sort(patterns);
+        return patterns;
+    }
+
+    public int getAutoProtectCategories() {
+        return store.getInt(KEY_AUTO_PROTECT_CATEGORIES, 0);
+    }
+
+    /**
+     * Returns the compiled auto-protect rules. Rebuilt only when they change.
+     */
+    public AutoProtectIndex getAutoProtectIndex() {
+        return autoProtectIndex;
+    }
+
+    private void reloadAutoProtectIndex() {
+        autoProtectIndex = new AutoProtectIndex(getAutoProtectPatterns(), getAutoProtectCategories());
+    }
+
+    // --- UNLOCK SESSION GRACE ---
+
+    /**
+     * Sets how long an unlocked app stays unlocked after the user leaves it.
+     */
+    public void setSessionGraceMs(String packageName, long graceMs) {
+        Map<String, Long> updated = new HashMap<>(sessionGraceOverrides);
+        updated.put(packageName, graceMs);
+        sessionGraceOverrides = Collections.unmodifiableMap(updated);
+        store.putString(KEY_SESSION_GRACE, gson.toJson(updated));
+    }
+
+    /**
+     * Drops the package's override so it uses the default grace period again.
+     */
+    public void clearSessionGraceMs(String packageName) {
+        if (!sessionGraceOverrides.containsKey(packageName)) return;
+        Map<String, Long> updated = new HashMap<>(sessionGraceOverrides);
+        updated.remove(packageName);
+        sessionGraceOverrides = Collections.unmodifiableMap(updated);
+        store.putString(KEY_SESSION_GRACE, gson.toJson(updated));
+    }
+
+    public boolean hasSessionGraceOverride(String packageName) {
+        return sessionGraceOverrides.containsKey(packageName);
+    }
+
+    public long getSessionGraceMs(String packageName, long defaultMs) {
+        Long override = sessionGraceOverrides.get(packageName);
+        return override != null ? override : defaultMs;
+    }
+
+    private void reloadSessionGraceOverrides() {
+        String json = store.getString(KEY_SESSION_GRACE, null);
+        Map<String, Long> parsed = null;
+        if (json != null) {
+            Type type = new TypeToken<HashMap<String, Long>>() {}.getType();
+            parsed = gson.fromJson(json, type);
+        }
+        sessionGraceOverrides = parsed == null
+                ? Collections.<String, Long>emptyMap()
+                : Collections.unmodifiableMap(parsed);
     }
 
     // --- SECURITY CREDENTIALS ---
 
     public void saveMasterPin(String pin) {
-        prefs.edit().putString(KEY_MASTER_PIN, pin).apply();
+        store.putString(KEY_MASTER_PIN, pin);
     }
 
     public String getMasterPin() {
         // Returns "0000" if no PIN has ever been set
-        return prefs.getString(KEY_MASTER_PIN, "0000");
+        return store.getString(KEY_MASTER_PIN, "0000");
     }
 
     public void saveTrustedNumber(String number) {
-        prefs.edit().putString(KEY_TRUSTED_NUMBER, number).apply();
+        store.putString(KEY_TRUSTED_NUMBER, number);
     }
 
     public String getTrustedNumber() {
-        return prefs.getString(KEY_TRUSTED_NUMBER, "");
+        return store.getString(KEY_TRUSTED_NUMBER, "");
     }
 
     // --- APP SETUP STATUS ---
@@ -91,7 +370,7 @@ public class HFSDatabaseHelper {
      * in addition to the setup flag. This solves the persistent 'Welcome' toast issue.
      */
     public boolean isSetupComplete() {
-        boolean flag = prefs.getBoolean(KEY_SETUP_COMPLETE, false);
+        boolean flag = store.getBoolean(KEY_SETUP_COMPLETE, false);
         String pin = getMasterPin();
         
         // Setup is only truly complete if flag is true AND pin is not the default
@@ -99,41 +378,101 @@ public class HFSDatabaseHelper {
     }
 
     public void setSetupComplete(boolean status) {
-        prefs.edit().putBoolean(KEY_SETUP_COMPLETE, status).apply();
+        store.putBoolean(KEY_SETUP_COMPLETE, status);
     }
 
     // --- FEATURE TOGGLES ---
 
     public void setStealthMode(boolean enabled) {
-        prefs.edit().putBoolean(KEY_STEALTH_MODE, enabled).apply();
+        store.putBoolean(KEY_STEALTH_MODE, enabled);
     }
 
     public boolean isStealthModeEnabled() {
-        return prefs.getBoolean(KEY_STEALTH_MODE, false);
+        return store.getBoolean(KEY_STEALTH_MODE, false);
     }
 
     public void setFakeGalleryEnabled(boolean enabled) {
-        prefs.edit().putBoolean(KEY_FAKE_GALLERY, enabled).apply();
+        store.putBoolean(KEY_FAKE_GALLERY, enabled);
     }
 
     public boolean isFakeGalleryEnabled() {
-        return prefs.getBoolean(KEY_FAKE_GALLERY, false);
+        return store.getBoolean(KEY_FAKE_GALLERY, false);
+    }
+
+    /**
+     * Debug mode: the guard writes the UsageEvents stream it sees to a trace file.
+     */
+    public void setUsageTraceEnabled(boolean enabled) {
+        store.putBoolean(KEY_USAGE_TRACE, enabled);
+    }
+
+    public boolean isUsageTraceEnabled() {
+        return store.getBoolean(KEY_USAGE_TRACE, false);
+    }
+
+    /**
+     * CPU budget for one guard tick; ticks above it are logged as warnings.
+     */
+    public void setTickBudgetMicros(long budgetMicros) {
+        store.putLong(KEY_TICK_BUDGET, budgetMicros);
+    }
+
+    public long getTickBudgetMicros(long defaultMicros) {
+        return store.getLong(KEY_TICK_BUDGET, defaultMicros);
+    }
+
+    /**
+     * Whether the owner wants the guard running; the watchdog restarts it only when true.
+     */
+    public void setGuardEnabled(boolean enabled) {
+        store.putBoolean(KEY_GUARD_ENABLED, enabled);
+    }
+
+    public boolean isGuardEnabled() {
+        return store.getBoolean(KEY_GUARD_ENABLED, false);
+    }
+
+    /**
+     * Memory the lock screen may hold in recent camera frames for intruder evidence.
+     */
+    public void setEvidenceRingKb(int kilobytes) {
+        store.putInt(KEY_EVIDENCE_RING_KB, kilobytes);
+    }
+
+    public int getEvidenceRingKb(int defaultKb) {
+        return store.getInt(KEY_EVIDENCE_RING_KB, defaultKb);
+    }
+
+    /**
+     * True after the stored configuration was lost and replaced by defaults,
+     * until {@link #acknowledgeConfigReset()}.
+     */
+    public boolean isConfigReset() {
+        return store.getBoolean(KEY_CONFIG_RESET, false);
+    }
+
+    public void acknowledgeConfigReset() {
+        store.remove(KEY_CONFIG_RESET);
     }
 
     // --- LEGACY/UNUSED DATA ---
 
     public void saveOwnerFaceData(String faceData) {
-        prefs.edit().putString(KEY_OWNER_FACE_DATA, faceData).apply();
+        store.putString(KEY_OWNER_FACE_DATA, faceData);
     }
 
     public String getOwnerFaceData() {
-        return prefs.getString(KEY_OWNER_FACE_DATA, "");
+        return store.getString(KEY_OWNER_FACE_DATA, "");
     }
 
     /**
      * Resets the app to factory settings.
      */
     public void clearDatabase() {
-        prefs.edit().clear().apply();
+        publishProtectedSnapshot(new HashSet<>());
+        sessionGraceOverrides = Collections.emptyMap();
+        publishProtectionRules(new ArrayList<>());
+        autoProtectIndex = AutoProtectIndex.EMPTY;
+        store.clear();
     }
 }
\ No newline at end of file
@@ -0,0 +1,330 @@
+package com.hfs.security.utils;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+import com.hfs.security.models.IntruderLog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Intrusion Event Database.
+ * Every intruder alert is one row: timestamp, target package and app name, alert
+ * type, location, evidence photo and thumbnail paths and SMS delivery status.
+ * 1. Indexed on timestamp (history paging) and package (per-app queries).
+ * 2. History is read in keyset pages (timestamp, id) so a page costs the same
+ *    however much history exists; the photo directory is never scanned.
+ * 3. Photos captured before this database existed are imported once, after
+ *    creation and off the open path; see {@link #importLegacyPhotos()}.
+ * 4. Extra burst frames of an intrusion live in a side table (version 2); the
+ *    intrusion row keeps the best one as its photo.
+ */
+public class IntrusionDatabase extends SQLiteOpenHelper {
+
+    private static final String TAG = "HFS_IntrusionDB";
+    private static final String DB_NAME = "hfs_intrusions.db";
+    private static final int DB_VERSION = 2;
+
+    private static final String TABLE = "intrusions";
+    private static final String COL_ID = "_id";
+    private static final String COL_TIMESTAMP = "timestamp";
+    private static final String COL_PACKAGE = "package";
+    private static final String COL_APP_NAME = "app_name";
+    private static final String COL_ALERT_TYPE = "alert_type";
+    private static final String COL_LOCATION = "location";
+    private static final String COL_PHOTO = "photo_path";
+    private static final String COL_THUMBNAIL = "thumbnail_path";
+    private static final String COL_SMS_STATUS = "sms_status";
+
+    private static final String FRAMES_TABLE = "intrusion_frames";
+    private static final String COL_INTRUSION_ID = "intrusion_id";
+    private static final String COL_CAPTURED_AT = "captured_at";
+
+    // Exists only until the legacy photos have been imported
+    private static final String LEGACY_IMPORT_TABLE = "legacy_import_pending";
+
+    private static final String[] ALL_COLUMNS = {
+            COL_ID, COL_TIMESTAMP, COL_PACKAGE, COL_APP_NAME, COL_ALERT_TYPE,
+            COL_LOCATION, COL_PHOTO, COL_THUMBNAIL, COL_SMS_STATUS
+    };
+    private static final String NEWEST_FIRST = COL_TIMESTAMP + " DESC, " + COL_ID + " DESC";
+
+    private static IntrusionDatabase instance;
+    private final Context context;
+
+    private IntrusionDatabase(Context context) {
+        super(context, DB_NAME, null, DB_VERSION);
+        this.context = context;
+        // Alerts are written while the history screen may be reading
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    public static synchronized IntrusionDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new IntrusionDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COL_TIMESTAMP + " INTEGER NOT NULL, "
+                + COL_PACKAGE + " TEXT, "
+                + COL_APP_NAME + " TEXT, "
+                + COL_ALERT_TYPE + " TEXT, "
+                + COL_LOCATION + " TEXT, "
+                + COL_PHOTO + " TEXT, "
+                + COL_THUMBNAIL + " TEXT, "
+                + COL_SMS_STATUS + " INTEGER NOT NULL DEFAULT " + IntruderLog.SMS_UNKNOWN + ")");
+        db.execSQL("CREATE INDEX idx_intrusions_timestamp ON " + TABLE
+                + " (" + COL_TIMESTAMP + ", " + COL_ID + ")");
+        db.execSQL("CREATE INDEX idx_intrusions_package ON " + TABLE
+                + " (" + COL_PACKAGE + ", " + COL_TIMESTAMP + ")");
+        createFramesTable(db);
+        // Scanning the photo directory here would stall whoever opened the database
+        db.execSQL("CREATE TABLE " + LEGACY_IMPORT_TABLE + " (" + COL_ID + " INTEGER)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            createFramesTable(db);
+        }
+    }
+
+    private static void createFramesTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + FRAMES_TABLE + " ("
+                + COL_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COL_INTRUSION_ID + " INTEGER NOT NULL, "
+                + COL_CAPTURED_AT + " INTEGER NOT NULL, "
+                + COL_PHOTO + " TEXT NOT NULL)");
+        db.execSQL("CREATE INDEX idx_frames_intrusion ON " + FRAMES_TABLE + " (" + COL_INTRUSION_ID + ")");
+    }
+
+    // --- WRITES ---
+
+    /**
+     * Records a new intrusion; photo, location and SMS status can follow later.
+     *
+     * @return The row id, or -1 on failure.
+     */
+    public long recordIntrusion(String packageName, String appName, String alertType) {
+        ContentValues values = new ContentValues();
+        values.put(COL_TIMESTAMP, System.currentTimeMillis());
+        values.put(COL_PACKAGE, packageName);
+        values.put(COL_APP_NAME, appName);
+        values.put(COL_ALERT_TYPE, alertType);
+        values.put(COL_SMS_STATUS, IntruderLog.SMS_PENDING);
+        try {
+            return getWritableDatabase().insert(TABLE, null, values);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to record intrusion: " + e.getMessage());
+            return -1;
+        }
+    }
+
+    public void setPhoto(long id, String photoPath, String thumbnailPath) {
+        ContentValues values = new ContentValues();
+        values.put(COL_PHOTO, photoPath);
+        values.put(COL_THUMBNAIL, thumbnailPath);
+        update(id, values);
+    }
+
+    public void setLocation(long id, String location) {
+        ContentValues values = new ContentValues();
+        values.put(COL_LOCATION, location);
+        update(id, values);
+    }
+
+    public void setSmsStatus(long id, int smsStatus) {
+        ContentValues values = new ContentValues();
+        values.put(COL_SMS_STATUS, smsStatus);
+        update(id, values);
+    }
+
+    /**
+     * Records an extra evidence frame of an intrusion besides its main photo.
+     */
+    public void addFrame(long intrusionId, String photoPath, long capturedAt) {
+        if (intrusionId < 0) return;
+        ContentValues values = new ContentValues();
+        values.put(COL_INTRUSION_ID, intrusionId);
+        values.put(COL_CAPTURED_AT, capturedAt);
+        values.put(COL_PHOTO, photoPath);
+        try {
+            getWritableDatabase().insert(FRAMES_TABLE, null, values);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to record frame of intrusion " + intrusionId + ": " + e.getMessage());
+        }
+    }
+
+    private void update(long id, ContentValues values) {
+        if (id < 0) return;
+        try {
+            getWritableDatabase().update(TABLE, values, COL_ID + " = ?", new String[] {Long.toString(id)});
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to update intrusion " + id + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes one intrusion and its evidence files.
+     */
+    public void delete(IntruderLog log) {
+        deleteFiles(log.getFilePath(), log.getThumbnailPath());
+        SQLiteDatabase db = getWritableDatabase();
+        String[] idArgs = {Long.toString(log.getId())};
+        try (Cursor cursor = db.query(FRAMES_TABLE, new String[] {COL_PHOTO},
+                COL_INTRUSION_ID + " = ?", idArgs, null, null, null)) {
+            while (cursor.moveToNext()) {
+                deleteFiles(cursor.getString(0));
+            }
+        }
+        db.delete(FRAMES_TABLE, COL_INTRUSION_ID + " = ?", idArgs);
+        db.delete(TABLE, COL_ID + " = ?", idArgs);
+    }
+
+    /**
+     * Deletes every intrusion and its evidence files.
+     */
+    public void deleteAll() {
+        SQLiteDatabase db = getWritableDatabase();
+        try (Cursor cursor = db.query(TABLE, new String[] {COL_PHOTO, COL_THUMBNAIL},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                deleteFiles(cursor.getString(0), cursor.getString(1));
+            }
+        }
+        try (Cursor cursor = db.query(FRAMES_TABLE, new String[] {COL_PHOTO},
+                null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                deleteFiles(cursor.getString(0));
+            }
+        }
+        db.delete(FRAMES_TABLE, null, null);
+        db.delete(TABLE, null, null);
+    }
+
+    private static void deleteFiles(String... paths) {
+        for (String path : paths) {
+            if (path != null) new File(path).delete();
+        }
+    }
+
+    // --- PAGED READS ---
+
+    /**
+     * One page of history, newest first.
+     *
+     * @param after Last row of the previous page, or null for the first page.
+     * @param packageName Only this app's intrusions, or null for all.
+     */
+    public List<IntruderLog> getPage(IntruderLog after, String packageName, int pageSize) {
+        StringBuilder where = new StringBuilder();
+        List<String> args = new ArrayList<>();
+        if (packageName != null) {
+            where.append(COL_PACKAGE).append(" = ?");
+            args.add(packageName);
+        }
+        if (after != null) {
+            if (where.length() > 0) where.append(" AND ");
+            where.append("(").append(COL_TIMESTAMP).append(" < ? OR (")
+                    .append(COL_TIMESTAMP).append(" = ? AND ").append(COL_ID).append(" < ?))");
+            args.add(Long.toString(after.getTimestamp()));
+            args.add(Long.toString(after.getTimestamp()));
+            args.add(Long.toString(after.getId()));
+        }
+
+        List<IntruderLog> page = new ArrayList<>(pageSize);
+        try (Cursor cursor = getReadableDatabase().query(TABLE, ALL_COLUMNS,
+                where.length() > 0 ? where.toString() : null,
+                args.toArray(new String[0]), null, null, NEWEST_FIRST, Integer.toString(pageSize))) {
+            while (cursor.moveToNext()) {
+                page.add(new IntruderLog(
+                        cursor.getLong(0), cursor.getLong(1), cursor.getString(2), cursor.getString(3),
+                        cursor.getString(4), cursor.getString(5), cursor.getString(6), cursor.getString(7),
+                        cursor.getInt(8)));
+            }
+        }
+        return page;
+    }
+
+    // --- LEGACY PHOTOS ---
+
+    /**
+     * Indexes the photos saved before this database existed, once. Call off the
+     * UI thread; it returns at once when there is nothing left to import.
+     * Photos already indexed (saved between creation and this call) are skipped,
+     * and the pending marker is dropped in the same transaction as the inserts.
+     */
+    public void importLegacyPhotos() {
+        SQLiteDatabase db = getWritableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new String[] {LEGACY_IMPORT_TABLE})) {
+            if (!cursor.moveToFirst()) return;
+        }
+
+        File[] photos = FileSecureHelper.getIntruderDirectory(context).listFiles((dir, name) ->
+                name.toLowerCase().endsWith(".jpg") || name.toLowerCase().endsWith(".png"));
+        Set<String> indexed = new HashSet<>();
+        collectPaths(db, TABLE, indexed);
+        collectPaths(db, FRAMES_TABLE, indexed);
+
+        int imported = 0;
+        db.beginTransaction();
+        try {
+            if (photos != null) {
+                for (File photo : photos) {
+                    if (indexed.contains(photo.getAbsolutePath())) continue;
+                    String[] names = parseLegacyName(photo.getName());
+                    ContentValues values = new ContentValues();
+                    values.put(COL_TIMESTAMP, photo.lastModified());
+                    values.put(COL_APP_NAME, names[0]);
+                    values.put(COL_PACKAGE, names[1]);
+                    values.put(COL_PHOTO, photo.getAbsolutePath());
+                    values.put(COL_SMS_STATUS, IntruderLog.SMS_UNKNOWN);
+                    db.insert(TABLE, null, values);
+                    imported++;
+                }
+            }
+            db.execSQL("DROP TABLE " + LEGACY_IMPORT_TABLE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Log.i(TAG, "Imported " + imported + " existing intruder photos");
+    }
+
+    private static void collectPaths(SQLiteDatabase db, String table, Set<String> into) {
+        try (Cursor cursor = db.query(table, new String[] {COL_PHOTO},
+                COL_PHOTO + " IS NOT NULL", null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                into.add(cursor.getString(0));
+            }
+        }
+    }
+
+    /**
+     * App name and package of a legacy photo, read the way the file-based
+     * history did: AppName-PackageName-Timestamp.jpg, where the app name is
+     * everything before the first hyphen.
+     *
+     * @return {appName, packageName}; the package is "" when the name has none.
+     */
+    static String[] parseLegacyName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        String[] parts = (dot > 0 ? fileName.substring(0, dot) : fileName).split("-");
+        if (parts.length < 2) return new String[] {"Unknown", ""};
+        return new String[] {parts[0], parts.length >= 3 ? parts[1] : ""};
+    }
+}
@@ -0,0 +1,89 @@
+package com.hfs.security.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Latency Histogram.
+ * HDR-style log-linear buckets: every power of two is split into 16 equal
+ * sub-buckets, so any recorded value is reported within 6.25% of its true
+ * size while the whole range (0 ms to ~12 days) fits in 544 counters.
+ * record() is a single atomic increment and never allocates, so it is safe
+ * to call from the guard thread, the main thread and binder threads at once.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_SHIFT = 32;
+    private static final int BUCKET_COUNT = (MAX_SHIFT + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * Adds one sample. Negative values (clock skew between sources) are dropped.
+     */
+    public void record(long value) {
+        if (value < 0) return;
+        counts.incrementAndGet(indexOf(value));
+    }
+
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Value at the given percentile (0-100), reported as the upper edge of its
+     * bucket. Returns -1 when the histogram is empty.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return -1;
+
+        long rank = Math.max(1, (long) Math.ceil(total * Math.min(percentile, 100.0) / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return upperEdgeOf(i);
+            }
+        }
+        return upperEdgeOf(BUCKET_COUNT - 1);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        if (shift > MAX_SHIFT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (value >>> shift) - SUB_BUCKETS;
+        return (shift + 1) * SUB_BUCKETS + sub;
+    }
+
+    static long upperEdgeOf(int index) {
+        int band = index / SUB_BUCKETS;
+        int sub = index % SUB_BUCKETS;
+        if (band == 0) {
+            return sub;
+        }
+        int shift = band - 1;
+        return (((long) (SUB_BUCKETS + sub + 1)) << shift) - 1;
+    }
+}
@@ -82,6 +82,38 @@ public class LocationHelper {
                 });
     }
 
+    /**
+     * Interface for a raw position; {@code location} is null when none is available.
+     */
+    public interface CoordinatesCallback {
+        void onCoordinates(Location location);
+    }
+
+    /**
+     * Fetches the device position without formatting it, e.g. to anchor a place rule.
+     */
+    @SuppressLint("MissingPermission")
+    public static void getCoordinates(Context context, CoordinatesCallback callback) {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            callback.onCoordinates(null);
+            return;
+        }
+
+        FusedLocationProviderClient client = LocationServices.getFusedLocationProviderClient(context);
+        client.getLastLocation()
+                .addOnSuccessListener(location -> {
+                    if (location != null) {
+                        callback.onCoordinates(location);
+                        return;
+                    }
+                    client.getCurrentLocation(Priority.PRIORITY_HIGH_ACCURACY, null)
+                            .addOnSuccessListener(callback::onCoordinates)
+                            .addOnFailureListener(e -> callback.onCoordinates(null));
+                })
+                .addOnFailureListener(e -> callback.onCoordinates(null));
+    }
+
     /**
      * Attempts to force a fresh GPS refresh if the 'Last Known Location' is unavailable.
      */
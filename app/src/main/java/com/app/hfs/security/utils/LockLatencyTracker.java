@@ -0,0 +1,150 @@
+package com.hfs.security.utils;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * End-to-end Lock Latency Tracker.
+ * Measures how long a protected app stays visible before HFS covers it.
+ * Each lock trigger carries elapsedRealtime stamps through the lock Intent:
+ * 1. EVENT    - the UsageEvents / accessibility event that revealed the app.
+ * 2. DETECT   - AppMonitorService decided to lock.
+ * 3. LAUNCH   - startActivity was called on the main thread.
+ * 4. CREATE   - LockScreenActivity.onCreate ran.
+ * 5. FRAME    - LockScreenActivity drew its first frame.
+ * Every stage (and the total) feeds its own LatencyHistogram. Data lives for
+ * the lifetime of the process and can be exported as JSON from Settings.
+ */
+public class LockLatencyTracker {
+
+    public static final String EXTRA_EVENT_AT = "HFS_LATENCY_EVENT_AT";
+    public static final String EXTRA_DETECTED_AT = "HFS_LATENCY_DETECTED_AT";
+    public static final String EXTRA_LAUNCHED_AT = "HFS_LATENCY_LAUNCHED_AT";
+
+    public static final String STAGE_EVENT_TO_DETECT = "event_to_detect";
+    public static final String STAGE_DETECT_TO_LAUNCH = "detect_to_launch";
+    public static final String STAGE_LAUNCH_TO_CREATE = "launch_to_create";
+    public static final String STAGE_CREATE_TO_FRAME = "create_to_first_frame";
+    public static final String STAGE_TOTAL = "event_to_first_frame";
+
+    private static final String EXPORT_DIR = "diagnostics";
+    private static final String EXPORT_FILE = "lock_latency.json";
+
+    private static final double[] PERCENTILES = {50, 95, 99};
+
+    private static LockLatencyTracker instance;
+
+    private final Map<String, LatencyHistogram> stages = new LinkedHashMap<>();
+
+    private LockLatencyTracker() {
+        stages.put(STAGE_EVENT_TO_DETECT, new LatencyHistogram());
+        stages.put(STAGE_DETECT_TO_LAUNCH, new LatencyHistogram());
+        stages.put(STAGE_LAUNCH_TO_CREATE, new LatencyHistogram());
+        stages.put(STAGE_CREATE_TO_FRAME, new LatencyHistogram());
+        stages.put(STAGE_TOTAL, new LatencyHistogram());
+    }
+
+    public static synchronized LockLatencyTracker getInstance() {
+        if (instance == null) {
+            instance = new LockLatencyTracker();
+        }
+        return instance;
+    }
+
+    /**
+     * Records one complete lock. Called by LockScreenActivity with the stamps
+     * carried by its launch Intent plus its own onCreate / first-frame times.
+     * Locks that did not come from the guard (no stamps) are ignored.
+     */
+    public void recordLock(Intent lockIntent, long createdAt, long firstFrameAt) {
+        long eventAt = lockIntent.getLongExtra(EXTRA_EVENT_AT, -1);
+        long detectedAt = lockIntent.getLongExtra(EXTRA_DETECTED_AT, -1);
+        long launchedAt = lockIntent.getLongExtra(EXTRA_LAUNCHED_AT, -1);
+        if (detectedAt < 0 || launchedAt < 0) return;
+
+        if (eventAt >= 0) {
+            stages.get(STAGE_EVENT_TO_DETECT).record(detectedAt - eventAt);
+            stages.get(STAGE_TOTAL).record(firstFrameAt - eventAt);
+        }
+        stages.get(STAGE_DETECT_TO_LAUNCH).record(launchedAt - detectedAt);
+        stages.get(STAGE_LAUNCH_TO_CREATE).record(createdAt - launchedAt);
+        stages.get(STAGE_CREATE_TO_FRAME).record(firstFrameAt - createdAt);
+    }
+
+    public long getLockCount() {
+        return stages.get(STAGE_DETECT_TO_LAUNCH).getTotalCount();
+    }
+
+    /**
+     * One line per stage: "stage  p50 / p95 / p99 ms".
+     */
+    public String getSummary() {
+        if (getLockCount() == 0) {
+            return "No locks recorded since the guard started.";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Locks measured: ").append(getLockCount());
+        for (Map.Entry<String, LatencyHistogram> stage : stages.entrySet()) {
+            LatencyHistogram h = stage.getValue();
+            sb.append('\n').append(stage.getKey()).append(": ");
+            if (h.getTotalCount() == 0) {
+                sb.append("n/a");
+                continue;
+            }
+            sb.append(String.format(Locale.US, "%d / %d / %d ms",
+                    h.getValueAtPercentile(50), h.getValueAtPercentile(95), h.getValueAtPercentile(99)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes all stage percentiles plus device/build details to
+     * files/diagnostics/lock_latency.json and returns the file.
+     */
+    public File exportJson(Context context) throws IOException {
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        root.put("sdk", Build.VERSION.SDK_INT);
+        root.put("exported_at", System.currentTimeMillis());
+        root.put("locks", getLockCount());
+
+        Map<String, Object> stageJson = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyHistogram> stage : stages.entrySet()) {
+            LatencyHistogram h = stage.getValue();
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("count", h.getTotalCount());
+            for (double p : PERCENTILES) {
+                values.put("p" + (int) p + "_ms", h.getValueAtPercentile(p));
+            }
+            stageJson.put(stage.getKey(), values);
+        }
+        root.put("stages", stageJson);
+
+        File directory = new File(context.getExternalFilesDir(null), EXPORT_DIR);
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File file = new File(directory, EXPORT_FILE);
+        try (Writer writer = new FileWriter(file)) {
+            new GsonBuilder().setPrettyPrinting().create().toJson(root, writer);
+        }
+        return file;
+    }
+
+    public void reset() {
+        for (LatencyHistogram h : stages.values()) {
+            h.reset();
+        }
+    }
+}
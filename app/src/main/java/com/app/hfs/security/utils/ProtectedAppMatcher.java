@@ -0,0 +1,114 @@
+package com.hfs.security.utils;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Compact lookup table for the protected package list.
+ * Each package is interned to a stable int ID (its position in the table) and
+ * stored in an open-addressing hash over precomputed hashes:
+ * 1. A lookup never allocates; a miss costs one hash probe sequence.
+ * 2. The cached hash is compared before String.equals, so most misses never touch the chars.
+ * 3. A last-seen fast path answers repeated lookups of the same String instance without probing.
+ * The table itself is immutable. The last-seen cache is meant for the single guard
+ * thread; other threads should call {@link #indexOf(String)}.
+ */
+public final class ProtectedAppMatcher {
+
+    public static final int NOT_PROTECTED = -1;
+    public static final ProtectedAppMatcher EMPTY = new ProtectedAppMatcher(Collections.<String>emptySet());
+
+    private final String[] packages;  // id -> package name
+    private final int[] hashes;       // id -> String.hashCode()
+    private final int[] slots;        // slot -> id + 1 (0 = empty)
+    private final int mask;
+
+    // Last-seen fast path (guard thread only)
+    private String lastSeenPackage;
+    private int lastSeenId = NOT_PROTECTED;
+
+    public ProtectedAppMatcher(Collection<String> protectedPackages) {
+        int size = protectedPackages.size();
+        packages = new String[size];
+        hashes = new int[size];
+
+        // Keep the load factor at or below 0.5 so probe chains stay short
+        int capacity = 16;
+        while (capacity < size * 2) {
+            capacity <<= 1;
+        }
+        slots = new int[capacity];
+        mask = capacity - 1;
+
+        int id = 0;
+        for (String pkg : protectedPackages) {
+            int hash = pkg.hashCode();
+            packages[id] = pkg;
+            hashes[id] = hash;
+
+            int slot = spread(hash) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+            id++;
+        }
+    }
+
+    /**
+     * Returns the interned ID of the package, or {@link #NOT_PROTECTED}.
+     * Thread-safe and allocation-free.
+     */
+    public int indexOf(String packageName) {
+        if (packageName == null || packages.length == 0) return NOT_PROTECTED;
+
+        int hash = packageName.hashCode();
+        int slot = spread(hash) & mask;
+        int entry;
+        while ((entry = slots[slot]) != 0) {
+            int id = entry - 1;
+            if (hashes[id] == hash) {
+                String candidate = packages[id];
+                if (candidate == packageName || candidate.equals(packageName)) {
+                    return id;
+                }
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NOT_PROTECTED;
+    }
+
+    /**
+     * Hot-path check used by the guard loop.
+     * Repeated calls with the same String instance skip the probe entirely.
+     */
+    public boolean isProtected(String packageName) {
+        if (packageName == lastSeenPackage) {
+            return lastSeenId != NOT_PROTECTED;
+        }
+        int id = indexOf(packageName);
+        lastSeenPackage = packageName;
+        lastSeenId = id;
+        return id != NOT_PROTECTED;
+    }
+
+    /**
+     * Reverse lookup from an interned ID.
+     */
+    public String packageAt(int id) {
+        return packages[id];
+    }
+
+    public int size() {
+        return packages.length;
+    }
+
+    /**
+     * Package names differing only in their last characters have near-sequential
+     * hashes; the golden-ratio multiply scatters them so linear probe runs stay short.
+     */
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
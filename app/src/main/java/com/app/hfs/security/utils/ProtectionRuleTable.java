@@ -0,0 +1,246 @@
+package com.hfs.security.utils;
+
+import com.hfs.security.models.ProtectionRule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compiled form of the owner's ProtectionRules, built once per configuration change.
+ * Each rule becomes one bit (rule order = priority, bit 0 wins):
+ * 1. Time windows are flattened into sorted minute-of-week segments, each holding
+ *    the bits of the rules active during it; a lookup is one binary search.
+ * 2. Package scopes use a ProtectedAppMatcher plus a bitmask per package.
+ * 3. Charging, Wi-Fi and place conditions only change when the device context does,
+ *    so they are folded into a context mask outside the hot path ({@link #contextMask}).
+ * {@link #requiresLock} is O(log segments) and never allocates.
+ * Immutable; safe to share between threads.
+ */
+public final class ProtectionRuleTable {
+
+    // One bit per rule in a long
+    public static final int MAX_RULES = 64;
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    public static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+
+    public static final ProtectionRuleTable EMPTY =
+            new ProtectionRuleTable(Collections.<ProtectionRule>emptyList());
+
+    private static final double EARTH_RADIUS_M = 6371000.0;
+    // 1970-01-01 was a Thursday; minute-of-week 0 is Monday 00:00
+    private static final int EPOCH_DAY_OFFSET = 3;
+
+    private final ProtectionRule[] rules;
+
+    // Segment i covers [segmentStarts[i], segmentStarts[i + 1]) minutes of the week
+    private final int[] segmentStarts;
+    private final long[] segmentMasks;
+
+    private final long globalMask;     // rules that cover every protected app
+    private final ProtectedAppMatcher scopedPackages;
+    private final long[] packageMasks; // matcher id -> rules naming that package
+    private final long allowMask;      // rules that waive the lock
+
+    private final boolean usesCharging;
+    private final boolean usesWifi;
+    private final boolean usesPlaces;
+
+    public ProtectionRuleTable(List<ProtectionRule> source) {
+        int count = Math.min(source.size(), MAX_RULES);
+        rules = source.subList(0, count).toArray(new ProtectionRule[0]);
+
+        long global = 0;
+        long allow = 0;
+        boolean charging = false;
+        boolean wifi = false;
+        boolean places = false;
+        Set<String> scoped = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            ProtectionRule rule = rules[i];
+            long bit = 1L << i;
+            if (rule.getPackages().isEmpty()) {
+                global |= bit;
+            } else {
+                scoped.addAll(rule.getPackages());
+            }
+            if (rule.isAllow()) allow |= bit;
+            charging |= rule.getCharging() != null;
+            wifi |= rule.getWifiSsid() != null;
+            places |= rule.hasPlace();
+        }
+        globalMask = global;
+        allowMask = allow;
+        usesCharging = charging;
+        usesWifi = wifi;
+        usesPlaces = places;
+
+        scopedPackages = new ProtectedAppMatcher(scoped);
+        packageMasks = new long[scopedPackages.size()];
+        for (int i = 0; i < count; i++) {
+            for (String pkg : rules[i].getPackages()) {
+                packageMasks[scopedPackages.indexOf(pkg)] |= 1L << i;
+            }
+        }
+
+        // Time windows -> weekly intervals -> flat segment table
+        List<int[]> intervals = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            addWeeklyIntervals(rules[i], i, intervals, owners);
+        }
+
+        int[] bounds = new int[intervals.size() * 2 + 1];
+        int n = 0;
+        bounds[n++] = 0;
+        for (int[] interval : intervals) {
+            bounds[n++] = interval[0];
+            bounds[n++] = interval[1];
+        }
+        Arrays.sort(bounds, 0, n);
+        int unique = 0;
+        for (int i = 0; i < n; i++) {
+            if (bounds[i] < MINUTES_PER_WEEK && (unique == 0 || bounds[i] != bounds[unique - 1])) {
+                bounds[unique++] = bounds[i];
+            }
+        }
+        segmentStarts = Arrays.copyOf(bounds, unique);
+        segmentMasks = new long[unique];
+        for (int k = 0; k < intervals.size(); k++) {
+            int[] interval = intervals.get(k);
+            long bit = 1L << owners.get(k);
+            for (int s = segmentAt(interval[0]); s < unique && segmentStarts[s] < interval[1]; s++) {
+                segmentMasks[s] |= bit;
+            }
+        }
+    }
+
+    /**
+     * Whether {@code packageName}, already known to be protected, must be locked
+     * at {@code minuteOfWeek} given the current {@code contextMask}.
+     * No rule matching means the default: lock.
+     */
+    public boolean requiresLock(String packageName, int minuteOfWeek, long contextMask) {
+        if (rules.length == 0) return true;
+
+        long scope = globalMask;
+        int id = scopedPackages.indexOf(packageName);
+        if (id != ProtectedAppMatcher.NOT_PROTECTED) {
+            scope |= packageMasks[id];
+        }
+
+        long candidates = segmentMasks[segmentAt(minuteOfWeek)] & contextMask & scope;
+        if (candidates == 0) return true;
+
+        // Lowest bit = earliest rule = highest priority
+        return (Long.lowestOneBit(candidates) & allowMask) == 0;
+    }
+
+    /**
+     * Evaluates the non-time conditions of every rule.
+     * O(rules); call it only when charging, Wi-Fi or location changed.
+     *
+     * @param ssid Current Wi-Fi SSID without quotes, or null when not on Wi-Fi.
+     * @param hasLocation Whether {@code latitude}/{@code longitude} hold a recent fix.
+     */
+    public long contextMask(boolean charging, String ssid,
+                            boolean hasLocation, double latitude, double longitude) {
+        long mask = 0;
+        for (int i = 0; i < rules.length; i++) {
+            ProtectionRule rule = rules[i];
+            if (rule.getCharging() != null && rule.getCharging() != charging) continue;
+            if (rule.getWifiSsid() != null
+                    && rule.getWifiSsid().equals(ssid) != rule.isOnWifi()) continue;
+            if (rule.hasPlace()) {
+                // Without a fix neither "inside" nor "outside" can be proven
+                if (!hasLocation) continue;
+                boolean inside = distanceMeters(latitude, longitude,
+                        rule.getLatitude(), rule.getLongitude()) <= rule.getRadiusMeters();
+                if (inside != rule.isInsidePlace()) continue;
+            }
+            mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    public boolean isEmpty() {
+        return rules.length == 0;
+    }
+
+    public int size() {
+        return rules.length;
+    }
+
+    public int getSegmentCount() {
+        return segmentStarts.length;
+    }
+
+    public boolean usesCharging() {
+        return usesCharging;
+    }
+
+    public boolean usesWifi() {
+        return usesWifi;
+    }
+
+    public boolean usesPlaces() {
+        return usesPlaces;
+    }
+
+    /**
+     * Minute of the week (Monday 00:00 = 0) for a wall-clock time.
+     *
+     * @param utcOffsetMs The local zone's offset at {@code wallMillis}.
+     */
+    public static int minuteOfWeek(long wallMillis, int utcOffsetMs) {
+        long minutes = Math.floorDiv(wallMillis + utcOffsetMs, 60000L);
+        return (int) Math.floorMod(minutes + EPOCH_DAY_OFFSET * MINUTES_PER_DAY, (long) MINUTES_PER_WEEK);
+    }
+
+    private int segmentAt(int minuteOfWeek) {
+        int index = Arrays.binarySearch(segmentStarts, minuteOfWeek);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    /**
+     * Expands a rule's days and daily window into [start, end) minute-of-week intervals.
+     * A window that wraps midnight belongs to the day it starts on.
+     */
+    private static void addWeeklyIntervals(ProtectionRule rule, int owner,
+                                           List<int[]> intervals, List<Integer> owners) {
+        int days = rule.getDays();
+        boolean windowed = rule.hasTimeWindow();
+        int start = windowed ? rule.getStartMinute() % MINUTES_PER_DAY : 0;
+        int end = windowed ? rule.getEndMinute() % MINUTES_PER_DAY : MINUTES_PER_DAY;
+        if (end <= start) end += MINUTES_PER_DAY;
+
+        for (int day = 0; day < 7; day++) {
+            if ((days & (1 << day)) == 0) continue;
+            int from = day * MINUTES_PER_DAY + start;
+            int to = day * MINUTES_PER_DAY + end;
+            if (to <= MINUTES_PER_WEEK) {
+                intervals.add(new int[] {from, to});
+                owners.add(owner);
+            } else {
+                // Sunday night window running into Monday morning
+                intervals.add(new int[] {from, MINUTES_PER_WEEK});
+                owners.add(owner);
+                intervals.add(new int[] {0, to - MINUTES_PER_WEEK});
+                owners.add(owner);
+            }
+        }
+    }
+
+    private static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_M * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+}
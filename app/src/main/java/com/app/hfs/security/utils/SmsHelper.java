@@ -5,6 +5,8 @@ import android.content.SharedPreferences;
 import android.telephony.SmsManager;
 import android.util.Log;
 
+import com.hfs.security.models.IntruderLog;
+
 import java.io.File;
 import java.text.SimpleDateFormat;
 import java.util.Date;
@@ -31,13 +33,14 @@ public class SmsHelper {
      * @param targetApp Name of the app triggered.
      * @param mapLink Google Maps URL.
      * @param alertType "Face Mismatch" or "Fingerprint Failure".
+     * @return IntruderLog.SMS_SENT, SMS_SKIPPED or SMS_FAILED, for the intrusion record.
      */
-    public static void sendAlertSms(Context context, String targetApp, String mapLink, String alertType) {
+    public static int sendAlertSms(Context context, String targetApp, String mapLink, String alertType) {
         
         // 1. VERIFY COOLDOWN STATUS (3 msgs / 5 mins)
         if (!isSmsAllowed(context)) {
             Log.w(TAG, "SMS Limit Reached: Blocking transmission for 5-minute cooldown.");
-            return;
+            return IntruderLog.SMS_SKIPPED;
         }
 
         HFSDatabaseHelper db = HFSDatabaseHelper.getInstance(context);
@@ -45,7 +48,7 @@ public class SmsHelper {
 
         if (savedNumber == null || savedNumber.isEmpty()) {
             Log.e(TAG, "SMS Failure: No trusted number set in settings.");
-            return;
+            return IntruderLog.SMS_SKIPPED;
         }
 
         // 2. INTERNATIONAL FORMATTING (+91 Fix)
@@ -83,10 +86,12 @@ public class SmsHelper {
                 
                 // 5. UPDATE COOLDOWN COUNTER
                 trackSmsSent(context);
+                return IntruderLog.SMS_SENT;
             }
         } catch (Exception e) {
             Log.e(TAG, "Carrier Block: Failed to deliver external SMS: " + e.getMessage());
         }
+        return IntruderLog.SMS_FAILED;
     }
 
     /**
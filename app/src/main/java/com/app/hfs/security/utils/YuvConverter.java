@@ -0,0 +1,137 @@
+package com.hfs.security.utils;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV_420_888 to NV21 Converter.
+ * Camera planes are not always tightly packed: rows can be padded (rowStride >
+ * width) and chroma samples can be spaced out (pixelStride 2). Copying the
+ * planes back to back only works on devices where neither happens.
+ * 1. Every row is read at its rowStride and every chroma sample at its
+ *    pixelStride, so padded planes come out intact.
+ * 2. Fast path: when the V plane is a view of an interleaved VU buffer (the
+ *    usual semi-planar layout) the chroma block is bulk-copied from it.
+ * 3. Output goes into a caller-supplied buffer; row scratch space is kept
+ *    between frames, so a warm converter does not allocate.
+ * Not thread-safe; use one instance per camera thread.
+ */
+public class YuvConverter {
+
+    private byte[] rowU = new byte[0];
+    private byte[] rowV = new byte[0];
+
+    /**
+     * Bytes needed for an NV21 frame: full-size Y plus quarter-size VU pairs.
+     */
+    public static int nv21Size(int width, int height) {
+        return width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+    }
+
+    /**
+     * Writes one frame as NV21 into {@code out}. Buffer positions are left as
+     * they were found. U and V share row and pixel strides, as YUV_420_888
+     * guarantees.
+     *
+     * @return true when the interleaved fast path was taken.
+     */
+    public boolean convert(int width, int height,
+                           ByteBuffer y, int yRowStride,
+                           ByteBuffer u, ByteBuffer v, int uvRowStride, int uvPixelStride,
+                           byte[] out) {
+        copyLuma(width, height, y, yRowStride, out);
+
+        int chromaWidth = (width + 1) / 2;
+        int chromaHeight = (height + 1) / 2;
+        int offset = width * height;
+        int uBase = u.position();
+        int vBase = v.position();
+        try {
+            if (uvPixelStride == 2 && isInterleavedVu(u, v)) {
+                copyInterleavedChroma(chromaWidth, chromaHeight, u, v, uvRowStride, out, offset);
+                return true;
+            }
+            copyPlanarChroma(chromaWidth, chromaHeight, u, v, uvRowStride, uvPixelStride, out, offset);
+            return false;
+        } finally {
+            u.position(uBase);
+            v.position(vBase);
+        }
+    }
+
+    private static void copyLuma(int width, int height, ByteBuffer y, int rowStride, byte[] out) {
+        int base = y.position();
+        try {
+            if (rowStride == width) {
+                y.get(out, 0, width * height);
+                return;
+            }
+            // Padded rows; the last row may stop right after its final pixel
+            for (int row = 0; row < height; row++) {
+                y.position(base + row * rowStride);
+                y.get(out, row * width, width);
+            }
+        } finally {
+            y.position(base);
+        }
+    }
+
+    /**
+     * True when V[1..] holds the same bytes as U[0..], i.e. reading the V plane
+     * straight through yields VUVU... With equal contents the fast path is
+     * correct whether or not the two planes share memory.
+     */
+    private static boolean isInterleavedVu(ByteBuffer u, ByteBuffer v) {
+        if (u.remaining() != v.remaining() || v.remaining() < 2) return false;
+        int vPosition = v.position();
+        int uLimit = u.limit();
+        v.position(vPosition + 1);
+        u.limit(uLimit - 1);
+        boolean interleaved = v.compareTo(u) == 0;
+        v.position(vPosition);
+        u.limit(uLimit);
+        return interleaved;
+    }
+
+    private static void copyInterleavedChroma(int chromaWidth, int chromaHeight,
+                                              ByteBuffer u, ByteBuffer v, int rowStride,
+                                              byte[] out, int offset) {
+        int rowBytes = 2 * chromaWidth;
+        int uBase = u.position();
+        int vBase = v.position();
+        if (rowStride == rowBytes) {
+            // No row padding: the whole chroma block is one run
+            v.get(out, offset, chromaHeight * rowBytes - 1);
+        } else {
+            for (int row = 0; row < chromaHeight; row++) {
+                v.position(vBase + row * rowStride);
+                // The V view ends one byte early; the last row's final U comes from U
+                v.get(out, offset + row * rowBytes, row < chromaHeight - 1 ? rowBytes : rowBytes - 1);
+            }
+        }
+        out[offset + chromaHeight * rowBytes - 1] =
+                u.get(uBase + (chromaHeight - 1) * rowStride + 2 * (chromaWidth - 1));
+    }
+
+    private void copyPlanarChroma(int chromaWidth, int chromaHeight,
+                                  ByteBuffer u, ByteBuffer v, int rowStride, int pixelStride,
+                                  byte[] out, int offset) {
+        int span = (chromaWidth - 1) * pixelStride + 1;
+        if (rowU.length < span) {
+            rowU = new byte[span];
+            rowV = new byte[span];
+        }
+        int uBase = u.position();
+        int vBase = v.position();
+        int o = offset;
+        for (int row = 0; row < chromaHeight; row++) {
+            u.position(uBase + row * rowStride);
+            u.get(rowU, 0, span);
+            v.position(vBase + row * rowStride);
+            v.get(rowV, 0, span);
+            for (int col = 0, i = 0; col < chromaWidth; col++, i += pixelStride) {
+                out[o++] = rowV[i];
+                out[o++] = rowU[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.hfs.security.services;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.hfs.security.services.LockDecisionEngine.Decision;
+import com.hfs.security.utils.ProtectedAppMatcher;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Replays a seeded stream of synthetic app switches and auth events through
+ * the engine. The stream is generated up front so only the engine is timed.
+ */
+public class LockDecisionEngineReplayTest {
+
+    private static final String OWN = "com.hfs.security";
+    private static final int PACKAGES = 40;
+    private static final int PROTECTED = 8;
+    private static final int EVENTS = 2_000_000;
+
+    // Per event: 0 = foreground, 1 = lock shown + authenticated, 2 = lock shown + dismissed
+    private static final int FOREGROUND = 0;
+    private static final int AUTHENTICATE = 1;
+    private static final int DISMISS = 2;
+
+    // Slot after the Decision ordinals in the replay counts
+    private static final int DISMISSED = Decision.values().length;
+
+    private final String[] packages = new String[PACKAGES];
+    private final ProtectedAppMatcher protectedApps;
+
+    public LockDecisionEngineReplayTest() {
+        List<String> locked = new ArrayList<>();
+        for (int i = 0; i < PACKAGES; i++) {
+            packages[i] = "com.example.app" + i;
+            if (i < PROTECTED) locked.add(packages[i]);
+        }
+        protectedApps = new ProtectedAppMatcher(locked);
+    }
+
+    @Test
+    public void replayIsDeterministic() {
+        Trace trace = new Trace(42, 200_000);
+        assertArrayEquals(replay(trace), replay(trace));
+    }
+
+    @Test
+    public void everyUnlockedEntryIsLockedFirst() {
+        Trace trace = new Trace(7, 200_000);
+        long[] counts = replay(trace);
+
+        // Each auth or dismissal answers exactly one LOCK
+        assertEquals(counts[Decision.LOCK.ordinal()],
+                counts[Decision.UNLOCK.ordinal()] + counts[DISMISSED]);
+        assertTrue(counts[Decision.REARM.ordinal()] > 0);
+    }
+
+    @Test
+    public void replaysMillionsOfEventsPerSecond() {
+        Trace trace = new Trace(1, EVENTS);
+        // Warm-up pass so the JIT has compiled the engine
+        replay(trace);
+
+        long start = System.nanoTime();
+        long[] counts = replay(trace);
+        long elapsed = System.nanoTime() - start;
+
+        double perSecond = EVENTS / (elapsed / 1e9);
+        System.out.println(String.format(Locale.US,
+                "Replayed %d events in %.1f ms: %.1fM events/s (%d locks, %d unlocks, %d re-arms)",
+                EVENTS, elapsed / 1e6, perSecond / 1e6, counts[Decision.LOCK.ordinal()],
+                counts[Decision.UNLOCK.ordinal()], counts[Decision.REARM.ordinal()]));
+        assertTrue("only " + (long) perSecond + " events/s", perSecond > 1_000_000);
+    }
+
+    /**
+     * Decision counts indexed by ordinal, plus dismissals in the last slot.
+     */
+    private long[] replay(Trace trace) {
+        LockDecisionEngine engine = new LockDecisionEngine(10_000);
+        engine.setOwnPackage(OWN);
+        engine.setGracePolicy(packageName -> packages[0].equals(packageName) ? 60_000 : 10_000);
+
+        long[] counts = new long[DISMISSED + 1];
+        String locking = null;
+        for (int i = 0; i < trace.size; i++) {
+            long now = trace.timestamps[i];
+            String packageName = packages[trace.packages[i]];
+            if (locking != null) {
+                // The lock screen answers the pending LOCK before the next switch
+                engine.onLockShown(now);
+                engine.onForeground(now, OWN, protectedApps);
+                if (trace.actions[i] == AUTHENTICATE) {
+                    counts[engine.onAuthSucceeded(now, locking).ordinal()]++;
+                } else {
+                    engine.onLockDismissed();
+                    counts[DISMISSED]++;
+                }
+                locking = null;
+            }
+            Decision decision = engine.onForeground(now, packageName, protectedApps);
+            counts[decision.ordinal()]++;
+            if (decision == Decision.LOCK) {
+                locking = packageName;
+            }
+            if (trace.actions[i] == DISMISS && i % 97 == 0) {
+                engine.clearSessions();
+            }
+        }
+        return counts;
+    }
+
+    private final class Trace {
+        final int size;
+        final long[] timestamps;
+        final int[] packages;
+        final int[] actions;
+
+        Trace(long seed, int size) {
+            this.size = size;
+            timestamps = new long[size];
+            packages = new int[size];
+            actions = new int[size];
+            Random random = new Random(seed);
+            long now = 0;
+            for (int i = 0; i < size; i++) {
+                // Mostly quick switches, sometimes a long pause past every grace period
+                now += random.nextInt(10) == 0 ? 5_000 + random.nextInt(60_000) : 50 + random.nextInt(2_000);
+                timestamps[i] = now;
+                // Half the events stay on a small set of apps, like a real session
+                packages[i] = random.nextBoolean() ? random.nextInt(4) : random.nextInt(PACKAGES);
+                actions[i] = random.nextInt(4) == 0 ? DISMISS : AUTHENTICATE;
+            }
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.hfs.security.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.hfs.security.services.LockDecisionEngine.Decision;
+import com.hfs.security.services.LockDecisionEngine.Phase;
+import com.hfs.security.utils.ProtectedAppMatcher;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+
+public class LockDecisionEngineTest {
+
+    private static final long GRACE_MS = 10_000;
+    private static final String OWN = "com.hfs.security";
+    private static final String LAUNCHER = "com.android.launcher";
+    private static final String BANK = "com.example.bank";
+    private static final String GALLERY = "com.example.gallery";
+
+    private final ProtectedAppMatcher protectedApps = new ProtectedAppMatcher(Arrays.asList(BANK, GALLERY));
+    private LockDecisionEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new LockDecisionEngine(GRACE_MS);
+        engine.setOwnPackage(OWN);
+    }
+
+    @Test
+    public void unprotectedAppsNeverLock() {
+        assertEquals(Decision.NONE, engine.onForeground(0, LAUNCHER, protectedApps));
+        assertEquals(Decision.NONE, engine.onForeground(100, "com.example.notes", protectedApps));
+        assertEquals(Phase.ARMED, engine.getPhase());
+    }
+
+    @Test
+    public void protectedAppLocksOnce() {
+        engine.onForeground(0, LAUNCHER, protectedApps);
+        assertEquals(Decision.LOCK, engine.onForeground(100, BANK, protectedApps));
+        assertEquals(Phase.LOCKING, engine.getPhase());
+        assertFalse(engine.isLockActive());
+
+        // Repeated observations while the lock screen is on its way
+        assertEquals(Decision.NONE, engine.onForeground(200, BANK, protectedApps));
+        engine.onLockShown(300);
+        assertTrue(engine.isLockActive());
+        assertEquals(Decision.NONE, engine.onForeground(400, OWN, protectedApps));
+        assertEquals(Decision.NONE, engine.onForeground(500, BANK, protectedApps));
+    }
+
+    @Test
+    public void authenticationUnlocks() {
+        lockAndUnlock(BANK, 100);
+
+        assertEquals(Phase.UNLOCKED, engine.getPhase());
+        assertTrue(engine.hasLiveSession(BANK, 1000));
+        assertEquals(Decision.NONE, engine.onForeground(1000, BANK, protectedApps));
+        assertEquals(Phase.UNLOCKED, engine.getPhase());
+    }
+
+    @Test
+    public void returningWithinGraceDoesNotLock() {
+        lockAndUnlock(BANK, 100);
+        engine.onForeground(1000, BANK, protectedApps);
+
+        engine.onForeground(2000, LAUNCHER, protectedApps);
+        assertEquals(Phase.ARMED, engine.getPhase());
+        // Countdown started at 2000, so the session is live until 12000
+        assertEquals(Decision.NONE, engine.onForeground(2000 + GRACE_MS - 1, BANK, protectedApps));
+        assertEquals(Phase.UNLOCKED, engine.getPhase());
+    }
+
+    @Test
+    public void foregroundAppNeverExpires() {
+        lockAndUnlock(BANK, 100);
+        engine.onForeground(1000, BANK, protectedApps);
+
+        // Pinned while in front, however long the user stays
+        assertEquals(Decision.NONE, engine.onForeground(1000 + 10 * GRACE_MS, BANK, protectedApps));
+        assertTrue(engine.hasLiveSession(BANK, 1000 + 10 * GRACE_MS));
+    }
+
+    @Test
+    public void expiredGraceRearms() {
+        lockAndUnlock(BANK, 100);
+        engine.onForeground(1000, BANK, protectedApps);
+        engine.onForeground(2000, LAUNCHER, protectedApps);
+
+        assertEquals(Decision.REARM, engine.onForeground(2000 + GRACE_MS + 500, LAUNCHER, protectedApps));
+        assertEquals(0, engine.getOpenSessionCount());
+        assertEquals(Decision.LOCK, engine.onForeground(2000 + GRACE_MS + 600, BANK, protectedApps));
+    }
+
+    @Test
+    public void sessionsAreKeptPerApp() {
+        lockAndUnlock(BANK, 100);
+        engine.onForeground(1000, BANK, protectedApps);
+
+        // Another protected app still needs its own unlock
+        assertEquals(Decision.LOCK, engine.onForeground(2000, GALLERY, protectedApps));
+        engine.onLockShown(2100);
+        engine.onForeground(2200, OWN, protectedApps);
+        engine.onAuthSucceeded(2300, GALLERY);
+        engine.onForeground(2400, GALLERY, protectedApps);
+
+        assertEquals(2, engine.getOpenSessionCount());
+        assertEquals(Decision.NONE, engine.onForeground(3000, BANK, protectedApps));
+        assertEquals(Decision.NONE, engine.onForeground(4000, GALLERY, protectedApps));
+    }
+
+    @Test
+    public void gracePolicyIsAskedPerPackage() {
+        engine.setGracePolicy(packageName -> BANK.equals(packageName) ? 1000 : GRACE_MS);
+        lockAndUnlock(BANK, 100);
+        engine.onForeground(1000, BANK, protectedApps);
+        engine.onForeground(2000, LAUNCHER, protectedApps);
+
+        assertEquals(Decision.LOCK, engine.onForeground(3500, BANK, protectedApps));
+    }
+
+    @Test
+    public void ownPackageDoesNotStartACountdown() {
+        // The lock screen runs in our package: moving between it and other apps
+        // must not start a session for it
+        lockAndUnlock(BANK, 100);
+        engine.onForeground(1000, OWN, protectedApps);
+        engine.onForeground(2000, LAUNCHER, protectedApps);
+
+        assertFalse(engine.hasLiveSession(OWN, 2000));
+        assertEquals(1, engine.getOpenSessionCount());
+    }
+
+    @Test
+    public void shownLockSuppressesFurtherLocks() {
+        engine.onForeground(0, BANK, protectedApps);
+        engine.onLockShown(100);
+
+        // The timeout only covers locks that never appeared
+        long later = 100 + 2 * LockDecisionEngine.LOCK_SHOW_TIMEOUT_MS;
+        assertEquals(Decision.NONE, engine.onForeground(later, GALLERY, protectedApps));
+        assertEquals(Decision.NONE, engine.onForeground(later + 100, BANK, protectedApps));
+        assertTrue(engine.isLockActive());
+    }
+
+    @Test
+    public void lockThatNeverShowsIsRetried() {
+        assertEquals(Decision.LOCK, engine.onForeground(0, BANK, protectedApps));
+        assertEquals(Decision.NONE,
+                engine.onForeground(LockDecisionEngine.LOCK_SHOW_TIMEOUT_MS - 1, BANK, protectedApps));
+        assertEquals(Decision.LOCK,
+                engine.onForeground(LockDecisionEngine.LOCK_SHOW_TIMEOUT_MS, BANK, protectedApps));
+    }
+
+    @Test
+    public void suppressedLockIsDecidedAgain() {
+        assertEquals(Decision.LOCK, engine.onForeground(0, BANK, protectedApps));
+        engine.onLockSuppressed(BANK);
+
+        assertEquals(Phase.ARMED, engine.getPhase());
+        assertEquals(Decision.LOCK, engine.onForeground(250, BANK, protectedApps));
+    }
+
+    @Test
+    public void suppressionIgnoresShownLocksAndOtherApps() {
+        engine.onForeground(0, BANK, protectedApps);
+        engine.onLockSuppressed(GALLERY);
+        assertEquals(Phase.LOCKING, engine.getPhase());
+
+        engine.onLockShown(100);
+        engine.onLockSuppressed(BANK);
+        assertTrue(engine.isLockActive());
+    }
+
+    @Test
+    public void dismissedLockRearms() {
+        engine.onForeground(0, BANK, protectedApps);
+        engine.onLockShown(100);
+        engine.onForeground(200, OWN, protectedApps);
+        engine.onLockDismissed();
+
+        assertEquals(Phase.ARMED, engine.getPhase());
+        engine.onForeground(300, LAUNCHER, protectedApps);
+        assertEquals(Decision.LOCK, engine.onForeground(400, BANK, protectedApps));
+    }
+
+    @Test
+    public void lockConditionCanWaiveTheLock() {
+        engine.setLockCondition(packageName -> !BANK.equals(packageName));
+
+        assertEquals(Decision.NONE, engine.onForeground(0, BANK, protectedApps));
+        assertEquals(Decision.LOCK, engine.onForeground(100, GALLERY, protectedApps));
+    }
+
+    @Test
+    public void screenOffClearsSessions() {
+        lockAndUnlock(BANK, 100);
+        engine.onForeground(1000, BANK, protectedApps);
+
+        engine.clearSessions();
+        assertEquals(Phase.ARMED, engine.getPhase());
+        assertFalse(engine.hasLiveSession(BANK, 1000));
+        engine.onForeground(2000, LAUNCHER, protectedApps);
+        assertEquals(Decision.LOCK, engine.onForeground(3000, BANK, protectedApps));
+    }
+
+    @Test
+    public void wakingIntoTheSameAppLocksAgain() {
+        lockAndUnlock(BANK, 100);
+        engine.onForeground(1000, BANK, protectedApps);
+
+        // Screen off and back on with the unlocked app still on top
+        engine.clearSessions();
+        assertEquals(Decision.LOCK, engine.onForeground(30_000, BANK, protectedApps));
+    }
+
+    @Test
+    public void screenOffKeepsAPendingLock() {
+        engine.onForeground(0, BANK, protectedApps);
+        engine.onLockShown(100);
+
+        engine.clearSessions();
+        assertTrue(engine.isLockActive());
+        assertEquals(Decision.NONE, engine.onForeground(30_000, BANK, protectedApps));
+    }
+
+    @Test
+    public void sessionsSurviveACheckpoint() {
+        lockAndUnlock(BANK, 100);
+        engine.onForeground(1000, BANK, protectedApps);
+        engine.onForeground(2000, LAUNCHER, protectedApps);
+        Map<String, long[]> saved = engine.exportSessions(4000);
+        assertEquals(GRACE_MS - 2000, saved.get(BANK)[0]);
+
+        // A restarted guard has a fresh engine and a new clock origin
+        LockDecisionEngine restarted = new LockDecisionEngine(GRACE_MS);
+        restarted.restoreSessions(saved, 50_000);
+        assertTrue(restarted.hasLiveSession(BANK, 50_000 + GRACE_MS - 2001));
+        assertFalse(restarted.hasLiveSession(BANK, 50_000 + GRACE_MS - 2000));
+    }
+
+    @Test
+    public void screenOffSessionsStayGoneAfterARestart() {
+        lockAndUnlock(BANK, 100);
+        engine.onForeground(1000, LAUNCHER, protectedApps);
+        assertTrue(engine.exportSessions(2000).containsKey(BANK));
+
+        // Screen off: sessions are cleared and the checkpoint is saved again
+        engine.clearSessions();
+        Map<String, long[]> saved = engine.exportSessions(3000);
+        assertTrue(saved.isEmpty());
+
+        // The guard is killed while the screen is off and restored from that checkpoint
+        LockDecisionEngine restarted = new LockDecisionEngine(GRACE_MS);
+        restarted.setOwnPackage(OWN);
+        restarted.restoreSessions(saved, 50_000);
+        assertFalse(restarted.hasLiveSession(BANK, 50_001));
+        restarted.onForeground(50_100, LAUNCHER, protectedApps);
+        assertEquals(Decision.LOCK, restarted.onForeground(50_200, BANK, protectedApps));
+    }
+
+    private void lockAndUnlock(String packageName, long timestamp) {
+        engine.onForeground(timestamp, LAUNCHER, protectedApps);
+        assertEquals(Decision.LOCK, engine.onForeground(timestamp + 10, packageName, protectedApps));
+        engine.onLockShown(timestamp + 20);
+        engine.onForeground(timestamp + 30, OWN, protectedApps);
+        assertEquals(Decision.UNLOCK, engine.onAuthSucceeded(timestamp + 40, packageName));
+    }
+}
@@ -0,0 +1,69 @@
+package com.hfs.security.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LockDispatcherTest {
+
+    private static final String BANK = "com.example.bank";
+    private static final String GALLERY = "com.example.gallery";
+
+    @Test
+    public void sameAppWithinTheWindowIsCoalesced() {
+        LockDispatcher dispatcher = new LockDispatcher();
+        assertTrue(dispatcher.tryDispatch(BANK, 1000));
+        dispatcher.onLockShown();
+
+        assertFalse(dispatcher.tryDispatch(BANK, 1000 + LockDispatcher.COALESCE_WINDOW_MS - 1));
+        assertEquals(1, dispatcher.getSuppressedCount());
+    }
+
+    @Test
+    public void secondLaunchWaitsForTheFirstToShow() {
+        LockDispatcher dispatcher = new LockDispatcher();
+        assertTrue(dispatcher.tryDispatch(BANK, 1000));
+
+        assertFalse(dispatcher.tryDispatch(GALLERY, 1100));
+        dispatcher.onLockShown();
+        assertTrue(dispatcher.tryDispatch(GALLERY, 1200));
+        assertEquals(1, dispatcher.getSuppressedCount());
+    }
+
+    @Test
+    public void stuckLaunchIsReplacedAfterTheTimeout() {
+        LockDispatcher dispatcher = new LockDispatcher();
+        assertTrue(dispatcher.tryDispatch(BANK, 1000));
+
+        assertTrue(dispatcher.tryDispatch(GALLERY, 1000 + LockDecisionEngine.LOCK_SHOW_TIMEOUT_MS));
+        assertEquals(0, dispatcher.getSuppressedCount());
+    }
+
+    @Test
+    public void retriesOfASuppressedTriggerAreNotCountedAgain() {
+        LockDispatcher dispatcher = new LockDispatcher();
+        assertTrue(dispatcher.tryDispatch(BANK, 1000));
+        assertFalse(dispatcher.tryDispatch(GALLERY, 1100));
+
+        // The guard's re-checks find the launch still in flight
+        assertFalse(dispatcher.tryDispatch(GALLERY, 1350, true));
+        assertFalse(dispatcher.tryDispatch(GALLERY, 1600, true));
+        assertEquals(1, dispatcher.getSuppressedCount());
+
+        dispatcher.onLockDismissed();
+        assertTrue(dispatcher.tryDispatch(GALLERY, 1850, true));
+        assertEquals(1, dispatcher.getSuppressedCount());
+    }
+
+    @Test
+    public void failedDispatchAllowsTheNextTriggerAtOnce() {
+        LockDispatcher dispatcher = new LockDispatcher();
+        assertTrue(dispatcher.tryDispatch(BANK, 1000));
+        dispatcher.onDispatchFailed();
+
+        assertTrue(dispatcher.tryDispatch(BANK, 1001));
+        assertTrue(dispatcher.isInFlight());
+    }
+}
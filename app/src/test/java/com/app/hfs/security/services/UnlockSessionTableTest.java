@@ -0,0 +1,161 @@
+package com.hfs.security.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class UnlockSessionTableTest {
+
+    private static final long TICK = UnlockSessionTable.WHEEL_TICK_MS;
+
+    private final UnlockSessionTable table = new UnlockSessionTable();
+
+    @Test
+    public void sessionExpiresAtItsDeadline() {
+        table.advance(0);
+        table.open("a", 0, 1000);
+
+        assertEquals(0, table.advance(999));
+        assertTrue(table.isOpen("a", 999));
+        assertEquals(1, table.advance(1000));
+        assertFalse(table.isOpen("a", 1000));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void deadlinesPastOneRevolutionSurviveTheWrap() {
+        // 64 slots x 250 ms = 16 s; a 40 s grace passes its slot twice before expiring
+        long grace = 40_000;
+        table.advance(0);
+        table.open("a", 0, grace);
+
+        for (long now = TICK; now < grace; now += TICK) {
+            assertEquals("expired early at " + now, 0, table.advance(now));
+        }
+        assertEquals(1, table.size());
+        assertEquals(1, table.advance(grace));
+    }
+
+    @Test
+    public void deadlineCrossingTheSlotWrap() {
+        // Opened near the end of a revolution, due in the first slots of the next
+        long start = 64 * TICK - 100;
+        table.advance(start);
+        table.open("a", start, 500);
+
+        assertEquals(0, table.advance(start + 499));
+        assertEquals(1, table.advance(start + 500));
+    }
+
+    @Test
+    public void longGapExpiresEverything() {
+        table.advance(0);
+        for (int i = 0; i < 100; i++) {
+            table.open("app" + i, 0, 1000 + i * 500L);
+        }
+        // One call after a gap of many revolutions, as after Doze
+        assertEquals(100, table.advance(10 * 64 * TICK));
+        assertEquals(0, table.size());
+    }
+
+    @Test
+    public void manyConcurrentSessionsExpireInOrder() {
+        int count = 10_000;
+        table.advance(0);
+        for (int i = 0; i < count; i++) {
+            // Spread over 50 s, several per wheel slot and several revolutions
+            table.open("app" + i, 0, 1 + i * 5L);
+        }
+        assertEquals(count, table.size());
+
+        int expired = 0;
+        for (long now = 0; now <= count * 5L; now += 10) {
+            expired += table.advance(now);
+            // Session i is due at 1 + 5i, so exactly those below now are gone
+            int due = (int) Math.min(count, (now + 4) / 5);
+            assertEquals("at " + now, due, expired);
+            assertEquals(count - due, table.size());
+        }
+        assertEquals(count, expired);
+    }
+
+    @Test
+    public void foregroundSessionIsPinned() {
+        table.advance(0);
+        table.open("a", 0, 1000);
+        assertTrue(table.resume("a", 500));
+
+        assertEquals(0, table.advance(100_000));
+        assertTrue(table.isOpen("a", 100_000));
+
+        table.release("a", 100_000);
+        assertEquals(0, table.advance(100_999));
+        assertEquals(1, table.advance(101_000));
+    }
+
+    @Test
+    public void resumeAfterDeadlineFailsBeforeTheWheelCatchesUp() {
+        table.advance(0);
+        table.open("a", 0, 1000);
+
+        assertFalse(table.resume("a", 1000));
+        assertEquals(0, table.size());
+        assertEquals(0, table.advance(1000));
+    }
+
+    @Test
+    public void reopeningRestartsTheCountdown() {
+        table.advance(0);
+        table.open("a", 0, 1000);
+        table.open("a", 800, 1000);
+
+        assertEquals(0, table.advance(1000));
+        assertEquals(1, table.advance(1800));
+    }
+
+    @Test
+    public void screenOffClearsEverySession() {
+        table.advance(0);
+        for (int i = 0; i < 50; i++) {
+            table.open("app" + i, 0, 2000);
+        }
+        table.resume("app0", 100);
+
+        table.clear();
+        assertEquals(0, table.size());
+        assertFalse(table.isOpen("app0", 100));
+        assertFalse(table.resume("app1", 100));
+        // Nothing left on the wheel either
+        assertEquals(0, table.advance(10_000));
+
+        table.open("app1", 10_000, 1000);
+        assertEquals(1, table.advance(11_000));
+    }
+
+    @Test
+    public void exportAndRestoreKeepRemainingTime() {
+        table.advance(0);
+        table.open("a", 0, 10_000);
+        table.open("b", 0, 5000);
+        table.resume("b", 0);
+
+        Map<String, long[]> saved = new HashMap<>();
+        table.exportTo(saved, 4000);
+        assertEquals(6000, saved.get("a")[0]);
+        // Pinned sessions report their whole grace period
+        assertEquals(5000, saved.get("b")[0]);
+
+        UnlockSessionTable restored = new UnlockSessionTable();
+        restored.advance(100_000);
+        for (Map.Entry<String, long[]> entry : saved.entrySet()) {
+            restored.restore(entry.getKey(), 100_000, entry.getValue()[0], entry.getValue()[1]);
+        }
+        assertEquals(1, restored.advance(105_000));
+        assertEquals(1, restored.advance(106_000));
+    }
+}
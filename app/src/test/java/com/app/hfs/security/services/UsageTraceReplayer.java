@@ -0,0 +1,286 @@
+package com.hfs.security.services;
+
+import com.hfs.security.services.UsageTraceReader.Event;
+import com.hfs.security.utils.ProtectedAppMatcher;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Offline Replay Harness for UsageTraceRecorder files.
+ * Feeds a recorded app-switch sequence through the real guard logic
+ * (ForegroundState, MonitorScheduler, LockDecisionEngine) at full speed on a
+ * plain JVM, with a simulated owner who unlocks every lock screen:
+ * 1. Missed locks     - protected visits without a session that ended before any lock fired.
+ * 2. Duplicate locks  - more than one lock launch for the same visit.
+ * 3. Detection delay  - worst and mean time from the revealing event to the lock decision.
+ * 4. Cost             - guard evaluations and host CPU time per simulated hour
+ *                      (the replaying thread's CPU time, not wall time).
+ * Both detection sources are replayed: the adaptive poller and the event-driven
+ * (accessibility) path.
+ *
+ * Lives with the JVM tests, not in the APK. To replay a trace pulled off a device,
+ * run main() from the unit-test classpath:
+ *   UsageTraceReplayer trace.hfst pkg1,pkg2 [graceMs]
+ */
+public class UsageTraceReplayer {
+
+    private static final long HOUR_MS = 60 * 60 * 1000;
+    private static final String OWN_PACKAGE = "com.hfs.security";
+
+    /**
+     * Replay parameters. Owner timings model LockScreenActivity start-up and
+     * how long the owner takes to authenticate.
+     */
+    public static final class Config {
+        public Set<String> protectedPackages = new HashSet<>();
+        public long graceMs = 10000;
+        public long lockLaunchMs = 300;
+        public long ownerAuthMs = 1500;
+        public boolean eventDriven = false;
+    }
+
+    public static final class Report {
+        public long events;
+        public long simulatedMs;
+        public long evaluations;
+        public long locks;
+        public long missedLocks;
+        public long duplicateLocks;
+        public long worstDetectionDelayMs;
+        public long totalDetectionDelayMs;
+        // CPU time of the replaying thread; -1 where the JVM cannot measure it
+        public long hostCpuNanos = -1;
+
+        public double perSimulatedHour(double value) {
+            return simulatedMs <= 0 ? 0 : value * HOUR_MS / simulatedMs;
+        }
+
+        @Override
+        public String toString() {
+            long firstLocks = locks - duplicateLocks;
+            return String.format(Locale.US,
+                    "events=%d simulated=%.2fh evaluations/h=%.0f locks=%d missed=%d duplicates=%d "
+                            + "worstDelay=%dms meanDelay=%.1fms cpu/h=%s",
+                    events, simulatedMs / (double) HOUR_MS, perSimulatedHour(evaluations), locks,
+                    missedLocks, duplicateLocks, worstDetectionDelayMs,
+                    firstLocks == 0 ? 0.0 : totalDetectionDelayMs / (double) firstLocks,
+                    hostCpuNanos < 0 ? "n/a"
+                            : String.format(Locale.US, "%.3fms", perSimulatedHour(hostCpuNanos) / 1e6));
+        }
+    }
+
+    /**
+     * Replays {@code events} once with the given configuration.
+     */
+    public static Report replay(List<Event> events, Config config) {
+        return new Run(events, config).execute();
+    }
+
+    /**
+     * State of a single replay.
+     */
+    private static final class Run {
+        private final List<Event> events;
+        private final Config config;
+        private final Report report = new Report();
+        private final ProtectedAppMatcher matcher;
+        private final LockDecisionEngine engine;
+        private final MonitorScheduler scheduler = new MonitorScheduler();
+        private final ForegroundState state = new ForegroundState();
+        private String lastEvaluated = "";
+
+        // Ground truth: the protected app the user is actually looking at
+        private String visitPackage = "";
+        private long visitStart;
+        private boolean visitNeedsLock;
+        private int visitLocks;
+
+        // Simulated LockScreenActivity / owner
+        private long pendingShownAt = -1;
+        private long pendingAuthAt = -1;
+        private String pendingPackage;
+        private boolean lockOnTop;
+
+        Run(List<Event> events, Config config) {
+            this.events = events;
+            this.config = config;
+            this.matcher = new ProtectedAppMatcher(config.protectedPackages);
+            this.engine = new LockDecisionEngine(config.graceMs);
+            this.engine.setOwnPackage(OWN_PACKAGE);
+        }
+
+        Report execute() {
+            report.events = events.size();
+            if (events.isEmpty()) return report;
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            boolean measured = threads.isCurrentThreadCpuTimeSupported() && threads.isThreadCpuTimeEnabled();
+            long started = measured ? threads.getCurrentThreadCpuTime() : 0;
+            if (config.eventDriven) {
+                replayEventDriven();
+            } else {
+                replayPolling();
+            }
+            if (measured) report.hostCpuNanos = threads.getCurrentThreadCpuTime() - started;
+            report.simulatedMs = events.get(events.size() - 1).timestamp - events.get(0).timestamp;
+            return report;
+        }
+
+        private void replayEventDriven() {
+            for (Event event : events) {
+                deliver(event);
+                if (event.type == UsageTraceRecorder.TYPE_RESUMED) {
+                    evaluate(event.timestamp, event.packageName);
+                }
+            }
+            endVisit();
+        }
+
+        private void replayPolling() {
+            int next = 0;
+            long now = events.get(0).timestamp;
+            long end = events.get(events.size() - 1).timestamp + ForegroundState.PAUSE_SETTLE_MS;
+
+            while (now <= end) {
+                // The tracker only sees events strictly older than the query end
+                while (next < events.size() && events.get(next).timestamp < now) {
+                    deliver(events.get(next++));
+                }
+
+                if (scheduler.isSuspended()) {
+                    // Parked until the user is present again, exactly like the service
+                    while (next < events.size() && scheduler.isSuspended()) {
+                        deliver(events.get(next++));
+                    }
+                    if (scheduler.isSuspended()) break;
+                    now = events.get(next - 1).timestamp;
+                }
+
+                applyOwner(now);
+                boolean changed = evaluate(now, state.settle(now));
+                long delay = scheduler.nextDelay(now, changed);
+                if (delay != MonitorScheduler.SUSPENDED) {
+                    now += delay;
+                }
+            }
+            endVisit();
+        }
+
+        private boolean evaluate(long now, String observed) {
+            report.evaluations++;
+            boolean changed = !observed.equals(lastEvaluated);
+            lastEvaluated = observed;
+            // While the simulated lock screen is up, it is what the guard sees
+            String foreground = lockOnTop ? OWN_PACKAGE : observed;
+
+            if (engine.onForeground(now, foreground, matcher) == LockDecisionEngine.Decision.LOCK) {
+                report.locks++;
+                if (foreground.equals(visitPackage)) {
+                    visitLocks++;
+                    if (visitLocks == 1) {
+                        long delay = now - visitStart;
+                        report.totalDetectionDelayMs += delay;
+                        report.worstDetectionDelayMs = Math.max(report.worstDetectionDelayMs, delay);
+                    } else {
+                        report.duplicateLocks++;
+                    }
+                }
+                pendingShownAt = now + config.lockLaunchMs;
+                pendingAuthAt = pendingShownAt + config.ownerAuthMs;
+                pendingPackage = foreground;
+            }
+            return changed;
+        }
+
+        private void deliver(Event event) {
+            // Owner actions that happened before this event must be visible to it
+            applyOwner(event.timestamp);
+            switch (event.type) {
+                case UsageTraceRecorder.TYPE_RESUMED:
+                    state.onResumed(event.packageName, event.timestamp);
+                    if (!event.packageName.equals(visitPackage)) {
+                        endVisit();
+                        if (matcher.indexOf(event.packageName) != ProtectedAppMatcher.NOT_PROTECTED) {
+                            visitPackage = event.packageName;
+                            visitStart = event.timestamp;
+                            // A lock screen already on top covers the app as well
+                            boolean covered = pendingAuthAt >= 0 && pendingAuthAt > event.timestamp;
+                            visitNeedsLock = !covered && !engine.hasLiveSession(event.packageName, event.timestamp);
+                            visitLocks = 0;
+                        }
+                    }
+                    break;
+                case UsageTraceRecorder.TYPE_PAUSED:
+                    state.onPaused(event.packageName, event.timestamp);
+                    break;
+                case UsageTraceRecorder.TYPE_SCREEN_OFF:
+                    endVisit();
+                    scheduler.onScreenOff();
+                    engine.clearSessions();
+                    break;
+                case UsageTraceRecorder.TYPE_USER_PRESENT:
+                    scheduler.onUserPresent();
+                    break;
+            }
+        }
+
+        private void endVisit() {
+            if (!visitPackage.isEmpty() && visitNeedsLock && visitLocks == 0) {
+                report.missedLocks++;
+            }
+            visitPackage = "";
+        }
+
+        private void applyOwner(long now) {
+            if (pendingShownAt >= 0 && pendingShownAt <= now) {
+                engine.onLockShown(pendingShownAt);
+                // LockScreenActivity runs in our package, on top of the locked app
+                engine.onForeground(pendingShownAt, OWN_PACKAGE, matcher);
+                lockOnTop = true;
+                pendingShownAt = -1;
+            }
+            if (pendingAuthAt >= 0 && pendingAuthAt <= now) {
+                long authAt = pendingAuthAt;
+                pendingAuthAt = -1;
+                engine.onAuthSucceeded(authAt, pendingPackage);
+                lockOnTop = false;
+                // The lock screen finishes and uncovers whatever the user is on
+                if (!lastEvaluated.isEmpty()) {
+                    evaluate(authAt, lastEvaluated);
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: UsageTraceReplayer <trace> <protected,packages> [graceMs]");
+            System.exit(2);
+        }
+
+        List<Event> events;
+        try (InputStream in = new FileInputStream(args[0])) {
+            events = UsageTraceReader.read(in);
+        }
+
+        Config config = new Config();
+        config.protectedPackages = new HashSet<>(Arrays.asList(args[1].split(",")));
+        if (args.length > 2) {
+            config.graceMs = Long.parseLong(args[2]);
+        }
+
+        config.eventDriven = false;
+        System.out.println("poller       : " + replay(events, config));
+        config.eventDriven = true;
+        System.out.println("event-driven : " + replay(events, config));
+    }
+}
@@ -0,0 +1,149 @@
+package com.hfs.security.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.hfs.security.services.UsageTraceReader.Event;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.List;
+
+public class UsageTraceReplayerTest {
+
+    private static final String LAUNCHER = "com.android.launcher";
+    private static final String BANK = "com.example.bank";
+    private static final String NOTES = "com.example.notes";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readerDecodesWhatTheRecorderWrote() throws IOException {
+        List<Event> events = readTrace(recordSession());
+
+        assertEquals(22, events.size());
+        Event first = events.get(0);
+        assertEquals(UsageTraceRecorder.TYPE_RESUMED, first.type);
+        assertEquals(LAUNCHER, first.packageName);
+        assertEquals(1_000_000L, first.timestamp);
+
+        Event screenOff = events.get(12);
+        assertEquals(UsageTraceRecorder.TYPE_SCREEN_OFF, screenOff.type);
+        assertNull(screenOff.packageName);
+        assertEquals(1_060_000L, screenOff.timestamp);
+    }
+
+    @Test
+    public void truncatedTraceKeepsCompleteRecords() throws IOException {
+        File trace = recordSession();
+        try (RandomAccessFile file = new RandomAccessFile(trace, "rw")) {
+            // Cut the last record in half, as a killed recorder would
+            file.setLength(file.length() - 1);
+        }
+        assertEquals(21, readTrace(trace).size());
+    }
+
+    @Test
+    public void pollerLocksEveryVisitOnce() throws IOException {
+        UsageTraceReplayer.Report report = UsageTraceReplayer.replay(readTrace(recordSession()), config(false));
+
+        // Four visits need a lock: the first, the one after the grace ran out,
+        // the one after screen-off and the 40 ms glance. The return within grace
+        // does not. The glance ends before the next poll, so the poller misses it.
+        assertEquals(3, report.locks);
+        assertEquals(1, report.missedLocks);
+        assertEquals(0, report.duplicateLocks);
+        assertTrue(report.worstDetectionDelayMs <= 1000);
+    }
+
+    @Test
+    public void eventDrivenPathSeesTheGlance() throws IOException {
+        UsageTraceReplayer.Report report = UsageTraceReplayer.replay(readTrace(recordSession()), config(true));
+
+        assertEquals(4, report.locks);
+        assertEquals(0, report.missedLocks);
+        assertEquals(0, report.duplicateLocks);
+        assertEquals(0, report.worstDetectionDelayMs);
+    }
+
+    @Test
+    public void lockScreenThatNeverShowsIsLaunchedAgain() throws IOException {
+        UsageTraceReplayer.Config config = config(true);
+        // Slower than LOCK_SHOW_TIMEOUT_MS: the engine gives up and locks again
+        config.lockLaunchMs = LockDecisionEngine.LOCK_SHOW_TIMEOUT_MS + 2000;
+
+        File trace = folder.newFile("slow.hfst");
+        UsageTraceRecorder recorder = new UsageTraceRecorder(trace);
+        recorder.record(UsageTraceRecorder.TYPE_RESUMED, LAUNCHER, 0);
+        recorder.record(UsageTraceRecorder.TYPE_PAUSED, LAUNCHER, 1000);
+        recorder.record(UsageTraceRecorder.TYPE_RESUMED, BANK, 1010);
+        // The service re-reports the foreground app while it is still in front
+        recorder.record(UsageTraceRecorder.TYPE_RESUMED, BANK, 4500);
+        recorder.record(UsageTraceRecorder.TYPE_PAUSED, BANK, 8000);
+        recorder.record(UsageTraceRecorder.TYPE_RESUMED, LAUNCHER, 8010);
+        recorder.close();
+
+        UsageTraceReplayer.Report report = UsageTraceReplayer.replay(readTrace(trace), config);
+        assertEquals(2, report.locks);
+        assertEquals(1, report.duplicateLocks);
+        assertEquals(0, report.missedLocks);
+    }
+
+    /**
+     * A short real-world-like session, timestamps from elapsedRealtime.
+     */
+    private File recordSession() throws IOException {
+        File trace = folder.newFile("session.hfst");
+        UsageTraceRecorder recorder = new UsageTraceRecorder(trace);
+        long t = 1_000_000;
+        recorder.record(UsageTraceRecorder.TYPE_RESUMED, LAUNCHER, t);
+        // Visit 1: needs a lock
+        switchTo(recorder, LAUNCHER, BANK, t + 2000);
+        // Back within the 10 s grace: no lock
+        switchTo(recorder, BANK, NOTES, t + 10_000);
+        switchTo(recorder, NOTES, BANK, t + 15_000);
+        // Away for longer than the grace: locks again
+        switchTo(recorder, BANK, LAUNCHER, t + 20_000);
+        switchTo(recorder, LAUNCHER, BANK, t + 40_000);
+        // Screen off drops every session
+        recorder.record(UsageTraceRecorder.TYPE_PAUSED, BANK, t + 59_990);
+        recorder.recordMarker(UsageTraceRecorder.TYPE_SCREEN_OFF, t + 60_000);
+        recorder.recordMarker(UsageTraceRecorder.TYPE_USER_PRESENT, t + 90_000);
+        recorder.record(UsageTraceRecorder.TYPE_RESUMED, BANK, t + 90_100);
+        switchTo(recorder, BANK, NOTES, t + 100_000);
+        // A 40 ms glance at the bank long after its grace ran out is a visit too
+        switchTo(recorder, NOTES, BANK, t + 130_000);
+        switchTo(recorder, BANK, NOTES, t + 130_050);
+        recorder.record(UsageTraceRecorder.TYPE_RESUMED, LAUNCHER, t + 200_000);
+        recorder.close();
+        return trace;
+    }
+
+    private static void switchTo(UsageTraceRecorder recorder, String from, String to, long timestamp) {
+        recorder.record(UsageTraceRecorder.TYPE_PAUSED, from, timestamp);
+        recorder.record(UsageTraceRecorder.TYPE_RESUMED, to, timestamp + 10);
+    }
+
+    private static UsageTraceReplayer.Config config(boolean eventDriven) {
+        UsageTraceReplayer.Config config = new UsageTraceReplayer.Config();
+        config.protectedPackages = Collections.singleton(BANK);
+        config.eventDriven = eventDriven;
+        return config;
+    }
+
+    private static List<Event> readTrace(File trace) throws IOException {
+        try (InputStream in = new FileInputStream(trace)) {
+            return UsageTraceReader.read(in);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.hfs.security.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class AutoProtectIndexTest {
+
+    // ApplicationInfo.CATEGORY_SOCIAL and CATEGORY_IMAGE
+    private static final int SOCIAL = 4;
+    private static final int IMAGE = 6;
+
+    @Test
+    public void emptyIndexMatchesNothing() {
+        assertTrue(AutoProtectIndex.EMPTY.isEmpty());
+        assertNull(AutoProtectIndex.EMPTY.match("com.example.bank", SOCIAL));
+    }
+
+    @Test
+    public void literalPatternIsAPrefixOverWholeSegments() {
+        AutoProtectIndex index = index("org.telegram");
+
+        assertEquals("pattern org.telegram", index.match("org.telegram", -1));
+        assertEquals("pattern org.telegram", index.match("org.telegram.messenger", -1));
+        // A prefix of the text is not a prefix of the segments
+        assertNull(index.match("org.telegramx", -1));
+        assertNull(index.match("org", -1));
+    }
+
+    @Test
+    public void globSegmentMatchesInsideOneSegment() {
+        AutoProtectIndex index = index("com.*bank*");
+
+        assertEquals("pattern com.*bank*", index.match("com.mybank", -1));
+        assertEquals("pattern com.*bank*", index.match("com.bankapp.mobile", -1));
+        assertEquals("pattern com.*bank*", index.match("com.bank", -1));
+        assertNull(index.match("com.example.bank", -1));
+        assertNull(index.match("org.mybank", -1));
+    }
+
+    @Test
+    public void anySegmentSkipsExactlyOneSegment() {
+        AutoProtectIndex index = index("com.*.wallet");
+
+        assertEquals("pattern com.*.wallet", index.match("com.google.wallet", -1));
+        assertEquals("pattern com.*.wallet", index.match("com.paypal.wallet.beta", -1));
+        assertNull(index.match("com.wallet", -1));
+        assertNull(index.match("com.a.b.wallet", -1));
+    }
+
+    @Test
+    public void matchingIsCaseInsensitive() {
+        AutoProtectIndex index = index("  Com.Example.BANK ");
+
+        assertEquals("pattern com.example.bank", index.match("com.example.Bank.Mobile", -1));
+    }
+
+    @Test
+    public void overlappingPatternsFallBackWhenTheFirstBranchFails() {
+        // The literal branch reaches "com.example" but its "*pay" child does not match,
+        // so the search must backtrack into the "*" branch
+        AutoProtectIndex index = index("com.example.*pay", "com.*.wallet");
+
+        assertEquals("pattern com.*.wallet", index.match("com.example.wallet", -1));
+        assertEquals("pattern com.example.*pay", index.match("com.example.gpay", -1));
+    }
+
+    @Test
+    public void blankAndMalformedPatternsAreIgnored() {
+        AutoProtectIndex index = new AutoProtectIndex(
+                Arrays.asList(null, "", "   ", "com..bank", ".com"), 0);
+
+        assertEquals(0, index.getPatternCount());
+        assertTrue(index.isEmpty());
+        assertNull(index.match("com.bank", -1));
+    }
+
+    @Test
+    public void categoryBitsMatchWithoutAnyPattern() {
+        AutoProtectIndex index = new AutoProtectIndex(
+                Collections.<String>emptyList(), (1 << SOCIAL) | (1 << IMAGE));
+
+        assertFalse(index.isEmpty());
+        assertEquals("category 4", index.match("com.example.chat", SOCIAL));
+        assertEquals("category 6", index.match("com.example.gallery", IMAGE));
+        assertNull(index.match("com.example.game", 0));
+    }
+
+    @Test
+    public void undefinedOrOutOfRangeCategoriesNeverMatch() {
+        AutoProtectIndex index = new AutoProtectIndex(Collections.<String>emptyList(), -1);
+
+        assertNull(index.match("com.example.app", -1));
+        assertNull(index.match("com.example.app", 32));
+        assertEquals("category 0", index.match("com.example.app", 0));
+    }
+
+    @Test
+    public void categoryIsReportedBeforeAPattern() {
+        AutoProtectIndex index = new AutoProtectIndex(Arrays.asList("com.example"), 1 << SOCIAL);
+
+        assertEquals("category 4", index.match("com.example.chat", SOCIAL));
+        assertEquals("pattern com.example", index.match("com.example.chat", IMAGE));
+        assertNull(index.match(null, IMAGE));
+    }
+
+    @Test
+    public void globMatchesBacktracks() {
+        assertTrue(AutoProtectIndex.globMatches("*bank*", "bank"));
+        assertTrue(AutoProtectIndex.globMatches("a*b*c", "aXbYbZc"));
+        assertTrue(AutoProtectIndex.globMatches("*ab", "aab"));
+        assertTrue(AutoProtectIndex.globMatches("**", ""));
+        assertFalse(AutoProtectIndex.globMatches("a*b*c", "aXbYc1"));
+        assertFalse(AutoProtectIndex.globMatches("bank", "banks"));
+    }
+
+    private static AutoProtectIndex index(String... patterns) {
+        return new AutoProtectIndex(Arrays.asList(patterns), 0);
+    }
+}
@@ -0,0 +1,148 @@
+package com.hfs.security.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class FrameScorerTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+
+    @Test
+    public void sharpFrameBeatsItsBlurredCopy() {
+        int[] sharp = texture(new Random(1), 118, 40);
+        int[] blurred = boxBlur(boxBlur(sharp));
+
+        FrameScorer scorer = new FrameScorer();
+        double sharpScore = score(scorer, sharp);
+        double sharpness = scorer.getSharpness();
+        double blurredScore = score(scorer, blurred);
+
+        assertTrue(sharpScore + " vs " + blurredScore, sharpScore > 4 * blurredScore);
+        assertTrue(sharpness > 4 * scorer.getSharpness());
+    }
+
+    @Test
+    public void midGreyBeatsDarkAndOverexposed() {
+        // Same detail at three exposures
+        FrameScorer scorer = new FrameScorer();
+        double midGrey = score(scorer, texture(new Random(2), 118, 20));
+        assertEquals(1.0, scorer.getExposure(), 0.05);
+        double dark = score(scorer, texture(new Random(2), 30, 20));
+        double darkExposure = scorer.getExposure();
+        double overexposed = score(scorer, texture(new Random(2), 225, 20));
+        double overExposure = scorer.getExposure();
+
+        assertTrue(midGrey + " vs " + dark, midGrey > 2 * dark);
+        assertTrue(midGrey + " vs " + overexposed, midGrey > 2 * overexposed);
+        assertTrue(darkExposure < 0.5);
+        assertTrue(overExposure < 0.5);
+    }
+
+    @Test
+    public void blackAndWhiteFramesScoreZero() {
+        FrameScorer scorer = new FrameScorer();
+        assertEquals(0, score(scorer, flat(0)), 0);
+        assertEquals(0, score(scorer, flat(255)), 0);
+        assertEquals(0, scorer.getExposure(), 0);
+    }
+
+    @Test
+    public void paddedRowsScoreLikeTightRows() {
+        int[] pixels = texture(new Random(3), 118, 40);
+        FrameScorer scorer = new FrameScorer();
+        double tight = scorer.score(plane(pixels, WIDTH, 0, null), WIDTH, HEIGHT, WIDTH);
+
+        // Random bytes in the padding would change the score if the stride were ignored
+        int stride = WIDTH + 64;
+        double padded = scorer.score(plane(pixels, stride, 0, new Random(4)), WIDTH, HEIGHT, stride);
+
+        assertEquals(tight, padded, 0);
+    }
+
+    @Test
+    public void planeStartsAtTheBufferPosition() {
+        int[] pixels = texture(new Random(5), 118, 40);
+        FrameScorer scorer = new FrameScorer();
+        double expected = scorer.score(plane(pixels, WIDTH, 0, null), WIDTH, HEIGHT, WIDTH);
+
+        ByteBuffer offset = plane(pixels, WIDTH, 100, new Random(6));
+        double actual = scorer.score(offset, WIDTH, HEIGHT, WIDTH);
+
+        assertEquals(expected, actual, 0);
+        assertEquals(100, offset.position());
+    }
+
+    @Test
+    public void tooSmallFrameScoresZero() {
+        FrameScorer scorer = new FrameScorer();
+        assertEquals(0, scorer.score(ByteBuffer.allocate(4), 2, 2, 2), 0);
+    }
+
+    private static double score(FrameScorer scorer, int[] pixels) {
+        return scorer.score(plane(pixels, WIDTH, 0, null), WIDTH, HEIGHT, WIDTH);
+    }
+
+    /**
+     * Fine random detail (+/- amplitude) around a mean luma, clamped to a byte.
+     */
+    private static int[] texture(Random random, int mean, int amplitude) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = clamp(mean + random.nextInt(2 * amplitude + 1) - amplitude);
+        }
+        return pixels;
+    }
+
+    private static int[] flat(int value) {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        Arrays.fill(pixels, value);
+        return pixels;
+    }
+
+    /**
+     * 3x3 box blur; edge pixels are kept.
+     */
+    private static int[] boxBlur(int[] pixels) {
+        int[] out = pixels.clone();
+        for (int row = 1; row < HEIGHT - 1; row++) {
+            for (int col = 1; col < WIDTH - 1; col++) {
+                int sum = 0;
+                for (int dy = -1; dy <= 1; dy++) {
+                    for (int dx = -1; dx <= 1; dx++) {
+                        sum += pixels[(row + dy) * WIDTH + col + dx];
+                    }
+                }
+                out[row * WIDTH + col] = sum / 9;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Y plane with the given row stride, starting {@code offset} bytes into the
+     * buffer; padding and the leading bytes are random when {@code filler} is set.
+     */
+    private static ByteBuffer plane(int[] pixels, int rowStride, int offset, Random filler) {
+        byte[] bytes = new byte[offset + (HEIGHT - 1) * rowStride + WIDTH];
+        if (filler != null) filler.nextBytes(bytes);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                bytes[offset + row * rowStride + col] = (byte) pixels[row * WIDTH + col];
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.position(offset);
+        return buffer;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
@@ -0,0 +1,266 @@
+package com.hfs.security.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+public class HFSConfigStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File file;
+
+    @Before
+    public void setUp() {
+        file = new File(folder.getRoot(), "hfs_config.bin");
+    }
+
+    @Test
+    public void firstOpenIsNotLoadedFromDisk() {
+        HFSConfigStore store = open();
+        assertFalse(store.isLoadedFromDisk());
+        assertFalse(store.wasReset());
+        assertFalse(file.exists());
+    }
+
+    @Test
+    public void everyTypeSurvivesARoundTrip() throws IOException {
+        Set<String> packages = new HashSet<>(Arrays.asList(
+                "com.example.bank", "com.example.bank.business", "com.example.gallery",
+                "org.other", "com.😀emoji", "com.😁emoji"));
+        HFSConfigStore store = open();
+        store.putBoolean("on", true);
+        store.putBoolean("off", false);
+        store.putInt("int", -123_456);
+        store.putInt("intMin", Integer.MIN_VALUE);
+        store.putLong("long", Long.MAX_VALUE);
+        store.putLong("negativeLong", -1L);
+        store.putString("pin", "4321");
+        store.putString("empty", "");
+        store.putStringSet("packages", packages);
+        store.putStringSet("emptySet", Collections.<String>emptySet());
+        store.putBytes("bytes", new byte[] {0, -1, 127, -128});
+        store.commit();
+
+        HFSConfigStore reopened = open();
+        assertTrue(reopened.isLoadedFromDisk());
+        assertTrue(reopened.getBoolean("on", false));
+        assertFalse(reopened.getBoolean("off", true));
+        assertEquals(-123_456, reopened.getInt("int", 0));
+        assertEquals(Integer.MIN_VALUE, reopened.getInt("intMin", 0));
+        assertEquals(Long.MAX_VALUE, reopened.getLong("long", 0));
+        assertEquals(-1L, reopened.getLong("negativeLong", 0));
+        assertEquals("4321", reopened.getString("pin", null));
+        assertEquals("", reopened.getString("empty", null));
+        assertEquals(packages, reopened.getStringSet("packages", null));
+        assertTrue(reopened.getStringSet("emptySet", null).isEmpty());
+        assertArrayEquals(new byte[] {0, -1, 127, -128}, reopened.getBytes("bytes", null));
+    }
+
+    @Test
+    public void wrongTypeOrMissingKeyReturnsTheDefault() {
+        HFSConfigStore store = open();
+        store.putString("pin", "4321");
+        assertEquals(7, store.getInt("pin", 7));
+        assertNull(store.getString("missing", null));
+
+        store.remove("pin");
+        assertFalse(store.contains("pin"));
+    }
+
+    @Test
+    public void putsReachTheDiskThroughTheWriter() {
+        HFSConfigStore store = open();
+        store.putString("pin", "4321");
+        store.putInt("count", 3);
+        assertTrue(file.exists());
+
+        assertEquals("4321", open().getString("pin", null));
+    }
+
+    @Test
+    public void previousFileIsKeptAsBackup() throws IOException {
+        HFSConfigStore store = commitOnly();
+        store.putString("pin", "1111");
+        store.commit();
+        store.putString("pin", "2222");
+        store.commit();
+
+        assertTrue(backup().exists());
+        Files.write(file.toPath(), new byte[0]);
+        assertEquals("1111", open().getString("pin", null));
+    }
+
+    @Test
+    public void corruptFileFallsBackToTheBackup() throws IOException {
+        writeTwoVersions();
+        byte[] data = Files.readAllBytes(file.toPath());
+        data[data.length / 2] ^= 0x10;
+        Files.write(file.toPath(), data);
+
+        HFSConfigStore store = open();
+        assertTrue(store.isLoadedFromDisk());
+        assertFalse(store.wasReset());
+        assertEquals("1111", store.getString("pin", null));
+        assertEquals(new HashSet<>(Collections.singleton("com.example.bank")),
+                store.getStringSet("packages", null));
+        // The bad copy is set aside so the next write cannot rotate it over the backup
+        assertTrue(new File(file.getPath() + ".corrupt").exists());
+    }
+
+    @Test
+    public void everyTruncationIsDetected() throws IOException {
+        writeTwoVersions();
+        byte[] data = Files.readAllBytes(file.toPath());
+        byte[] good = Files.readAllBytes(backup().toPath());
+        for (int length = 0; length < data.length; length++) {
+            Files.write(file.toPath(), Arrays.copyOf(data, length));
+            Files.write(backup().toPath(), good);
+
+            HFSConfigStore store = open();
+            assertTrue("length " + length, store.isLoadedFromDisk());
+            assertEquals("length " + length, "1111", store.getString("pin", null));
+        }
+    }
+
+    @Test
+    public void crashBetweenRenamesLeavesTheBackup() throws IOException {
+        writeTwoVersions();
+        // Old file already moved to .bak, new one not yet renamed into place
+        assertTrue(file.delete());
+
+        HFSConfigStore store = open();
+        assertTrue(store.isLoadedFromDisk());
+        assertEquals("1111", store.getString("pin", null));
+    }
+
+    @Test
+    public void unreadableFileAndBackupAreReported() throws IOException {
+        writeTwoVersions();
+        Files.write(file.toPath(), "garbage".getBytes("UTF-8"));
+        Files.write(backup().toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9, 10});
+
+        HFSConfigStore store = open();
+        assertFalse(store.isLoadedFromDisk());
+        assertTrue(store.wasReset());
+        assertNull(store.getString("pin", null));
+    }
+
+    @Test
+    public void migrationCommitIsReadBackOnTheNextOpen() throws IOException {
+        // HFSDatabaseHelper copies the old preferences, commits, then deletes them
+        HFSConfigStore fresh = open();
+        assertFalse(fresh.isLoadedFromDisk());
+        fresh.putString("master_pin", "9876");
+        fresh.putStringSet("protected_packages", new HashSet<>(Arrays.asList("a.b", "a.c")));
+        fresh.putBoolean("setup_complete", true);
+        fresh.commit();
+
+        HFSConfigStore reopened = open();
+        assertTrue(reopened.isLoadedFromDisk());
+        assertEquals("9876", reopened.getString("master_pin", "0000"));
+        assertEquals(2, reopened.getStringSet("protected_packages", null).size());
+        assertTrue(reopened.getBoolean("setup_complete", false));
+    }
+
+    @Test
+    public void otherVersionsAreRejected() throws IOException {
+        HFSConfigStore store = open();
+        store.putString("pin", "1111");
+        byte[] data = store.encode();
+        // The version byte follows the 4-byte magic; the CRC would catch it first, so fix that up
+        data[4] = (byte) (HFSConfigStore.VERSION + 1);
+        java.util.zip.CRC32 crc = new java.util.zip.CRC32();
+        crc.update(data, 0, data.length - 4);
+        int value = (int) crc.getValue();
+        data[data.length - 4] = (byte) (value >>> 24);
+        data[data.length - 3] = (byte) (value >>> 16);
+        data[data.length - 2] = (byte) (value >>> 8);
+        data[data.length - 1] = (byte) value;
+        Files.write(file.toPath(), data);
+
+        assertTrue(open().wasReset());
+    }
+
+    /**
+     * Not a JMH run: a warmed-up loop over a realistic configuration (200
+     * protected packages plus scalars), printed so regressions stay visible in
+     * the test log.
+     */
+    @Test
+    public void encodeAndLoadTimings() throws IOException {
+        HFSConfigStore store = open();
+        Set<String> packages = new HashSet<>();
+        for (int i = 0; i < 200; i++) {
+            packages.add("com.example.vendor" + (i % 20) + ".app" + i);
+        }
+        store.putStringSet("protected_packages", packages);
+        store.putString("master_pin", "4321");
+        store.putString("trusted_number", "+15550100");
+        for (int i = 0; i < 20; i++) {
+            store.putLong("counter" + i, i * 1_000_003L);
+        }
+        store.commit();
+
+        int rounds = 500;
+        for (int r = 0; r < rounds; r++) {
+            store.encode();
+            open();
+        }
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            store.encode();
+        }
+        long encodeNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            open();
+        }
+        long loadNanos = System.nanoTime() - start;
+
+        assertEquals(packages, open().getStringSet("protected_packages", null));
+        System.out.println(String.format(Locale.US,
+                "config of %d bytes: encode %.1f us, open+load %.1f us",
+                file.length(), encodeNanos / 1e3 / rounds, loadNanos / 1e3 / rounds));
+    }
+
+    private void writeTwoVersions() throws IOException {
+        HFSConfigStore store = commitOnly();
+        store.putString("pin", "1111");
+        store.putStringSet("packages", Collections.singleton("com.example.bank"));
+        store.commit();
+        store.putString("pin", "2222");
+        store.commit();
+    }
+
+    private File backup() {
+        return new File(file.getPath() + ".bak");
+    }
+
+    private HFSConfigStore commitOnly() {
+        // Scheduled writes never run, so each commit() is exactly one file generation
+        return new HFSConfigStore(file, task -> { });
+    }
+
+    private HFSConfigStore open() {
+        // Writes run on the calling thread
+        return new HFSConfigStore(file, Runnable::run);
+    }
+}
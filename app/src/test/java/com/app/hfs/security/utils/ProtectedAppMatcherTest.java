@@ -0,0 +1,184 @@
+package com.hfs.security.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+public class ProtectedAppMatcherTest {
+
+    @Test
+    public void emptyMatcherProtectsNothing() {
+        assertEquals(0, ProtectedAppMatcher.EMPTY.size());
+        assertFalse(ProtectedAppMatcher.EMPTY.isProtected("com.whatsapp"));
+        assertEquals(ProtectedAppMatcher.NOT_PROTECTED, ProtectedAppMatcher.EMPTY.indexOf(null));
+    }
+
+    @Test
+    public void collidingHashesAreTellApart() {
+        // "Aa" and "BB" share String.hashCode(), so they land on the same probe chain
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+        ProtectedAppMatcher matcher = new ProtectedAppMatcher(Arrays.asList("Aa", "AaAa", "BBBB"));
+
+        assertEquals(0, matcher.indexOf("Aa"));
+        assertEquals(1, matcher.indexOf("AaAa"));
+        assertEquals(2, matcher.indexOf("BBBB"));
+        assertEquals(ProtectedAppMatcher.NOT_PROTECTED, matcher.indexOf("BB"));
+        assertEquals(ProtectedAppMatcher.NOT_PROTECTED, matcher.indexOf("AaBB"));
+    }
+
+    @Test
+    public void largeListsGrowTheTable() {
+        List<String> packages = packages(1000);
+        ProtectedAppMatcher matcher = new ProtectedAppMatcher(packages);
+
+        assertEquals(1000, matcher.size());
+        for (int id = 0; id < packages.size(); id++) {
+            // A fresh String instance, so equals() is used rather than identity
+            String lookup = new String(packages.get(id));
+            assertEquals(id, matcher.indexOf(lookup));
+            assertEquals(packages.get(id), matcher.packageAt(id));
+        }
+        assertEquals(ProtectedAppMatcher.NOT_PROTECTED, matcher.indexOf("com.example.app1000"));
+    }
+
+    @Test
+    public void reloadAnswersFromTheNewList() {
+        String banking = "com.example.bank";
+        String gallery = "com.example.gallery";
+        ProtectedAppMatcher before = new ProtectedAppMatcher(Collections.singleton(banking));
+        assertTrue(before.isProtected(banking));
+        assertFalse(before.isProtected(gallery));
+
+        // HFSDatabaseHelper swaps in a new matcher when the list changes
+        ProtectedAppMatcher after = new ProtectedAppMatcher(Collections.singleton(gallery));
+        assertFalse(after.isProtected(banking));
+        assertTrue(after.isProtected(gallery));
+        assertTrue(before.isProtected(banking));
+    }
+
+    @Test
+    public void lastSeenCacheFollowsTheQueriedPackage() {
+        ProtectedAppMatcher matcher = new ProtectedAppMatcher(Arrays.asList("a.protected", "b.protected"));
+        String launcher = "com.android.launcher";
+
+        assertFalse(matcher.isProtected(launcher));
+        assertFalse(matcher.isProtected(launcher));
+        assertTrue(matcher.isProtected("a.protected"));
+        assertTrue(matcher.isProtected("a.protected"));
+        assertFalse(matcher.isProtected(null));
+        assertFalse(matcher.isProtected(launcher));
+    }
+
+    @Test
+    public void lookupsDoNotAllocate() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+
+        List<String> packages = packages(100);
+        ProtectedAppMatcher matcher = new ProtectedAppMatcher(packages);
+        String[] queries = queries(packages, 64);
+        // Warm up so class loading and JIT do not count
+        int hits = lookUp(matcher, queries, 20_000);
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        hits += lookUp(matcher, queries, 20_000);
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue(hits > 0);
+        // Leave room for the counter's own bookkeeping, far below one byte per lookup
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    /**
+     * Not a JMH run: a warmed-up loop against HashSet<String> on the same
+     * queries, printed per size so regressions stay visible in the test log.
+     */
+    @Test
+    public void throughputAgainstHashSet() {
+        for (int size : new int[] {10, 100, 1000}) {
+            List<String> packages = packages(size);
+            ProtectedAppMatcher matcher = new ProtectedAppMatcher(packages);
+            Set<String> set = new HashSet<>(packages);
+            String[] queries = queries(packages, 1024);
+
+            for (String query : queries) {
+                assertEquals(set.contains(query), matcher.indexOf(query) != ProtectedAppMatcher.NOT_PROTECTED);
+            }
+
+            int rounds = 2_000;
+            lookUp(matcher, queries, rounds);
+            lookUp(set, queries, rounds);
+            long start = System.nanoTime();
+            int matcherHits = lookUp(matcher, queries, rounds);
+            long matcherNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            int setHits = lookUp(set, queries, rounds);
+            long setNanos = System.nanoTime() - start;
+
+            assertEquals(setHits, matcherHits);
+            double lookups = (double) rounds * queries.length;
+            System.out.println(String.format(Locale.US,
+                    "%4d packages: matcher %.1f ns/lookup, HashSet %.1f ns/lookup",
+                    size, matcherNanos / lookups, setNanos / lookups));
+        }
+    }
+
+    private static List<String> packages(int count) {
+        List<String> packages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            packages.add("com.example.app" + i);
+        }
+        return packages;
+    }
+
+    /**
+     * Half hits, half misses, as fresh String instances like the ones
+     * UsageEvents hands out.
+     */
+    private static String[] queries(List<String> packages, int count) {
+        String[] queries = new String[count];
+        for (int i = 0; i < count; i++) {
+            queries[i] = i % 2 == 0
+                    ? new String(packages.get(i % packages.size()))
+                    : "org.other.app" + i;
+            queries[i].hashCode();
+        }
+        return queries;
+    }
+
+    private static int lookUp(ProtectedAppMatcher matcher, String[] queries, int rounds) {
+        int hits = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (String query : queries) {
+                if (matcher.indexOf(query) != ProtectedAppMatcher.NOT_PROTECTED) hits++;
+            }
+        }
+        return hits;
+    }
+
+    private static int lookUp(Set<String> set, String[] queries, int rounds) {
+        int hits = 0;
+        for (int r = 0; r < rounds; r++) {
+            for (String query : queries) {
+                if (set.contains(query)) hits++;
+            }
+        }
+        return hits;
+    }
+}
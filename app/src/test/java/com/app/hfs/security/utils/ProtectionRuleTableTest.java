@@ -0,0 +1,199 @@
+package com.hfs.security.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.hfs.security.models.ProtectionRule;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class ProtectionRuleTableTest {
+
+    private static final String BANK = "com.example.bank";
+    private static final String GALLERY = "com.example.gallery";
+
+    private static final int MONDAY = 0;
+    private static final int THURSDAY = 3;
+    private static final int FRIDAY = 4;
+    private static final int SATURDAY = 5;
+    private static final int SUNDAY = 6;
+
+    // Context mask with every non-time condition met
+    private static final long ALL = -1L;
+
+    @Test
+    public void minuteOfWeekStartsOnMonday() {
+        // 1970-01-05 00:00 UTC was a Monday
+        long monday = 4L * 24 * 60 * 60 * 1000;
+        assertEquals(0, ProtectionRuleTable.minuteOfWeek(monday, 0));
+        assertEquals(ProtectionRuleTable.MINUTES_PER_WEEK - 1, ProtectionRuleTable.minuteOfWeek(monday - 60_000, 0));
+        // Two hours east of UTC it is already 02:00 local
+        assertEquals(120, ProtectionRuleTable.minuteOfWeek(monday, 2 * 60 * 60 * 1000));
+        // A week later it wraps back to 0
+        assertEquals(0, ProtectionRuleTable.minuteOfWeek(monday + 7L * 24 * 60 * 60 * 1000, 0));
+    }
+
+    @Test
+    public void emptyTableAlwaysLocks() {
+        assertTrue(ProtectionRuleTable.EMPTY.requiresLock(BANK, 0, ALL));
+        assertEquals(0, ProtectionRuleTable.EMPTY.contextMask(true, "Home", true, 0, 0));
+    }
+
+    @Test
+    public void windowAcrossMidnightBelongsToTheDayItStarts() {
+        ProtectionRule rule = allow();
+        rule.setDays(ProtectionRule.FRIDAY);
+        rule.setTimeWindow(minute(22, 0), minute(2, 0));
+        ProtectionRuleTable table = table(rule);
+
+        assertTrue(table.requiresLock(BANK, at(FRIDAY, 21, 59), ALL));
+        assertFalse(table.requiresLock(BANK, at(FRIDAY, 22, 0), ALL));
+        assertFalse(table.requiresLock(BANK, at(FRIDAY, 23, 30), ALL));
+        assertFalse(table.requiresLock(BANK, at(SATURDAY, 1, 59), ALL));
+        assertTrue(table.requiresLock(BANK, at(SATURDAY, 2, 0), ALL));
+        // Thursday night is not covered: the window starts on Friday only
+        assertTrue(table.requiresLock(BANK, at(THURSDAY, 23, 0), ALL));
+        assertTrue(table.requiresLock(BANK, at(FRIDAY, 1, 0), ALL));
+    }
+
+    @Test
+    public void sundayNightWindowWrapsIntoMonday() {
+        ProtectionRule rule = allow();
+        rule.setDays(ProtectionRule.SUNDAY);
+        rule.setTimeWindow(minute(23, 0), minute(1, 0));
+        ProtectionRuleTable table = table(rule);
+
+        assertTrue(table.requiresLock(BANK, at(SUNDAY, 22, 59), ALL));
+        assertFalse(table.requiresLock(BANK, at(SUNDAY, 23, 59), ALL));
+        assertFalse(table.requiresLock(BANK, at(MONDAY, 0, 0), ALL));
+        assertFalse(table.requiresLock(BANK, at(MONDAY, 0, 59), ALL));
+        assertTrue(table.requiresLock(BANK, at(MONDAY, 1, 0), ALL));
+        assertTrue(table.requiresLock(BANK, at(SATURDAY, 23, 30), ALL));
+    }
+
+    @Test
+    public void ruleWithoutWindowCoversItsWholeDays() {
+        ProtectionRule rule = allow();
+        rule.setDays(ProtectionRule.SATURDAY | ProtectionRule.SUNDAY);
+        ProtectionRuleTable table = table(rule);
+
+        assertTrue(table.requiresLock(BANK, at(FRIDAY, 23, 59), ALL));
+        assertFalse(table.requiresLock(BANK, at(SATURDAY, 0, 0), ALL));
+        assertFalse(table.requiresLock(BANK, at(SUNDAY, 23, 59), ALL));
+        assertTrue(table.requiresLock(BANK, at(MONDAY, 0, 0), ALL));
+    }
+
+    @Test
+    public void earlierRuleWinsBetweenEnforceAndAllow() {
+        // "Always lock the bank during office hours", then "never lock anything"
+        ProtectionRule enforce = enforce(BANK);
+        enforce.setDays(ProtectionRule.EVERY_DAY);
+        enforce.setTimeWindow(minute(9, 0), minute(17, 0));
+        ProtectionRule allowAll = allow();
+        ProtectionRuleTable table = table(enforce, allowAll);
+
+        assertTrue(table.requiresLock(BANK, at(MONDAY, 10, 0), ALL));
+        assertFalse(table.requiresLock(GALLERY, at(MONDAY, 10, 0), ALL));
+        assertFalse(table.requiresLock(BANK, at(MONDAY, 18, 0), ALL));
+
+        // Reversed, the allow rule shadows the enforce rule everywhere
+        ProtectionRuleTable reversed = table(allowAll, enforce);
+        assertFalse(reversed.requiresLock(BANK, at(MONDAY, 10, 0), ALL));
+    }
+
+    @Test
+    public void packageScopedRulesOnlyApplyToTheirPackages() {
+        ProtectionRuleTable table = table(allow(GALLERY));
+
+        assertFalse(table.requiresLock(GALLERY, at(MONDAY, 12, 0), ALL));
+        assertTrue(table.requiresLock(BANK, at(MONDAY, 12, 0), ALL));
+    }
+
+    @Test
+    public void unmetConditionFallsThroughToTheNextRule() {
+        ProtectionRule charging = allow();
+        charging.setCharging(true);
+        ProtectionRule enforce = enforce();
+        ProtectionRuleTable table = table(charging, enforce);
+
+        long pluggedIn = table.contextMask(true, null, false, 0, 0);
+        long onBattery = table.contextMask(false, null, false, 0, 0);
+        assertFalse(table.requiresLock(BANK, at(MONDAY, 12, 0), pluggedIn));
+        assertTrue(table.requiresLock(BANK, at(MONDAY, 12, 0), onBattery));
+    }
+
+    @Test
+    public void missingWifiOnlyMatchesAwayRules() {
+        ProtectionRule atHome = allow();
+        atHome.setWifiCondition("Home", true);
+        ProtectionRule awayFromHome = allow();
+        awayFromHome.setWifiCondition("Home", false);
+        ProtectionRuleTable table = table(atHome, awayFromHome);
+
+        assertEquals(0b01, table.contextMask(false, "Home", false, 0, 0));
+        assertEquals(0b10, table.contextMask(false, "Cafe", false, 0, 0));
+        // Not on Wi-Fi at all: certainly not on the home network
+        assertEquals(0b10, table.contextMask(false, null, false, 0, 0));
+    }
+
+    @Test
+    public void missingLocationMatchesNoPlaceRule() {
+        ProtectionRule inside = allow();
+        inside.setPlaceCondition(52.0, 4.0, 150, true);
+        ProtectionRule outside = allow();
+        outside.setPlaceCondition(52.0, 4.0, 150, false);
+        ProtectionRuleTable table = table(inside, outside);
+        assertTrue(table.usesPlaces());
+
+        // Neither inside nor outside can be proven without a fix, so the lock stays
+        long noFix = table.contextMask(false, null, false, 52.0, 4.0);
+        assertEquals(0, noFix);
+        assertTrue(table.requiresLock(BANK, at(MONDAY, 12, 0), noFix));
+
+        // About 111 m north: inside; about 1.1 km north: outside
+        assertEquals(0b01, table.contextMask(false, null, true, 52.001, 4.0));
+        assertEquals(0b10, table.contextMask(false, null, true, 52.01, 4.0));
+    }
+
+    @Test
+    public void onlyTheFirst64RulesAreCompiled() {
+        List<ProtectionRule> rules = new ArrayList<>();
+        for (int i = 0; i < ProtectionRuleTable.MAX_RULES + 6; i++) {
+            rules.add(allow());
+        }
+        assertEquals(ProtectionRuleTable.MAX_RULES, new ProtectionRuleTable(rules).size());
+    }
+
+    private static ProtectionRuleTable table(ProtectionRule... rules) {
+        return new ProtectionRuleTable(Arrays.asList(rules));
+    }
+
+    private static ProtectionRule allow(String... packages) {
+        ProtectionRule rule = new ProtectionRule();
+        rule.setAllow(true);
+        rule.setPackages(new HashSet<>(packages.length == 0
+                ? Collections.<String>emptyList() : Arrays.asList(packages)));
+        return rule;
+    }
+
+    private static ProtectionRule enforce(String... packages) {
+        ProtectionRule rule = allow(packages);
+        rule.setAllow(false);
+        return rule;
+    }
+
+    private static int minute(int hour, int minute) {
+        return hour * 60 + minute;
+    }
+
+    private static int at(int day, int hour, int minute) {
+        return day * ProtectionRuleTable.MINUTES_PER_DAY + minute(hour, minute);
+    }
+}
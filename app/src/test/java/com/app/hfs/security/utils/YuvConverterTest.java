@@ -0,0 +1,303 @@
+package com.hfs.security.utils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+public class YuvConverterTest {
+
+    @Test
+    public void nv21SizeRoundsChromaUp() {
+        assertEquals(640 * 480 * 3 / 2, YuvConverter.nv21Size(640, 480));
+        // 33x17: 9 chroma rows of 17 VU pairs
+        assertEquals(33 * 17 + 2 * 17 * 9, YuvConverter.nv21Size(33, 17));
+    }
+
+    @Test
+    public void planarPlanesWithoutPadding() {
+        Frame frame = Frame.planar(new Random(1), 64, 48, 64, 32, 1);
+        assertFalse(frame.convert(new YuvConverter()));
+        frame.assertMatchesReference();
+    }
+
+    @Test
+    public void planarPlanesWithPaddedRows() {
+        Frame frame = Frame.planar(new Random(2), 64, 48, 80, 40, 1);
+        assertFalse(frame.convert(new YuvConverter()));
+        frame.assertMatchesReference();
+    }
+
+    @Test
+    public void separatePixelStride2PlanesTakeTheGeneralPath() {
+        Frame frame = Frame.planar(new Random(3), 64, 48, 64, 64, 2);
+        assertFalse(frame.convert(new YuvConverter()));
+        frame.assertMatchesReference();
+    }
+
+    @Test
+    public void separatePixelStride2PlanesWithPaddedRows() {
+        Frame frame = Frame.planar(new Random(4), 64, 48, 96, 96, 2);
+        assertFalse(frame.convert(new YuvConverter()));
+        frame.assertMatchesReference();
+    }
+
+    @Test
+    public void interleavedVuTakesTheFastPath() {
+        Frame frame = Frame.interleaved(new Random(5), 64, 48, 64, 64);
+        assertTrue(frame.convert(new YuvConverter()));
+        frame.assertMatchesReference();
+    }
+
+    @Test
+    public void interleavedVuWithPaddedRowsTakesTheFastPath() {
+        Frame frame = Frame.interleaved(new Random(6), 64, 48, 96, 80);
+        assertTrue(frame.convert(new YuvConverter()));
+        frame.assertMatchesReference();
+    }
+
+    @Test
+    public void oddSizesKeepTheLastColumnAndRow() {
+        Frame planar = Frame.planar(new Random(7), 33, 17, 40, 24, 1);
+        assertFalse(planar.convert(new YuvConverter()));
+        planar.assertMatchesReference();
+
+        Frame interleaved = Frame.interleaved(new Random(8), 33, 17, 48, 48);
+        assertTrue(interleaved.convert(new YuvConverter()));
+        interleaved.assertMatchesReference();
+    }
+
+    @Test
+    public void separatePlanesThatLookInterleavedStillConvertCorrectly() {
+        // Flat chroma in two unrelated buffers passes the content check, so the
+        // fast path runs on planes that do not share memory; equal content is
+        // all it relies on
+        Frame frame = Frame.planar(new Random(9), 64, 48, 96, 96, 2);
+        Arrays.fill(frame.uBytes, (byte) 128);
+        Arrays.fill(frame.vBytes, (byte) 128);
+        assertTrue(frame.convert(new YuvConverter()));
+        frame.assertMatchesReference();
+    }
+
+    @Test
+    public void nearlyInterleavedPlanesFallBackToTheGeneralPath() {
+        // Same length and all but one byte shifted by one: must not be taken for a VU view
+        Frame frame = Frame.planar(new Random(10), 64, 48, 64, 64, 2);
+        System.arraycopy(frame.vBytes, 1, frame.uBytes, 0, frame.uBytes.length - 1);
+        frame.uBytes[frame.uBytes.length / 2] ^= 0x5A;
+        assertFalse(frame.convert(new YuvConverter()));
+        frame.assertMatchesReference();
+    }
+
+    @Test
+    public void bufferPositionsAreLeftAsFound() {
+        Frame frame = Frame.interleaved(new Random(11), 64, 48, 64, 64);
+        frame.convert(new YuvConverter());
+        assertEquals(0, frame.y.position());
+        assertEquals(0, frame.u.position());
+        assertEquals(0, frame.v.position());
+        assertEquals(frame.uLimit, frame.u.limit());
+    }
+
+    @Test
+    public void oneConverterHandlesChangingLayouts() {
+        YuvConverter converter = new YuvConverter();
+        Random random = new Random(12);
+        for (int i = 0; i < 4; i++) {
+            Frame small = Frame.planar(random, 32, 24, 48, 32, 2);
+            small.convert(converter);
+            small.assertMatchesReference();
+            Frame large = Frame.planar(random, 96, 64, 96, 48, 1);
+            large.convert(converter);
+            large.assertMatchesReference();
+        }
+    }
+
+    @Test
+    public void warmConverterDoesNotAllocate() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported());
+
+        YuvConverter converter = new YuvConverter();
+        Frame planar = Frame.planar(new Random(13), 320, 240, 384, 384, 2);
+        Frame interleaved = Frame.interleaved(new Random(14), 320, 240, 384, 384);
+        // Warm up so class loading, JIT and the row scratch space do not count
+        convert(converter, planar, interleaved, 200);
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        convert(converter, planar, interleaved, 200);
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    /**
+     * Not a JMH run: a warmed-up loop at preview size against the naive
+     * per-sample reference, printed per layout so regressions stay visible in
+     * the test log.
+     */
+    @Test
+    public void throughputAgainstNaiveConversion() {
+        Random random = new Random(15);
+        Frame[] frames = {
+                Frame.planar(random, 640, 480, 640, 320, 1),
+                Frame.planar(random, 640, 480, 704, 704, 2),
+                Frame.interleaved(random, 640, 480, 640, 640),
+                Frame.interleaved(random, 640, 480, 704, 704)
+        };
+        String[] names = {"planar", "planar, padded, stride 2", "interleaved", "interleaved, padded"};
+        YuvConverter converter = new YuvConverter();
+
+        for (int f = 0; f < frames.length; f++) {
+            Frame frame = frames[f];
+            int rounds = 200;
+            for (int r = 0; r < rounds; r++) {
+                frame.convert(converter);
+                frame.reference();
+            }
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                frame.convert(converter);
+            }
+            long converterNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int r = 0; r < rounds; r++) {
+                frame.reference();
+            }
+            long naiveNanos = System.nanoTime() - start;
+
+            frame.assertMatchesReference();
+            System.out.println(String.format(Locale.US,
+                    "%-26s converter %.3f ms/frame, naive %.3f ms/frame",
+                    names[f], converterNanos / 1e6 / rounds, naiveNanos / 1e6 / rounds));
+        }
+    }
+
+    private static void convert(YuvConverter converter, Frame planar, Frame interleaved, int rounds) {
+        for (int r = 0; r < rounds; r++) {
+            planar.convert(converter);
+            interleaved.convert(converter);
+        }
+    }
+
+    /**
+     * Synthetic YUV_420_888 planes laid out the way camera HALs hand them
+     * out, with random bytes in the row padding so a stride mistake shows up.
+     */
+    private static final class Frame {
+        final int width;
+        final int height;
+        final int yRowStride;
+        final int uvRowStride;
+        final int uvPixelStride;
+        final ByteBuffer y;
+        final ByteBuffer u;
+        final ByteBuffer v;
+        final int uLimit;
+        // Plane contents for separate planes; null for an interleaved buffer
+        final byte[] uBytes;
+        final byte[] vBytes;
+        final byte[] out;
+
+        private Frame(int width, int height, int yRowStride, int uvRowStride, int uvPixelStride,
+                      ByteBuffer y, ByteBuffer u, ByteBuffer v, byte[] uBytes, byte[] vBytes) {
+            this.width = width;
+            this.height = height;
+            this.yRowStride = yRowStride;
+            this.uvRowStride = uvRowStride;
+            this.uvPixelStride = uvPixelStride;
+            this.y = y;
+            this.u = u;
+            this.v = v;
+            this.uLimit = u.limit();
+            this.uBytes = uBytes;
+            this.vBytes = vBytes;
+            this.out = new byte[YuvConverter.nv21Size(width, height)];
+        }
+
+        /**
+         * U and V in separate buffers; each plane's last row stops right after
+         * its final sample, as on real devices.
+         */
+        static Frame planar(Random random, int width, int height,
+                            int yRowStride, int uvRowStride, int uvPixelStride) {
+            int chromaWidth = (width + 1) / 2;
+            int chromaHeight = (height + 1) / 2;
+            int chromaBytes = (chromaHeight - 1) * uvRowStride + (chromaWidth - 1) * uvPixelStride + 1;
+            byte[] uBytes = randomBytes(random, chromaBytes);
+            byte[] vBytes = randomBytes(random, chromaBytes);
+            return new Frame(width, height, yRowStride, uvRowStride, uvPixelStride,
+                    luma(random, width, height, yRowStride),
+                    ByteBuffer.wrap(uBytes), ByteBuffer.wrap(vBytes), uBytes, vBytes);
+        }
+
+        /**
+         * One VUVU... buffer with V as a view from byte 0 and U as a view from
+         * byte 1, each one byte shorter than the whole.
+         */
+        static Frame interleaved(Random random, int width, int height, int yRowStride, int uvRowStride) {
+            int chromaWidth = (width + 1) / 2;
+            int chromaHeight = (height + 1) / 2;
+            byte[] vu = randomBytes(random, (chromaHeight - 1) * uvRowStride + 2 * chromaWidth);
+            ByteBuffer v = ByteBuffer.wrap(vu, 0, vu.length - 1).slice();
+            ByteBuffer u = ByteBuffer.wrap(vu, 1, vu.length - 1).slice();
+            return new Frame(width, height, yRowStride, uvRowStride, 2,
+                    luma(random, width, height, yRowStride), u, v, null, null);
+        }
+
+        private static ByteBuffer luma(Random random, int width, int height, int rowStride) {
+            return ByteBuffer.wrap(randomBytes(random, (height - 1) * rowStride + width));
+        }
+
+        private static byte[] randomBytes(Random random, int length) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            return bytes;
+        }
+
+        boolean convert(YuvConverter converter) {
+            return converter.convert(width, height, y, yRowStride, u, v, uvRowStride, uvPixelStride, out);
+        }
+
+        /**
+         * NV21 read one sample at a time with absolute gets: full Y, then a VU
+         * pair per chroma sample.
+         */
+        byte[] reference() {
+            int chromaWidth = (width + 1) / 2;
+            int chromaHeight = (height + 1) / 2;
+            byte[] nv21 = new byte[YuvConverter.nv21Size(width, height)];
+            int o = 0;
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    nv21[o++] = y.get(row * yRowStride + col);
+                }
+            }
+            for (int row = 0; row < chromaHeight; row++) {
+                for (int col = 0; col < chromaWidth; col++) {
+                    int index = row * uvRowStride + col * uvPixelStride;
+                    nv21[o++] = v.get(index);
+                    nv21[o++] = u.get(index);
+                }
+            }
+            return nv21;
+        }
+
+        void assertMatchesReference() {
+            assertArrayEquals(reference(), out);
+        }
+    }
+}